@@ -0,0 +1,246 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * A time series of metric values kept in parallel primitive arrays sorted by
+ * timestamp. Adding a value for an existing timestamp replaces it, the same
+ * as {@link TreeMap#put}, and appending values in time order, which is the
+ * common case, needs no search or shifting. A {@code null} value is stored
+ * as a {@link Double#NaN} with a payload of its own, so that it reads as NaN
+ * but is converted back to {@code null} by {@link #toMap()}.
+ * <p/>
+ * Compared to the {@code TreeMap<Long, Double>} of {@link TimelineMetric},
+ * a data point takes 16 bytes instead of a map entry and two boxed objects.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+public class TimelineMetricSeries {
+
+  private static final int DEFAULT_CAPACITY = 8;
+
+  /**
+   * The raw bits of the quiet NaN which stands for a {@code null} value.
+   */
+  private static final long NULL_VALUE_BITS = 0x7ff8000000000001L;
+  private static final double NULL_VALUE = Double.longBitsToDouble(NULL_VALUE_BITS);
+
+  private long[] timestamps;
+  private double[] values;
+  private int size = 0;
+
+  public TimelineMetricSeries() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public TimelineMetricSeries(int capacity) {
+    timestamps = new long[Math.max(capacity, 1)];
+    values = new double[timestamps.length];
+  }
+
+  /**
+   * Create a series holding the given values.
+   */
+  public static TimelineMetricSeries fromMap(Map<Long, Double> metricValues) {
+    TimelineMetricSeries series = new TimelineMetricSeries(metricValues.size());
+    series.addAll(metricValues);
+    return series;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public long getTimestamp(int index) {
+    checkIndex(index);
+    return timestamps[index];
+  }
+
+  public double getValue(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  /**
+   * @return whether the value at the given index was added as {@code null}
+   */
+  public boolean isNull(int index) {
+    checkIndex(index);
+    return isNullValue(values[index]);
+  }
+
+  /**
+   * Add a value, replacing any value with the same timestamp.
+   */
+  public void put(long timestamp, double value) {
+    if (size == 0 || timestamp > timestamps[size - 1]) {
+      ensureCapacity(size + 1);
+      timestamps[size] = timestamp;
+      values[size] = value;
+      size++;
+      return;
+    }
+
+    int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+    if (index >= 0) {
+      values[index] = value;
+      return;
+    }
+
+    int insertAt = -index - 1;
+    ensureCapacity(size + 1);
+    System.arraycopy(timestamps, insertAt, timestamps, insertAt + 1, size - insertAt);
+    System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+    timestamps[insertAt] = timestamp;
+    values[insertAt] = value;
+    size++;
+  }
+
+  /**
+   * Add all of the given values, replacing values with the same timestamps.
+   */
+  public void addAll(Map<Long, Double> metricValues) {
+    ensureCapacity(size + metricValues.size());
+    for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+      Double value = entry.getValue();
+      put(entry.getKey(), value == null ? NULL_VALUE : value);
+    }
+  }
+
+  /**
+   * Add all values of another series, replacing values with the same
+   * timestamps. Both series are sorted, so they are merged in a single pass.
+   */
+  public void addAll(TimelineMetricSeries other) {
+    if (other.size == 0) {
+      return;
+    }
+
+    if (size == 0 || other.timestamps[0] > timestamps[size - 1]) {
+      ensureCapacity(size + other.size);
+      System.arraycopy(other.timestamps, 0, timestamps, size, other.size);
+      System.arraycopy(other.values, 0, values, size, other.size);
+      size += other.size;
+      return;
+    }
+
+    long[] mergedTimestamps = new long[size + other.size];
+    double[] mergedValues = new double[mergedTimestamps.length];
+    int i = 0, j = 0, k = 0;
+    while (i < size || j < other.size) {
+      if (j == other.size || (i < size && timestamps[i] < other.timestamps[j])) {
+        mergedTimestamps[k] = timestamps[i];
+        mergedValues[k++] = values[i++];
+      } else {
+        if (i < size && timestamps[i] == other.timestamps[j]) {
+          i++;
+        }
+        mergedTimestamps[k] = other.timestamps[j];
+        mergedValues[k++] = other.values[j++];
+      }
+    }
+
+    timestamps = mergedTimestamps;
+    values = mergedValues;
+    size = k;
+  }
+
+  /**
+   * Copy the series into the map representation used by
+   * {@link TimelineMetric#getMetricValues()}.
+   */
+  public TreeMap<Long, Double> toMap() {
+    TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+    for (int i = 0; i < size; i++) {
+      metricValues.put(timestamps[i], toObject(values[i]));
+    }
+    return metricValues;
+  }
+
+  /**
+   * Copy the values with timestamps from startTime to endTime, inclusive.
+   */
+  public TreeMap<Long, Double> toMap(long startTime, long endTime) {
+    TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+    for (int i = indexOf(startTime); i < size && timestamps[i] <= endTime; i++) {
+      metricValues.put(timestamps[i], toObject(values[i]));
+    }
+    return metricValues;
+  }
+
+  /**
+   * Remove the values with timestamps before the given one.
+   *
+   * @return the number of values removed
+   */
+  public int removeBefore(long timestamp) {
+    int removed = indexOf(timestamp);
+    if (removed > 0) {
+      System.arraycopy(timestamps, removed, timestamps, 0, size - removed);
+      System.arraycopy(values, removed, values, 0, size - removed);
+      size -= removed;
+    }
+    return removed;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * @return the index of the first value with a timestamp not before the
+   * given one, or size if there is none
+   */
+  private int indexOf(long timestamp) {
+    int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+    return index >= 0 ? index : -index - 1;
+  }
+
+  private static boolean isNullValue(double value) {
+    return Double.doubleToRawLongBits(value) == NULL_VALUE_BITS;
+  }
+
+  private static Double toObject(double value) {
+    return isNullValue(value) ? null : value;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > timestamps.length) {
+      int newCapacity = Math.max(capacity, timestamps.length + (timestamps.length >> 1));
+      timestamps = Arrays.copyOf(timestamps, newCapacity);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+}
@@ -22,6 +22,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -49,10 +50,22 @@ public class TimelineMetricsCache {
     private long timeDiff = -1;
     private long oldestTimestamp = -1;
     private TimelineMetric timelineMetric;
+    // Values are buffered in primitive form until the metric is evicted
+    private final TimelineMetricSeries metricValues;
 
     TimelineMetricWrapper(TimelineMetric timelineMetric) {
-      this.timelineMetric = timelineMetric;
+      // the values are kept in the series, so only the metadata is copied
+      // rather than holding on to the caller's metric
+      this.timelineMetric = new TimelineMetric();
+      this.timelineMetric.setMetricName(timelineMetric.getMetricName());
+      this.timelineMetric.setType(timelineMetric.getType());
+      this.timelineMetric.setTimestamp(timelineMetric.getTimestamp());
+      this.timelineMetric.setAppId(timelineMetric.getAppId());
+      this.timelineMetric.setInstanceId(timelineMetric.getInstanceId());
+      this.timelineMetric.setHostName(timelineMetric.getHostName());
+      this.timelineMetric.setStartTime(timelineMetric.getStartTime());
       this.oldestTimestamp = timelineMetric.getStartTime();
+      this.metricValues = TimelineMetricSeries.fromMap(timelineMetric.getMetricValues());
     }
 
     private void updateTimeDiff(long timestamp) {
@@ -64,7 +77,7 @@ public class TimelineMetricsCache {
     }
 
     public void putMetric(TimelineMetric metric) {
-      this.timelineMetric.addMetricValues(metric.getMetricValues());
+      this.metricValues.addAll(metric.getMetricValues());
       updateTimeDiff(metric.getStartTime());
     }
 
@@ -73,6 +86,7 @@ public class TimelineMetricsCache {
     }
 
     public TimelineMetric getTimelineMetric() {
+      timelineMetric.setMetricValues(metricValues.toMap());
       return timelineMetric;
     }
   }
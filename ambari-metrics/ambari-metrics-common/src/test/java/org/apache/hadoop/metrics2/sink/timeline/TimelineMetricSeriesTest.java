@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricSeriesTest {
+
+  @Test
+  public void testPutMatchesTreeMap() throws Exception {
+    Random random = new Random(7);
+    TimelineMetricSeries series = new TimelineMetricSeries(2);
+    TreeMap<Long, Double> expected = new TreeMap<Long, Double>();
+
+    for (int i = 0; i < 1000; i++) {
+      // mostly appends, with some out of order and repeated timestamps
+      long timestamp = random.nextInt(10) == 0 ? random.nextInt(i + 1) : i * 2;
+      double value = random.nextDouble();
+      series.put(timestamp, value);
+      expected.put(timestamp, value);
+    }
+
+    assertEquals(expected.size(), series.size());
+    assertEquals(expected, series.toMap());
+  }
+
+  @Test
+  public void testAddAllSeries() throws Exception {
+    TimelineMetricSeries series = new TimelineMetricSeries();
+    series.put(1L, 1.0);
+    series.put(3L, 3.0);
+    series.put(5L, 5.0);
+
+    TimelineMetricSeries other = new TimelineMetricSeries();
+    other.put(2L, 20.0);
+    other.put(3L, 30.0);
+    other.put(6L, 60.0);
+
+    series.addAll(other);
+
+    TreeMap<Long, Double> expected = new TreeMap<Long, Double>();
+    expected.put(1L, 1.0);
+    expected.put(2L, 20.0);
+    expected.put(3L, 30.0);
+    expected.put(5L, 5.0);
+    expected.put(6L, 60.0);
+    assertEquals(expected, series.toMap());
+
+    // appended without merging
+    TimelineMetricSeries later = new TimelineMetricSeries();
+    later.put(7L, 70.0);
+    series.addAll(later);
+    assertEquals(6, series.size());
+    assertEquals(7L, series.getTimestamp(5));
+    assertEquals(70.0, series.getValue(5), 0);
+  }
+
+  @Test
+  public void testRangeAndRemoveBefore() throws Exception {
+    TimelineMetricSeries series = new TimelineMetricSeries();
+    for (long i = 1; i <= 10; i++) {
+      series.put(i * 10, i);
+    }
+
+    TreeMap<Long, Double> range = series.toMap(25L, 50L);
+    assertEquals(3, range.size());
+    assertEquals(30L, (long) range.firstKey());
+    assertEquals(50L, (long) range.lastKey());
+    assertEquals(0, series.toMap(101L, 200L).size());
+
+    assertEquals(0, series.removeBefore(5L));
+    assertEquals(4, series.removeBefore(41L));
+    assertEquals(6, series.size());
+    assertEquals(50L, series.getTimestamp(0));
+    assertEquals(6, series.removeBefore(1000L));
+    assertEquals(0, series.size());
+  }
+
+  @Test
+  public void testFromMap() throws Exception {
+    TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+    metricValues.put(10L, 1.5);
+    metricValues.put(20L, null);
+
+    TimelineMetricSeries series = TimelineMetricSeries.fromMap(metricValues);
+    assertEquals(2, series.size());
+    assertEquals(1.5, series.getValue(0), 0);
+    assertEquals(Double.NaN, series.getValue(1), 0);
+    assertFalse(series.isNull(0));
+    assertTrue(series.isNull(1));
+
+    // nulls are kept, while NaN values stay NaN
+    series.put(30L, Double.NaN);
+    assertFalse(series.isNull(2));
+
+    TreeMap<Long, Double> copy = series.toMap();
+    assertEquals(3, copy.size());
+    assertTrue(copy.containsKey(20L));
+    assertNull(copy.get(20L));
+    assertEquals(Double.NaN, copy.get(30L), 0);
+    assertNull(series.toMap(15L, 25L).get(20L));
+  }
+}
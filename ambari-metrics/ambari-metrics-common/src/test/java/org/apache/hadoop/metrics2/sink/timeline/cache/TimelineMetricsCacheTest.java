@@ -24,6 +24,8 @@ import java.util.Map;
 import java.util.TreeMap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class TimelineMetricsCacheTest {
 
@@ -72,6 +74,32 @@ public class TimelineMetricsCacheTest {
     assertEquals(70, cachedMetric.getMetricValues().get(8L), delta);
   }
 
+  @Test
+  public void testPutKeepsCallerMetricAndNulls() throws Exception {
+    TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+    metricValues.put(1L, 10.0);
+    metricValues.put(2L, null);
+    TimelineMetric metric = createTimelineMetric(metricValues, DEFAULT_START_TIME);
+    timelineMetricsCache.putTimelineMetric(metric);
+
+    // the metric which was put is not modified
+    assertEquals(2, metric.getMetricValues().size());
+
+    metric = createTimelineMetric(new TreeMap<Long, Double>() {{
+      put(3L, 30.0);
+    }}, DEFAULT_START_TIME + 2 * TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS);
+    timelineMetricsCache.putTimelineMetric(metric);
+
+    TimelineMetric cachedMetric = timelineMetricsCache.getTimelineMetric(METRIC_NAME);
+    assertEquals(3, cachedMetric.getMetricValues().size());
+    assertEquals(10, cachedMetric.getMetricValues().get(1L), delta);
+    assertTrue(cachedMetric.getMetricValues().containsKey(2L));
+    assertNull(cachedMetric.getMetricValues().get(2L));
+    assertEquals(30, cachedMetric.getMetricValues().get(3L), delta);
+    assertEquals("Test hostName", cachedMetric.getHostName());
+    assertEquals(DEFAULT_START_TIME, cachedMetric.getStartTime());
+  }
+
   private TimelineMetric createTimelineMetric(Map<Long, Double> metricValues,
                                               long startTime) {
     TimelineMetric timelineMetric = new TimelineMetric();
@@ -30,10 +30,12 @@ import org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricAggregator;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricAggregatorFactory;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricSliceAccumulator;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataKey;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataManager;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL;
 
 import java.io.IOException;
 import java.sql.SQLException;
@@ -48,7 +50,12 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_SECOND_DISABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_SECOND_STREAMING_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOT_STORE_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_QUERY_STREAMING_ENABLED;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.USE_GROUPBY_AGGREGATOR_QUERIES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITE_BUFFER_ENABLED;
 
 public class HBaseTimelineMetricStore extends AbstractService implements TimelineMetricStore {
 
@@ -58,6 +65,10 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
   private static volatile boolean isInitialized = false;
   private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
   private TimelineMetricMetadataManager metricMetadataManager;
+  private TimelineMetricsWriteBuffer writeBuffer;
+  private TimelineMetricsHotStore hotStore;
+  private TimelineMetricSliceAccumulator sliceAccumulator;
+  private boolean streamingQueryEnabled = false;
 
   /**
    * Construct the service.
@@ -83,13 +94,39 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
       metricMetadataManager = new TimelineMetricMetadataManager(hBaseAccessor, metricsConf);
       metricMetadataManager.initializeMetadata();
 
+      if (metricsConf.getBoolean(WRITE_BUFFER_ENABLED, false)) {
+        writeBuffer = new TimelineMetricsWriteBuffer(hBaseAccessor, metricMetadataManager, metricsConf);
+        executorService.scheduleWithFixedDelay(new Runnable() {
+          @Override
+          public void run() {
+            writeBuffer.logStatistics();
+          }
+        }, 1, 1, TimeUnit.MINUTES);
+      }
+      streamingQueryEnabled = metricsConf.getBoolean(TIMELINE_METRICS_QUERY_STREAMING_ENABLED, false);
+
+      if (metricsConf.getBoolean(HOT_STORE_ENABLED, false)) {
+        hotStore = new TimelineMetricsHotStore(metricsConf);
+        executorService.scheduleWithFixedDelay(new Runnable() {
+          @Override
+          public void run() {
+            hotStore.expire();
+          }
+        }, 1, 1, TimeUnit.MINUTES);
+      }
+
       if (Boolean.parseBoolean(metricsConf.get(USE_GROUPBY_AGGREGATOR_QUERIES, "true"))) {
         LOG.info("Using group by aggregators for aggregating host and cluster metrics.");
       }
 
       // Start the cluster aggregator second
+      if (metricsConf.getBoolean(CLUSTER_AGGREGATOR_SECOND_STREAMING_ENABLED, false) &&
+          !metricsConf.getBoolean(CLUSTER_AGGREGATOR_SECOND_DISABLED, false)) {
+        sliceAccumulator = new TimelineMetricSliceAccumulator(metricsConf);
+      }
       TimelineMetricAggregator secondClusterAggregator =
-        TimelineMetricAggregatorFactory.createTimelineClusterAggregatorSecond(hBaseAccessor, metricsConf, metricMetadataManager);
+        TimelineMetricAggregatorFactory.createTimelineClusterAggregatorSecond(hBaseAccessor,
+          metricsConf, metricMetadataManager, sliceAccumulator);
       if (!secondClusterAggregator.isDisabled()) {
         Thread aggregatorThread = new Thread(secondClusterAggregator);
         aggregatorThread.start();
@@ -159,6 +196,9 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
 
   @Override
   protected void serviceStop() throws Exception {
+    if (writeBuffer != null) {
+      writeBuffer.stop();
+    }
     super.serviceStop();
   }
 
@@ -168,16 +208,16 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
       Long startTime, Long endTime, Precision precision, Integer limit,
       boolean groupedByHosts) throws SQLException, IOException {
 
-    if (metricNames == null || metricNames.isEmpty()) {
-      throw new IllegalArgumentException("No metric name filter specified.");
-    }
-    if ((startTime == null && endTime != null)
-        || (startTime != null && endTime == null)) {
-      throw new IllegalArgumentException("Open ended query not supported ");
-    }
-    if (limit != null && limit > PhoenixHBaseAccessor.RESULTSET_LIMIT){
-      throw new IllegalArgumentException("Limit too big");
+    validateMetricsQuery(metricNames, startTime, endTime, limit);
+
+    if (groupedByHosts) {
+      TimelineMetrics recentMetrics = getRecentMetrics(metricNames, hostnames,
+        applicationId, instanceId, startTime, endTime, precision, limit);
+      if (recentMetrics != null) {
+        return postProcessMetrics(recentMetrics);
+      }
     }
+
     Map<String, List<Function>> metricFunctions =
       parseMetricNamesToAggregationFunctions(metricNames);
 
@@ -196,19 +236,156 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
     return postProcessMetrics(metrics);
   }
 
+  @Override
+  public void getTimelineMetrics(List<String> metricNames,
+      List<String> hostnames, String applicationId, String instanceId,
+      Long startTime, Long endTime, Precision precision, Integer limit,
+      boolean groupedByHosts, final TimelineMetricConsumer consumer)
+      throws SQLException, IOException {
+
+    if (hostnames == null || hostnames.isEmpty()) {
+      // Aggregates across hosts hold one series per metric
+      for (TimelineMetric metric : getTimelineMetrics(metricNames, hostnames,
+          applicationId, instanceId, startTime, endTime, precision, limit,
+          groupedByHosts).getMetrics()) {
+        consumer.accept(metric);
+      }
+      return;
+    }
+
+    validateMetricsQuery(metricNames, startTime, endTime, limit);
+
+    if (groupedByHosts) {
+      TimelineMetrics recentMetrics = getRecentMetrics(metricNames, hostnames,
+        applicationId, instanceId, startTime, endTime, precision, limit);
+      if (recentMetrics != null) {
+        for (TimelineMetric metric : recentMetrics.getMetrics()) {
+          consumer.accept(postProcessMetric(metric));
+        }
+        return;
+      }
+    }
+
+    Map<String, List<Function>> metricFunctions =
+      parseMetricNamesToAggregationFunctions(metricNames);
+
+    Condition condition = createStreamingCondition(metricFunctions, hostnames,
+      applicationId, instanceId, startTime, endTime, precision, limit,
+      groupedByHosts);
+    PhoenixTransactSQL.validateRowCountLimit(condition);
+
+    hBaseAccessor.getMetricRecords(condition, metricFunctions,
+      new TimelineMetricConsumer() {
+        @Override
+        public void accept(TimelineMetric metric) throws IOException {
+          consumer.accept(postProcessMetric(metric));
+        }
+      });
+  }
+
+  @Override
+  public void validateTimelineMetricsQuery(List<String> metricNames,
+      List<String> hostnames, String applicationId, String instanceId,
+      Long startTime, Long endTime, Precision precision, Integer limit,
+      boolean groupedByHosts) {
+
+    validateMetricsQuery(metricNames, startTime, endTime, limit);
+
+    Map<String, List<Function>> metricFunctions =
+      parseMetricNamesToAggregationFunctions(metricNames);
+
+    PhoenixTransactSQL.validateRowCountLimit(createStreamingCondition(
+      metricFunctions, hostnames, applicationId, instanceId, startTime,
+      endTime, precision, limit, groupedByHosts));
+  }
+
+  /**
+   * Host metric queries which are streamed are only bounded by the row
+   * estimate if an explicit limit was requested.
+   */
+  private Condition createStreamingCondition(
+      Map<String, List<Function>> metricFunctions, List<String> hostnames,
+      String applicationId, String instanceId, Long startTime, Long endTime,
+      Precision precision, Integer limit, boolean groupedByHosts) {
+    Condition condition = new DefaultCondition(
+      new ArrayList<String>(metricFunctions.keySet()),
+      hostnames, applicationId, instanceId, startTime, endTime,
+      precision, limit, groupedByHosts);
+    condition.setStreaming();
+    if (limit == null) {
+      condition.setNoLimit();
+    }
+    return condition;
+  }
+
+  @Override
+  public boolean isStreamingQueryEnabled() {
+    return streamingQueryEnabled;
+  }
+
+  /**
+   * Answer a host metrics query from the hot store.
+   *
+   * @return the metrics, or null if the query has to go to HBase
+   */
+  private TimelineMetrics getRecentMetrics(List<String> metricNames,
+      List<String> hostnames, String applicationId, String instanceId,
+      Long startTime, Long endTime, Precision precision, Integer limit) {
+    if (hotStore == null || hostnames == null || hostnames.isEmpty()
+        || startTime == null || endTime == null || limit != null) {
+      return null;
+    }
+    if ((precision == null ? Precision.getPrecision(startTime, endTime) : precision)
+        != Precision.SECONDS) {
+      return null;
+    }
+    // Functions and wildcards are left to the SQL path
+    for (String metricName : metricNames) {
+      if (metricName.contains("._") || metricName.contains("%")) {
+        return null;
+      }
+    }
+    for (String hostname : hostnames) {
+      if (hostname.contains("%")) {
+        return null;
+      }
+    }
+    return hotStore.getTimelineMetrics(metricNames, hostnames, applicationId,
+      instanceId, startTime, endTime);
+  }
+
+  private void validateMetricsQuery(List<String> metricNames, Long startTime,
+      Long endTime, Integer limit) {
+    if (metricNames == null || metricNames.isEmpty()) {
+      throw new IllegalArgumentException("No metric name filter specified.");
+    }
+    if ((startTime == null && endTime != null)
+        || (startTime != null && endTime == null)) {
+      throw new IllegalArgumentException("Open ended query not supported ");
+    }
+    if (limit != null && limit > PhoenixHBaseAccessor.RESULTSET_LIMIT){
+      throw new IllegalArgumentException("Limit too big");
+    }
+  }
+
   private TimelineMetrics postProcessMetrics(TimelineMetrics metrics) {
     List<TimelineMetric> metricsList = metrics.getMetrics();
 
     for (TimelineMetric metric : metricsList){
-      String name = metric.getMetricName();
-      if (name.contains("._rate")){
-        updateValueAsRate(metric.getMetricValues());
-      }
+      postProcessMetric(metric);
     }
 
     return metrics;
   }
 
+  private TimelineMetric postProcessMetric(TimelineMetric metric) {
+    String name = metric.getMetricName();
+    if (name.contains("._rate")){
+      updateValueAsRate(metric.getMetricValues());
+    }
+    return metric;
+  }
+
   private Map<Long, Double> updateValueAsRate(Map<Long, Double> metricValues) {
     Long prevTime = null;
     long step;
@@ -284,8 +461,11 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
     Condition condition = new DefaultCondition(
       new ArrayList<String>(metricFunctions.keySet()), hostnames, applicationId,
       instanceId, startTime, endTime, precision, limit, true);
-    TimelineMetrics metrics = hBaseAccessor.getMetricRecords(condition,
-      metricFunctions);
+    TimelineMetrics metrics = getRecentMetrics(Collections.singletonList(metricName),
+      hostnames, applicationId, instanceId, startTime, endTime, precision, limit);
+    if (metrics == null) {
+      metrics = hBaseAccessor.getMetricRecords(condition, metricFunctions);
+    }
 
     metrics = postProcessMetrics(metrics);
 
@@ -314,7 +494,21 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
     // Error indicated by the Sql exception
     TimelinePutResponse response = new TimelinePutResponse();
 
-    hBaseAccessor.insertMetricRecordsWithMetadata(metricMetadataManager, metrics);
+    if (writeBuffer != null) {
+      if (!writeBuffer.offer(metrics)) {
+        throw new TimelineMetricsBufferFullException("Metric write buffer is full, " +
+          "pending series = " + writeBuffer.getPendingCount());
+      }
+    } else {
+      hBaseAccessor.insertMetricRecordsWithMetadata(metricMetadataManager, metrics);
+    }
+
+    if (hotStore != null) {
+      hotStore.put(metrics);
+    }
+    if (sliceAccumulator != null) {
+      sliceAccumulator.add(metrics);
+    }
 
     return response;
   }
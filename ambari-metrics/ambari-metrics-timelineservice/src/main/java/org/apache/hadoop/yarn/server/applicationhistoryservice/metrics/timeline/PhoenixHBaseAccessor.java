@@ -84,6 +84,7 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.OUT_OFF_BAND_DATA_TIME_ALLOWANCE;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_SPLIT_POINTS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_TTL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_VALUES_CODEC;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.ALTER_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_HOSTED_APPS_METADATA_TABLE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_METRICS_AGGREGATE_TABLE_SQL;
@@ -139,6 +140,7 @@ public class PhoenixHBaseAccessor {
   private final ConnectionProvider dataSource;
   private final long outOfBandTimeAllowance;
   private final boolean skipBlockCacheForAggregatorsEnabled;
+  private final MetricValuesCodec metricValuesCodec;
 
   public PhoenixHBaseAccessor(Configuration hbaseConf,
                               Configuration metricsConf){
@@ -163,12 +165,14 @@ public class PhoenixHBaseAccessor {
     this.outOfBandTimeAllowance = metricsConf.getLong(OUT_OFF_BAND_DATA_TIME_ALLOWANCE,
       DEFAULT_OUT_OF_BAND_TIME_ALLOWANCE);
     this.skipBlockCacheForAggregatorsEnabled = metricsConf.getBoolean(AGGREGATORS_SKIP_BLOCK_CACHE, false);
+    this.metricValuesCodec = MetricValuesCodec.fromName(
+      metricsConf.get(TIMELINE_METRICS_VALUES_CODEC, MetricValuesCodec.JSON.name()));
   }
 
   private static TimelineMetric getLastTimelineMetricFromResultSet(ResultSet rs)
     throws SQLException, IOException {
     TimelineMetric metric = TIMELINE_METRIC_READ_HELPER.getTimelineMetricCommonsFromResultSet(rs);
-    metric.setMetricValues(readLastMetricValueFromJSON(rs.getString("METRICS")));
+    metric.setMetricValues(readLastMetricValue(rs.getString("METRICS")));
     return metric;
   }
 
@@ -211,9 +215,9 @@ public class PhoenixHBaseAccessor {
     return metric;
   }
 
-  private static TreeMap<Long, Double> readLastMetricValueFromJSON(String json)
+  private static TreeMap<Long, Double> readLastMetricValue(String encodedValues)
       throws IOException {
-    TreeMap<Long, Double> values = readMetricFromJSON(json);
+    TreeMap<Long, Double> values = readMetricValues(encodedValues);
     Long lastTimeStamp = values.lastKey();
 
     TreeMap<Long, Double> valueMap = new TreeMap<Long, Double>();
@@ -226,6 +230,14 @@ public class PhoenixHBaseAccessor {
     return mapper.readValue(json, metricValuesTypeRef);
   }
 
+  /**
+   * Read the values of a METRIC_RECORD row, whichever
+   * {@link MetricValuesCodec} they were written with.
+   */
+  public static TreeMap<Long, Double> readMetricValues(String encodedValues) throws IOException {
+    return MetricValuesCodec.decodeValues(encodedValues);
+  }
+
   private Connection getConnectionRetryingOnException()
     throws SQLException, InterruptedException {
     RetryCounter retryCounter = retryCounterFactory.create();
@@ -441,8 +453,9 @@ public class PhoenixHBaseAccessor {
         metricRecordStmt.setDouble(9, aggregates[1]);
         metricRecordStmt.setDouble(10, aggregates[2]);
         metricRecordStmt.setLong(11, (long) aggregates[3]);
-        String json = TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
-        metricRecordStmt.setString(12, json);
+        metricRecordStmt.setString(12, metricValuesCodec == MetricValuesCodec.JSON ?
+          TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues()) :
+          metricValuesCodec.encode(metric.getMetricValues()));
 
         try {
           metricRecordStmt.executeUpdate();
@@ -580,6 +593,109 @@ public class PhoenixHBaseAccessor {
     return metrics;
   }
 
+  /**
+   * Read host metrics and hand them to the consumer one series at a time.
+   * Rows are read in primary key order, so all rows of a metric on a host
+   * are adjacent and only those are held in memory.
+   */
+  public void getMetricRecords(
+    final Condition condition, Map<String, List<Function>> metricFunctions,
+    TimelineMetricConsumer consumer) throws SQLException, IOException {
+
+    validateConditionIsNotEmpty(condition);
+
+    if (condition.isPointInTime()) {
+      // One value per series
+      for (TimelineMetric metric : getMetricRecords(condition, metricFunctions).getMetrics()) {
+        consumer.accept(metric);
+      }
+      return;
+    }
+
+    if (condition.getEndTime() < condition.getStartTime()) {
+      LOG.warn("Skipping metrics query because endTime < startTime");
+      return;
+    }
+
+    if (condition.getPrecision() == null) {
+      condition.setPrecision(Precision.getPrecision(condition.getStartTime(),
+        condition.getEndTime()));
+    }
+    // Same order as the primary key, so Phoenix does not need to sort
+    condition.addOrderByColumn("METRIC_NAME");
+    condition.addOrderByColumn("HOSTNAME");
+    if (condition.getPrecision() == Precision.SECONDS) {
+      condition.addOrderByColumn("SERVER_TIME");
+      condition.addOrderByColumn("APP_ID");
+      condition.addOrderByColumn("INSTANCE_ID");
+    } else {
+      condition.addOrderByColumn("APP_ID");
+      condition.addOrderByColumn("INSTANCE_ID");
+      condition.addOrderByColumn("SERVER_TIME");
+    }
+
+    Connection conn = getConnection();
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    long seriesCount = 0;
+
+    try {
+      stmt = PhoenixTransactSQL.prepareGetMetricsSqlStmt(conn, condition);
+      rs = stmt.executeQuery();
+
+      TimelineMetrics series = new TimelineMetrics();
+      String seriesMetricName = null;
+      String seriesHostName = null;
+
+      while (rs.next()) {
+        String metricName = rs.getString("METRIC_NAME");
+        String hostName = rs.getString("HOSTNAME");
+        if (!StringUtils.equals(metricName, seriesMetricName) ||
+            !StringUtils.equals(hostName, seriesHostName)) {
+          seriesCount += acceptMetrics(series, consumer);
+          series = new TimelineMetrics();
+          seriesMetricName = metricName;
+          seriesHostName = hostName;
+        }
+        appendMetricFromResultSet(series, condition, metricFunctions, rs);
+      }
+      seriesCount += acceptMetrics(series, consumer);
+
+    } finally {
+      if (rs != null) {
+        try {
+          rs.close();
+        } catch (SQLException e) {
+          // Ignore
+        }
+      }
+      if (stmt != null) {
+        try {
+          stmt.close();
+        } catch (SQLException e) {
+          // Ignore
+        }
+      }
+      if (conn != null) {
+        try {
+          conn.close();
+        } catch (SQLException sql) {
+          // Ignore
+        }
+      }
+    }
+
+    LOG.debug("Metrics records streamed: " + seriesCount);
+  }
+
+  private static int acceptMetrics(TimelineMetrics metrics,
+      TimelineMetricConsumer consumer) throws IOException {
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      consumer.accept(metric);
+    }
+    return metrics.getMetrics().size();
+  }
+
   private void appendMetricFromResultSet(
       TimelineMetrics metrics, Condition condition, Map<String,
       List<Function>> metricFunctions, ResultSet rs)
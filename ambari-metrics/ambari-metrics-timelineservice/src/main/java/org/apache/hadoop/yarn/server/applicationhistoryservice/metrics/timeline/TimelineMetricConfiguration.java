@@ -211,6 +211,45 @@ public class TimelineMetricConfiguration {
   public static final String METRICS_METADATA_SYNC_SCHEDULE_DELAY =
     "timeline.metrics.service.metadata.sync.delay";
 
+  public static final String TIMELINE_METRICS_VALUES_CODEC =
+    "timeline.metrics.service.values.codec";
+
+  public static final String TIMELINE_METRICS_QUERY_STREAMING_ENABLED =
+    "timeline.metrics.service.query.streaming.enabled";
+
+  public static final String HOT_STORE_ENABLED =
+    "timeline.metrics.service.hot.store.enabled";
+
+  public static final String HOT_STORE_WINDOW =
+    "timeline.metrics.service.hot.store.window";
+
+  public static final String HOT_STORE_MAX_SERIES =
+    "timeline.metrics.service.hot.store.max.series";
+
+  public static final String CLUSTER_AGGREGATOR_SECOND_STREAMING_ENABLED =
+    "timeline.metrics.cluster.aggregator.second.streaming.enabled";
+
+  public static final String CLUSTER_AGGREGATOR_SECOND_STREAMING_MAX_SERIES =
+    "timeline.metrics.cluster.aggregator.second.streaming.max.series";
+
+  public static final String WRITE_BUFFER_ENABLED =
+    "timeline.metrics.service.write.buffer.enabled";
+
+  public static final String WRITE_BUFFER_CAPACITY =
+    "timeline.metrics.service.write.buffer.capacity";
+
+  public static final String WRITE_BUFFER_WRITER_THREADS =
+    "timeline.metrics.service.write.buffer.writer.threads";
+
+  public static final String WRITE_BUFFER_BATCH_SIZE =
+    "timeline.metrics.service.write.buffer.batch.size";
+
+  public static final String WRITE_BUFFER_COMMIT_INTERVAL =
+    "timeline.metrics.service.write.buffer.commit.interval";
+
+  public static final String WRITE_BUFFER_MAX_RETRIES =
+    "timeline.metrics.service.write.buffer.max.retries";
+
   public static final String HOST_APP_ID = "HOST";
 
   private Configuration hbaseConf;
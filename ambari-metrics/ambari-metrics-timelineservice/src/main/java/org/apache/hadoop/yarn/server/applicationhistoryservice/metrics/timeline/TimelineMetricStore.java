@@ -51,6 +51,37 @@ public interface TimelineMetricStore {
       Long endTime, Precision precision, Integer limit, boolean groupedByHosts)
     throws SQLException, IOException;
 
+  /**
+   * Same as {@link #getTimelineMetrics(List, List, String, String, Long, Long,
+   * Precision, Integer, boolean)}, but hands each series to the consumer as
+   * it is read instead of collecting the result. Without a limit, host
+   * metrics are not bounded by the default result limit.
+   */
+  void getTimelineMetrics(List<String> metricNames, List<String> hostnames,
+      String applicationId, String instanceId, Long startTime,
+      Long endTime, Precision precision, Integer limit, boolean groupedByHosts,
+      TimelineMetricConsumer consumer) throws SQLException, IOException;
+
+  /**
+   * Validates the parameters of a metrics query which is answered with
+   * {@link #getTimelineMetrics(List, List, String, String, Long, Long,
+   * Precision, Integer, boolean, TimelineMetricConsumer)}, so that invalid
+   * queries can be rejected before any part of the response is written.
+   *
+   * @throws IllegalArgumentException if the query is not valid
+   */
+  void validateTimelineMetricsQuery(List<String> metricNames,
+      List<String> hostnames, String applicationId, String instanceId,
+      Long startTime, Long endTime, Precision precision, Integer limit,
+      boolean groupedByHosts);
+
+  /**
+   * @return true if metrics queries should be answered with
+   * {@link #getTimelineMetrics(List, List, String, String, Long, Long,
+   * Precision, Integer, boolean, TimelineMetricConsumer)}
+   */
+  boolean isStreamingQueryEnabled();
+
 
   /**
    * Return all records for a single metric satisfying the filter criteria.
@@ -0,0 +1,329 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOT_STORE_MAX_SERIES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOT_STORE_WINDOW;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.OUT_OFF_BAND_DATA_TIME_ALLOWANCE;
+
+/**
+ * Keeps the raw points of the last few minutes of every series posted to
+ * this collector, so that queries for recent host metrics at seconds
+ * precision can be answered without reading METRIC_RECORD.
+ * <p/>
+ * A query is only answered when every point it could match is known to be
+ * held: its time range must start after the collector started and within
+ * the window, and for series evicted to stay within the size limit, after
+ * the last eviction. Everything else returns null and goes to the store.
+ * <p/>
+ * Out of band series are skipped the same way {@link PhoenixHBaseAccessor}
+ * discards them, so that the answers match what the store would return.
+ */
+public class TimelineMetricsHotStore {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsHotStore.class);
+
+  private final long windowMillis;
+  private final int maxSeries;
+  private final long startTime;
+  private final long outOfBandTimeAllowance;
+
+  // Guarded by this, in access order for LRU eviction
+  private final LinkedHashMap<SeriesKey, HotSeries> seriesMap =
+    new LinkedHashMap<SeriesKey, HotSeries>(16, 0.75f, true);
+  private long lastEvictionTime = 0;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  public TimelineMetricsHotStore(Configuration metricsConf) {
+    this(TimeUnit.MINUTES.toMillis(metricsConf.getInt(HOT_STORE_WINDOW, 60)),
+      metricsConf.getInt(HOT_STORE_MAX_SERIES, 100000),
+      System.currentTimeMillis(),
+      metricsConf.getLong(OUT_OFF_BAND_DATA_TIME_ALLOWANCE,
+        PhoenixHBaseAccessor.DEFAULT_OUT_OF_BAND_TIME_ALLOWANCE));
+    LOG.info("Keeping recent metrics in memory: window = "
+      + TimeUnit.MILLISECONDS.toMinutes(windowMillis) + " minutes, max series = " + maxSeries);
+  }
+
+  TimelineMetricsHotStore(long windowMillis, int maxSeries, long startTime,
+                          long outOfBandTimeAllowance) {
+    this.windowMillis = windowMillis;
+    this.maxSeries = Math.max(1, maxSeries);
+    this.startTime = startTime;
+    this.outOfBandTimeAllowance = outOfBandTimeAllowance;
+  }
+
+  /**
+   * Add posted metrics.
+   */
+  public void put(TimelineMetrics metrics) {
+    long currentTime = System.currentTimeMillis();
+    long oldest = currentTime - windowMillis;
+
+    synchronized (this) {
+      for (TimelineMetric metric : metrics.getMetrics()) {
+        if (metric.getMetricValues().isEmpty() || metric.getMetricValues().lastKey() < oldest
+            || Math.abs(currentTime - metric.getStartTime()) > outOfBandTimeAllowance) {
+          continue;
+        }
+
+        SeriesKey key = new SeriesKey(metric.getMetricName(), metric.getHostName());
+        HotSeries hotSeries = seriesMap.get(key);
+        if (hotSeries == null) {
+          hotSeries = new HotSeries(metric.getMetricName(), metric.getHostName(),
+            lastEvictionTime == 0 ? startTime : System.currentTimeMillis());
+          seriesMap.put(key, hotSeries);
+          evictIfNeeded();
+        }
+        hotSeries.add(metric, oldest);
+      }
+    }
+  }
+
+  /**
+   * Get host metrics from memory.
+   *
+   * @return the metrics, or null if some of them may not be held in memory
+   */
+  public TimelineMetrics getTimelineMetrics(List<String> metricNames,
+      List<String> hostnames, String appId, String instanceId,
+      long queryStartTime, long queryEndTime) {
+
+    long coveredFrom = Math.max(startTime, System.currentTimeMillis() - windowMillis);
+    if (queryStartTime < coveredFrom) {
+      missCount.incrementAndGet();
+      return null;
+    }
+
+    TimelineMetrics metrics = new TimelineMetrics();
+    synchronized (this) {
+      for (String metricName : metricNames) {
+        for (String hostname : hostnames) {
+          HotSeries hotSeries = seriesMap.get(new SeriesKey(metricName, hostname));
+          long seriesCoveredFrom = hotSeries == null ? lastEvictionTime : hotSeries.coveredFrom;
+          if (queryStartTime < seriesCoveredFrom) {
+            missCount.incrementAndGet();
+            return null;
+          }
+          if (hotSeries != null) {
+            hotSeries.collect(appId, instanceId, queryStartTime, queryEndTime, metrics.getMetrics());
+          }
+        }
+      }
+    }
+
+    hitCount.incrementAndGet();
+    return metrics;
+  }
+
+  /**
+   * Drop points that fell out of the window, and log the query hit rate.
+   */
+  public synchronized void expire() {
+    long oldest = System.currentTimeMillis() - windowMillis;
+    Iterator<HotSeries> iterator = seriesMap.values().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().removeBefore(oldest)) {
+        iterator.remove();
+      }
+    }
+
+    LOG.info("Recent metrics in memory: series = " + seriesMap.size()
+      + ", hits = " + hitCount.get() + ", misses = " + missCount.get()
+      + ", hit rate = " + String.format("%.2f", getHitRate()));
+  }
+
+  public synchronized int getSeriesCount() {
+    return seriesMap.size();
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public double getHitRate() {
+    long hits = hitCount.get();
+    long total = hits + missCount.get();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  private void evictIfNeeded() {
+    Iterator<HotSeries> iterator = seriesMap.values().iterator();
+    while (seriesMap.size() > maxSeries && iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+      lastEvictionTime = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * The points of one metric on one host, by app and instance.
+   */
+  private static class HotSeries {
+    private final String metricName;
+    private final String hostName;
+    private final long coveredFrom;
+    private final Map<AppInstance, Points> points = new HashMap<AppInstance, Points>(2);
+
+    HotSeries(String metricName, String hostName, long coveredFrom) {
+      this.metricName = metricName;
+      this.hostName = hostName;
+      this.coveredFrom = coveredFrom;
+    }
+
+    void add(TimelineMetric metric, long oldest) {
+      AppInstance appInstance = new AppInstance(metric.getAppId(), metric.getInstanceId());
+      Points appPoints = points.get(appInstance);
+      if (appPoints == null) {
+        appPoints = new Points(metric.getType());
+        points.put(appInstance, appPoints);
+      }
+      appPoints.series.addAll(metric.getMetricValues());
+      appPoints.series.removeBefore(oldest);
+    }
+
+    void collect(String appId, String instanceId, long from, long to,
+                 List<TimelineMetric> metrics) {
+      for (Map.Entry<AppInstance, Points> entry : points.entrySet()) {
+        AppInstance appInstance = entry.getKey();
+        if ((appId != null && !appId.equals(appInstance.appId)) ||
+            (instanceId != null && !instanceId.equals(appInstance.instanceId))) {
+          continue;
+        }
+
+        TreeMap<Long, Double> values = entry.getValue().series.toMap(from, to);
+        if (values.isEmpty()) {
+          continue;
+        }
+
+        TimelineMetric metric = new TimelineMetric();
+        metric.setMetricName(metricName);
+        metric.setHostName(hostName);
+        metric.setAppId(appInstance.appId);
+        metric.setInstanceId(appInstance.instanceId);
+        metric.setType(entry.getValue().type);
+        metric.setStartTime(values.firstKey());
+        metric.setMetricValues(values);
+        metrics.add(metric);
+      }
+    }
+
+    /**
+     * @return true if no points are left
+     */
+    boolean removeBefore(long oldest) {
+      Iterator<Points> iterator = points.values().iterator();
+      while (iterator.hasNext()) {
+        Points appPoints = iterator.next();
+        appPoints.series.removeBefore(oldest);
+        if (appPoints.series.isEmpty()) {
+          iterator.remove();
+        }
+      }
+      return points.isEmpty();
+    }
+  }
+
+  private static class Points {
+    private final TimelineMetricSeries series = new TimelineMetricSeries();
+    private final String type;
+
+    Points(String type) {
+      this.type = type;
+    }
+  }
+
+  private static class SeriesKey {
+    private final String metricName;
+    private final String hostName;
+
+    SeriesKey(String metricName, String hostName) {
+      this.metricName = metricName;
+      this.hostName = hostName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      SeriesKey that = (SeriesKey) o;
+
+      if (metricName != null ? !metricName.equals(that.metricName) : that.metricName != null)
+        return false;
+      return hostName != null ? hostName.equals(that.hostName) : that.hostName == null;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = metricName != null ? metricName.hashCode() : 0;
+      result = 31 * result + (hostName != null ? hostName.hashCode() : 0);
+      return result;
+    }
+  }
+
+  private static class AppInstance {
+    private final String appId;
+    private final String instanceId;
+
+    AppInstance(String appId, String instanceId) {
+      this.appId = appId;
+      this.instanceId = instanceId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      AppInstance that = (AppInstance) o;
+
+      if (appId != null ? !appId.equals(that.appId) : that.appId != null)
+        return false;
+      return instanceId != null ? instanceId.equals(that.instanceId) : that.instanceId == null;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = appId != null ? appId.hashCode() : 0;
+      result = 31 * result + (instanceId != null ? instanceId.hashCode() : 0);
+      return result;
+    }
+  }
+}
@@ -0,0 +1,377 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataManager;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITE_BUFFER_BATCH_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITE_BUFFER_CAPACITY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITE_BUFFER_COMMIT_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITE_BUFFER_MAX_RETRIES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITE_BUFFER_WRITER_THREADS;
+
+/**
+ * Bounded buffer between metric POSTs and the METRIC_RECORD table. Incoming
+ * series are coalesced by metric name, app, instance and host, and written
+ * by a pool of writer threads in batches, so that POSTs no longer wait on
+ * Phoenix commits. When the buffer holds its capacity of series, further
+ * metrics are rejected and the caller is expected to push back on the sink.
+ * Series from a failed write are put back into the buffer and retried up to
+ * a configured number of times before they are dropped.
+ */
+public class TimelineMetricsWriteBuffer {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsWriteBuffer.class);
+
+  private final PhoenixHBaseAccessor hBaseAccessor;
+  private final TimelineMetricMetadataManager metadataManager;
+  private final int capacity;
+  private final int batchSize;
+  private final long commitIntervalMillis;
+  private final int maxRetries;
+  private final ExecutorService writers;
+
+  // Guarded by this
+  private final LinkedHashMap<SeriesKey, PendingSeries> pending =
+    new LinkedHashMap<SeriesKey, PendingSeries>();
+  private volatile boolean stopped = false;
+
+  private final AtomicLong acceptedCount = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private final AtomicLong writtenCount = new AtomicLong();
+  private final AtomicLong retriedCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+  private final AtomicLong lastWriteLagMillis = new AtomicLong();
+
+  // Counts at the last logStatistics() call
+  private long loggedRejectedCount = 0;
+  private long loggedFailedCount = 0;
+
+  public TimelineMetricsWriteBuffer(PhoenixHBaseAccessor hBaseAccessor,
+                                    TimelineMetricMetadataManager metadataManager,
+                                    Configuration metricsConf) {
+    this.hBaseAccessor = hBaseAccessor;
+    this.metadataManager = metadataManager;
+    this.capacity = Math.max(1, metricsConf.getInt(WRITE_BUFFER_CAPACITY, 100000));
+    this.batchSize = Math.max(1, metricsConf.getInt(WRITE_BUFFER_BATCH_SIZE, 1000));
+    this.commitIntervalMillis = Math.max(1, metricsConf.getLong(WRITE_BUFFER_COMMIT_INTERVAL, 1000));
+    this.maxRetries = Math.max(0, metricsConf.getInt(WRITE_BUFFER_MAX_RETRIES, 3));
+
+    int threads = Math.max(1, metricsConf.getInt(WRITE_BUFFER_WRITER_THREADS, 2));
+    this.writers = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("timeline-metrics-writer-%d").setDaemon(true).build());
+    for (int i = 0; i < threads; i++) {
+      writers.execute(new Writer());
+    }
+
+    LOG.info("Buffering metric writes: capacity = " + capacity + ", writer threads = "
+      + threads + ", batch size = " + batchSize + ", commit interval = "
+      + commitIntervalMillis + " ms, max retries = " + maxRetries);
+  }
+
+  /**
+   * Queue metrics for writing.
+   *
+   * @return false if the buffer is full, in which case none of the metrics
+   * were queued
+   */
+  public boolean offer(TimelineMetrics metrics) {
+    List<TimelineMetric> timelineMetrics = metrics.getMetrics();
+    if (timelineMetrics == null || timelineMetrics.isEmpty()) {
+      return true;
+    }
+
+    long now = System.currentTimeMillis();
+    synchronized (this) {
+      if (stopped) {
+        return false;
+      }
+
+      // Admit the whole request or none of it
+      if (pending.size() + timelineMetrics.size() > capacity) {
+        int newSeries = 0;
+        for (TimelineMetric metric : timelineMetrics) {
+          if (!pending.containsKey(new SeriesKey(metric))) {
+            newSeries++;
+          }
+        }
+        if (pending.size() + newSeries > capacity) {
+          rejectedCount.addAndGet(timelineMetrics.size());
+          return false;
+        }
+      }
+
+      for (TimelineMetric metric : timelineMetrics) {
+        SeriesKey key = new SeriesKey(metric);
+        PendingSeries series = pending.get(key);
+        if (series == null) {
+          pending.put(key, new PendingSeries(metric, now));
+        } else {
+          series.merge(metric);
+        }
+      }
+      acceptedCount.addAndGet(timelineMetrics.size());
+
+      if (pending.size() >= batchSize) {
+        notifyAll();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Stop accepting metrics and write out everything that was buffered.
+   */
+  public void stop() {
+    synchronized (this) {
+      stopped = true;
+      notifyAll();
+    }
+    writers.shutdown();
+    try {
+      if (!writers.awaitTermination(30, TimeUnit.SECONDS)) {
+        LOG.warn("Timed out writing buffered metrics, pending series = " + getPendingCount());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public synchronized int getPendingCount() {
+    return pending.size();
+  }
+
+  public long getAcceptedCount() {
+    return acceptedCount.get();
+  }
+
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  public long getWrittenCount() {
+    return writtenCount.get();
+  }
+
+  /**
+   * @return number of series put back into the buffer after a failed write
+   */
+  public long getRetriedCount() {
+    return retriedCount.get();
+  }
+
+  /**
+   * @return number of series dropped after exhausting their retries
+   */
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  /**
+   * @return time between the oldest series of the last batch being
+   * accepted and the batch being written
+   */
+  public long getIngestLagMillis() {
+    return lastWriteLagMillis.get();
+  }
+
+  /**
+   * Log the buffer statistics, so that a collector falling behind or
+   * dropping metrics shows up in its log. The statistics are logged as a
+   * warning if metrics were rejected or dropped since the last call.
+   */
+  public void logStatistics() {
+    long rejected = rejectedCount.get();
+    long failed = failedCount.get();
+    String statistics = "Metric write buffer: pending series = " + getPendingCount()
+      + ", accepted = " + acceptedCount.get() + ", written = " + writtenCount.get()
+      + ", retried = " + retriedCount.get() + ", rejected = " + rejected
+      + ", dropped = " + failed + ", last write lag = " + lastWriteLagMillis.get() + " ms";
+    if (rejected > loggedRejectedCount || failed > loggedFailedCount) {
+      LOG.warn(statistics);
+    } else {
+      LOG.info(statistics);
+    }
+    loggedRejectedCount = rejected;
+    loggedFailedCount = failed;
+  }
+
+  /**
+   * Take up to a batch of series, waiting for a full batch, the commit
+   * interval or stop.
+   *
+   * @return null when stopped and nothing is left to write
+   */
+  private synchronized List<PendingSeries> takeBatch() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + commitIntervalMillis;
+    while (!stopped && pending.size() < batchSize) {
+      long wait = deadline - System.currentTimeMillis();
+      if (wait <= 0) {
+        break;
+      }
+      wait(wait);
+    }
+
+    if (pending.isEmpty()) {
+      return stopped ? null : new ArrayList<PendingSeries>();
+    }
+
+    List<PendingSeries> batch = new ArrayList<PendingSeries>(Math.min(batchSize, pending.size()));
+    Iterator<PendingSeries> iterator = pending.values().iterator();
+    while (iterator.hasNext() && batch.size() < batchSize) {
+      batch.add(iterator.next());
+      iterator.remove();
+    }
+    return batch;
+  }
+
+  private void write(List<PendingSeries> batch) {
+    List<TimelineMetric> metricList = new ArrayList<TimelineMetric>(batch.size());
+    long oldestAcceptTime = Long.MAX_VALUE;
+    for (PendingSeries series : batch) {
+      metricList.add(series.metric);
+      oldestAcceptTime = Math.min(oldestAcceptTime, series.acceptTime);
+    }
+
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(metricList);
+    try {
+      hBaseAccessor.insertMetricRecordsWithMetadata(metadataManager, metrics);
+      writtenCount.addAndGet(metricList.size());
+      lastWriteLagMillis.set(System.currentTimeMillis() - oldestAcceptTime);
+    } catch (Exception e) {
+      LOG.error("Failed to write " + metricList.size() + " buffered metrics.", e);
+      requeue(batch);
+    }
+  }
+
+  /**
+   * Put the series of a failed batch back into the buffer, merged with any
+   * values of the same series that arrived in the meantime. Series that are
+   * out of retries are dropped. Requeued series were accepted before, so
+   * they are not held to the capacity.
+   */
+  private synchronized void requeue(List<PendingSeries> batch) {
+    int dropped = 0;
+    for (PendingSeries series : batch) {
+      if (series.attempts >= maxRetries) {
+        dropped++;
+        continue;
+      }
+      series.attempts++;
+      SeriesKey key = new SeriesKey(series.metric);
+      PendingSeries newer = pending.remove(key);
+      if (newer != null) {
+        series.merge(newer.metric);
+      }
+      pending.put(key, series);
+    }
+
+    retriedCount.addAndGet(batch.size() - dropped);
+    if (dropped > 0) {
+      failedCount.addAndGet(dropped);
+      LOG.error("Dropped " + dropped + " buffered metrics after " + maxRetries + " retries.");
+    }
+  }
+
+  private class Writer implements Runnable {
+    @Override
+    public void run() {
+      try {
+        List<PendingSeries> batch;
+        while ((batch = takeBatch()) != null) {
+          if (!batch.isEmpty()) {
+            write(batch);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static class PendingSeries {
+    private final TimelineMetric metric;
+    private final long acceptTime;
+    private int attempts = 0;
+
+    PendingSeries(TimelineMetric metric, long acceptTime) {
+      // Merges must not change the caller's metric
+      this.metric = new TimelineMetric(metric);
+      this.acceptTime = acceptTime;
+    }
+
+    void merge(TimelineMetric other) {
+      metric.addMetricValues(other.getMetricValues());
+      metric.setStartTime(Math.min(metric.getStartTime(), other.getStartTime()));
+    }
+  }
+
+  private static class SeriesKey {
+    private final String metricName;
+    private final String appId;
+    private final String instanceId;
+    private final String hostName;
+
+    SeriesKey(TimelineMetric metric) {
+      this.metricName = metric.getMetricName();
+      this.appId = metric.getAppId();
+      this.instanceId = metric.getInstanceId();
+      this.hostName = metric.getHostName();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      SeriesKey that = (SeriesKey) o;
+
+      if (metricName != null ? !metricName.equals(that.metricName) : that.metricName != null)
+        return false;
+      if (appId != null ? !appId.equals(that.appId) : that.appId != null)
+        return false;
+      if (instanceId != null ? !instanceId.equals(that.instanceId) : that.instanceId != null)
+        return false;
+      return hostName != null ? hostName.equals(that.hostName) : that.hostName == null;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = metricName != null ? metricName.hashCode() : 0;
+      result = 31 * result + (appId != null ? appId.hashCode() : 0);
+      result = 31 * result + (instanceId != null ? instanceId.hashCode() : 0);
+      result = 31 * result + (hostName != null ? hostName.hashCode() : 0);
+      return result;
+    }
+  }
+}
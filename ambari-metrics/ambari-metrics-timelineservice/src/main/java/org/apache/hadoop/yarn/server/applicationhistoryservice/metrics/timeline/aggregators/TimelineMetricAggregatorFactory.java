@@ -230,6 +230,18 @@ public class TimelineMetricAggregatorFactory {
   public static TimelineMetricAggregator createTimelineClusterAggregatorSecond(
     PhoenixHBaseAccessor hBaseAccessor, Configuration metricsConf,
     TimelineMetricMetadataManager metadataManager) {
+    return createTimelineClusterAggregatorSecond(hBaseAccessor, metricsConf,
+      metadataManager, null);
+  }
+
+  /**
+   * Second aggregation for cluster, taking finished slices from the
+   * accumulator once it has seen the whole range of a run.
+   */
+  public static TimelineMetricAggregator createTimelineClusterAggregatorSecond(
+    PhoenixHBaseAccessor hBaseAccessor, Configuration metricsConf,
+    TimelineMetricMetadataManager metadataManager,
+    TimelineMetricSliceAccumulator sliceAccumulator) {
 
     String checkpointDir = metricsConf.get(
       TIMELINE_METRICS_AGGREGATOR_CHECKPOINT_DIR, DEFAULT_CHECKPOINT_LOCATION);
@@ -262,7 +274,8 @@ public class TimelineMetricAggregatorFactory {
       inputTableName,
       outputTableName,
       120000l,
-      timeSliceIntervalMillis
+      timeSliceIntervalMillis,
+      sliceAccumulator
     );
   }
 
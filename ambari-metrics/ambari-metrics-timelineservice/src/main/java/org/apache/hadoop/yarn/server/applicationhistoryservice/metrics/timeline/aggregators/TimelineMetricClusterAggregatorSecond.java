@@ -31,6 +31,7 @@ import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,7 +42,11 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 
 /**
  * Aggregates a metric across all hosts in the cluster. Reads metrics from
- * the precision table and saves into the aggregate.
+ * the precision table and saves into the aggregate. When given a
+ * {@link TimelineMetricSliceAccumulator}, finished slices are taken from it
+ * instead, once the precision table has been read up to the first slice it
+ * accumulated in full. With an accumulator, the precision table is sliced
+ * into the same aligned slices that the accumulator uses.
  */
 public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggregator {
   public Long timeSliceIntervalMillis;
@@ -50,6 +55,11 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
   private final TimelineMetricAppAggregator appAggregator;
   // 1 minute client side buffering adjustment
   private final Long serverTimeShiftAdjustment;
+  // Slices accumulated at ingest, null when reading the precision table
+  private final TimelineMetricSliceAccumulator sliceAccumulator;
+  // Per slice sum and count of the host series being sliced
+  private double[] sliceSums = new double[0];
+  private int[] sliceCounts = new int[0];
 
 
   public TimelineMetricClusterAggregatorSecond(String aggregatorName,
@@ -64,6 +74,24 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
                                                String outputTableName,
                                                Long nativeTimeRangeDelay,
                                                Long timeSliceInterval) {
+    this(aggregatorName, metadataManager, hBaseAccessor, metricsConf, checkpointLocation,
+      sleepIntervalMillis, checkpointCutOffMultiplier, aggregatorDisabledParam, tableName,
+      outputTableName, nativeTimeRangeDelay, timeSliceInterval, null);
+  }
+
+  public TimelineMetricClusterAggregatorSecond(String aggregatorName,
+                                               TimelineMetricMetadataManager metadataManager,
+                                               PhoenixHBaseAccessor hBaseAccessor,
+                                               Configuration metricsConf,
+                                               String checkpointLocation,
+                                               Long sleepIntervalMillis,
+                                               Integer checkpointCutOffMultiplier,
+                                               String aggregatorDisabledParam,
+                                               String tableName,
+                                               String outputTableName,
+                                               Long nativeTimeRangeDelay,
+                                               Long timeSliceInterval,
+                                               TimelineMetricSliceAccumulator sliceAccumulator) {
     super(aggregatorName, hBaseAccessor, metricsConf, checkpointLocation,
       sleepIntervalMillis, checkpointCutOffMultiplier, aggregatorDisabledParam,
       tableName, outputTableName, nativeTimeRangeDelay);
@@ -71,13 +99,63 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     appAggregator = new TimelineMetricAppAggregator(metadataManager, metricsConf);
     this.timeSliceIntervalMillis = timeSliceInterval;
     this.serverTimeShiftAdjustment = Long.parseLong(metricsConf.get(SERVER_SIDE_TIMESIFT_ADJUSTMENT, "90000"));
+    this.sliceAccumulator = sliceAccumulator;
+  }
+
+  @Override
+  public boolean doWork(long startTime, long endTime) {
+    // Until the precision table was read up to the accumulated slices
+    if (sliceAccumulator == null || !sliceAccumulator.isCaughtUp()) {
+      return super.doWork(startTime, endTime);
+    }
+
+    LOG.info("Start aggregation cycle from accumulated slices @ " + new Date() +
+      ", endTime = " + new Date(endTime));
+
+    final Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+
+    boolean saved = false;
+    appAggregator.init();
+    try {
+      sliceAccumulator.flush(getSliceEndTime(endTime), new TimelineMetricSliceAccumulator.SliceHandler() {
+        @Override
+        public void handle(TimelineClusterMetric clusterMetric, String hostname, double average) {
+          updateClusterAggregate(aggregateClusterMetrics, clusterMetric, hostname, average);
+        }
+      });
+      aggregateClusterMetrics.putAll(appAggregator.getAggregateClusterMetrics());
+
+      LOG.info("Saving " + aggregateClusterMetrics.size() + " metric aggregates.");
+      hBaseAccessor.saveClusterAggregateRecords(aggregateClusterMetrics);
+      saved = true;
+    } catch (SQLException e) {
+      LOG.error("Exception during aggregating metrics.", e);
+      return false;
+    } finally {
+      if (!saved) {
+        // Hand the slices over again on the next run
+        sliceAccumulator.restoreLastFlush();
+      }
+      appAggregator.cleanup();
+    }
+
+    LOG.info("End aggregation cycle @ " + new Date());
+    return true;
   }
 
   @Override
   protected void aggregate(ResultSet rs, long startTime, long endTime) throws SQLException, IOException {
     // Account for time shift due to client side buffering by shifting the
     // timestamps with the difference between server time and series start time
-    List<Long[]> timeSlices = getTimeSlices(startTime - serverTimeShiftAdjustment, endTime);
+    long sliceEndTime = endTime;
+    List<Long[]> timeSlices;
+    if (sliceAccumulator == null) {
+      timeSlices = getTimeSlices(startTime - serverTimeShiftAdjustment, endTime);
+    } else {
+      sliceEndTime = getSliceEndTime(endTime);
+      timeSlices = getAlignedTimeSlices(startTime - serverTimeShiftAdjustment, sliceEndTime);
+    }
     // Initialize app aggregates for host metrics
     appAggregator.init();
     Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
@@ -86,6 +164,21 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     LOG.info("Saving " + aggregateClusterMetrics.size() + " metric aggregates.");
     hBaseAccessor.saveClusterAggregateRecords(aggregateClusterMetrics);
     appAggregator.cleanup();
+
+    if (sliceAccumulator != null) {
+      // Accumulated slices are flushed from where this run stopped
+      sliceAccumulator.skipTo(sliceEndTime);
+    }
+  }
+
+  /**
+   * Return the end of the slices saved by a run ending at endTime with an
+   * accumulator. Only slices which the client side buffering time has
+   * passed are saved, so that the accumulator can continue after them.
+   */
+  private long getSliceEndTime(long endTime) {
+    long flushTime = Math.min(endTime, System.currentTimeMillis()) - serverTimeShiftAdjustment;
+    return (flushTime / timeSliceIntervalMillis) * timeSliceIntervalMillis;
   }
 
   @Override
@@ -117,6 +210,25 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     return timeSlices;
   }
 
+  /**
+   * Return the time slices aligned to the slice interval, the same as the
+   * accumulator uses, which start at or after startTime and end by endTime.
+   */
+  private List<Long[]> getAlignedTimeSlices(long startTime, long endTime) {
+    long sliceStartTime = (startTime + timeSliceIntervalMillis - 1) /
+      timeSliceIntervalMillis * timeSliceIntervalMillis;
+    List<Long[]> timeSlices = new ArrayList<Long[]>();
+    while (sliceStartTime + timeSliceIntervalMillis <= endTime) {
+      timeSlices.add(new Long[] { sliceStartTime, sliceStartTime + timeSliceIntervalMillis });
+      sliceStartTime += timeSliceIntervalMillis;
+    }
+    if (sliceSums.length < timeSlices.size()) {
+      sliceSums = new double[timeSlices.size()];
+      sliceCounts = new int[timeSlices.size()];
+    }
+    return timeSlices;
+  }
+
   private Map<TimelineClusterMetric, MetricClusterAggregate> aggregateMetricsFromResultSet(ResultSet rs, List<Long[]> timeSlices)
       throws SQLException, IOException {
     Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
@@ -159,28 +271,15 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
   private void processAggregateClusterMetrics(Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics,
                                               TimelineMetric metric, List<Long[]> timeSlices) {
     // Create time slices
-    Map<TimelineClusterMetric, Double> clusterMetrics = sliceFromTimelineMetric(metric, timeSlices);
+    Map<TimelineClusterMetric, Double> clusterMetrics = sliceAccumulator == null ?
+      sliceFromTimelineMetric(metric, timeSlices) : sliceAlignedFromTimelineMetric(metric, timeSlices);
 
     if (clusterMetrics != null && !clusterMetrics.isEmpty()) {
       for (Map.Entry<TimelineClusterMetric, Double> clusterMetricEntry :
         clusterMetrics.entrySet()) {
 
-        TimelineClusterMetric clusterMetric = clusterMetricEntry.getKey();
-        Double avgValue = clusterMetricEntry.getValue();
-
-        MetricClusterAggregate aggregate = aggregateClusterMetrics.get(clusterMetric);
-
-        if (aggregate == null) {
-          aggregate = new MetricClusterAggregate(avgValue, 1, null, avgValue, avgValue);
-          aggregateClusterMetrics.put(clusterMetric, aggregate);
-        } else {
-          aggregate.updateSum(avgValue);
-          aggregate.updateNumberOfHosts(1);
-          aggregate.updateMax(avgValue);
-          aggregate.updateMin(avgValue);
-        }
-        // Update app level aggregates
-        appAggregator.processTimelineClusterMetric(clusterMetric, metric.getHostName(), avgValue);
+        updateClusterAggregate(aggregateClusterMetrics, clusterMetricEntry.getKey(),
+          metric.getHostName(), clusterMetricEntry.getValue());
       }
     }
   }
@@ -235,6 +334,62 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     return timelineClusterMetricMap;
   }
 
+  /**
+   * Slice a metric into aligned slices, averaging all points of a slice the
+   * same way the accumulator does. The slice is found by division instead of
+   * a search through the slices.
+   */
+  private Map<TimelineClusterMetric, Double> sliceAlignedFromTimelineMetric(
+      TimelineMetric timelineMetric, List<Long[]> timeSlices) {
+
+    if (timelineMetric.getMetricValues().isEmpty() || timeSlices.isEmpty()) {
+      return null;
+    }
+
+    long firstSlice = timeSlices.get(0)[0] / timeSliceIntervalMillis;
+    int sliceCount = timeSlices.size();
+    int firstIndex = sliceCount;
+    int lastIndex = -1;
+
+    for (Map.Entry<Long, Double> metric : timelineMetric.getMetricValues().entrySet()) {
+      // TODO: investigate null values - pre filter
+      if (metric.getValue() == null) {
+        continue;
+      }
+
+      long slice = metric.getKey() / timeSliceIntervalMillis - firstSlice;
+      if (slice < 0 || slice >= sliceCount) {
+        continue;
+      }
+
+      // Metric is within desired time range, sum / count to get the
+      // average for all points in a slice
+      int index = (int) slice;
+      sliceSums[index] += metric.getValue();
+      sliceCounts[index]++;
+      firstIndex = Math.min(firstIndex, index);
+      lastIndex = Math.max(lastIndex, index);
+    }
+
+    Map<TimelineClusterMetric, Double> timelineClusterMetricMap =
+      new HashMap<TimelineClusterMetric, Double>();
+    for (int index = firstIndex; index <= lastIndex; index++) {
+      if (sliceCounts[index] > 0) {
+        TimelineClusterMetric clusterMetric = new TimelineClusterMetric(
+          timelineMetric.getMetricName(),
+          timelineMetric.getAppId(),
+          timelineMetric.getInstanceId(),
+          timeSlices.get(index)[0],
+          timelineMetric.getType());
+        timelineClusterMetricMap.put(clusterMetric, sliceSums[index] / sliceCounts[index]);
+      }
+      sliceSums[index] = 0;
+      sliceCounts[index] = 0;
+    }
+
+    return timelineClusterMetricMap;
+  }
+
   /**
    * Return beginning of the time slice into which the metric fits.
    */
@@ -247,4 +402,21 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     return -1l;
   }
 
+  private void updateClusterAggregate(Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics,
+                                      TimelineClusterMetric clusterMetric, String hostname, double avgValue) {
+    MetricClusterAggregate aggregate = aggregateClusterMetrics.get(clusterMetric);
+
+    if (aggregate == null) {
+      aggregate = new MetricClusterAggregate(avgValue, 1, null, avgValue, avgValue);
+      aggregateClusterMetrics.put(clusterMetric, aggregate);
+    } else {
+      aggregate.updateSum(avgValue);
+      aggregate.updateNumberOfHosts(1);
+      aggregate.updateMax(avgValue);
+      aggregate.updateMin(avgValue);
+    }
+    // Update app level aggregates
+    appAggregator.processTimelineClusterMetric(clusterMetric, hostname, avgValue);
+  }
+
 }
@@ -0,0 +1,402 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_SECOND_SLEEP_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_SECOND_STREAMING_MAX_SERIES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_TIMESLICE_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.SERVER_SIDE_TIMESIFT_ADJUSTMENT;
+
+/**
+ * Folds posted host metrics into per time slice sums and counts as they
+ * arrive, so that {@link TimelineMetricClusterAggregatorSecond} can save
+ * cluster aggregates without reading METRIC_RECORD back.
+ * <p/>
+ * Slices are aligned to the slice interval and each host series keeps a
+ * ring of slices in primitive arrays, indexed by slice number. Slices are
+ * flushed once the server time shift adjustment has passed their end; points
+ * for slices already flushed, or too far in the future to fit the ring, are
+ * dropped and counted.
+ * <p/>
+ * Until the aggregator has read the precision table up to the first slice
+ * that was accumulated in full, it reports each run with {@link #skipTo}, so
+ * that flushing continues exactly where the last rescan stopped.
+ */
+public class TimelineMetricSliceAccumulator {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricSliceAccumulator.class);
+
+  private final long sliceIntervalMillis;
+  private final int ringSize;
+  private final int maxSeries;
+  // Start of the first slice that was accumulated in full
+  private long startTime;
+
+  // Guarded by this
+  private final Map<SeriesKey, HostSlices> seriesMap = new HashMap<SeriesKey, HostSlices>();
+  // Start of the first slice that was not flushed yet
+  private long watermark;
+  // Whether slices before the start time were saved from the precision table
+  private boolean caughtUp = false;
+  // Slices handed over by the last flush, until it is known to be saved
+  private final List<FlushedSlice> lastFlush = new ArrayList<FlushedSlice>();
+  private long lastFlushWatermark;
+
+  private final AtomicLong lateCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  /**
+   * Handles the average of one host series over one slice.
+   */
+  public interface SliceHandler {
+    void handle(TimelineClusterMetric clusterMetric, String hostname, double average);
+  }
+
+  public TimelineMetricSliceAccumulator(Configuration metricsConf) {
+    this(SECONDS.toMillis(metricsConf.getInt(CLUSTER_AGGREGATOR_TIMESLICE_INTERVAL, 30)),
+      // Slices stay open for the time shift adjustment and until the next run
+      Long.parseLong(metricsConf.get(SERVER_SIDE_TIMESIFT_ADJUSTMENT, "90000"))
+        + 2 * SECONDS.toMillis(metricsConf.getLong(CLUSTER_AGGREGATOR_SECOND_SLEEP_INTERVAL, 120L)),
+      metricsConf.getInt(CLUSTER_AGGREGATOR_SECOND_STREAMING_MAX_SERIES, 1000000),
+      System.currentTimeMillis());
+    LOG.info("Aggregating cluster metrics at ingest: slice interval = " + sliceIntervalMillis
+      + " ms, open slices = " + ringSize + ", max series = " + maxSeries);
+  }
+
+  TimelineMetricSliceAccumulator(long sliceIntervalMillis, long horizonMillis,
+                                 int maxSeries, long startTime) {
+    this.sliceIntervalMillis = Math.max(1, sliceIntervalMillis);
+    this.ringSize = (int) (horizonMillis / this.sliceIntervalMillis) + 2;
+    this.maxSeries = Math.max(1, maxSeries);
+    // The slice the accumulator started in was not seen in full
+    this.startTime = (startTime / this.sliceIntervalMillis + 1) * this.sliceIntervalMillis;
+    this.watermark = this.startTime;
+  }
+
+  /**
+   * Add posted host metrics to their slices.
+   */
+  public synchronized void add(TimelineMetrics metrics) {
+    long firstSlice = watermark / sliceIntervalMillis;
+    long endSlice = firstSlice + ringSize;
+
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      if (metric.getMetricValues().isEmpty()) {
+        continue;
+      }
+
+      SeriesKey key = new SeriesKey(metric);
+      HostSlices slices = seriesMap.get(key);
+      if (slices == null) {
+        if (seriesMap.size() >= maxSeries) {
+          droppedCount.addAndGet(metric.getMetricValues().size());
+          continue;
+        }
+        slices = new HostSlices(metric.getType(), ringSize);
+        seriesMap.put(key, slices);
+      }
+
+      for (Map.Entry<Long, Double> entry : metric.getMetricValues().entrySet()) {
+        Double value = entry.getValue();
+        if (value == null) {
+          continue;
+        }
+        long slice = entry.getKey() / sliceIntervalMillis;
+        if (slice < firstSlice) {
+          lateCount.incrementAndGet();
+        } else if (slice >= endSlice) {
+          droppedCount.incrementAndGet();
+          if (!caughtUp) {
+            // The precision table has to be read up to after this slice
+            startTime = Math.max(startTime, (slice + 1) * sliceIntervalMillis);
+          }
+        } else {
+          slices.add(slice, value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Record that the aggregator saved every slice before the given time from
+   * the precision table. Accumulated slices before it are forgotten, and
+   * flushing starts at it once it is past the start time.
+   */
+  public synchronized void skipTo(long time) {
+    long slice = time / sliceIntervalMillis;
+    if (slice * sliceIntervalMillis > watermark) {
+      discard(slice);
+      watermark = slice * sliceIntervalMillis;
+    }
+    if (watermark >= startTime) {
+      caughtUp = true;
+    }
+    lastFlush.clear();
+    lastFlushWatermark = watermark;
+  }
+
+  /**
+   * @return true once the slices from the watermark on were accumulated in
+   * full, so that they can be flushed instead of read from the precision
+   * table
+   */
+  public synchronized boolean isCaughtUp() {
+    return caughtUp;
+  }
+
+  /**
+   * Hand over every slice that ends at or before the given time and forget
+   * it. Series without data since the last flush are dropped. The slices can
+   * be put back with {@link #restoreLastFlush()} if they could not be saved.
+   *
+   * @return the number of slice averages handled
+   */
+  public synchronized int flush(long endTime, SliceHandler handler) {
+    lastFlush.clear();
+    lastFlushWatermark = watermark;
+
+    long endSlice = endTime / sliceIntervalMillis;
+    long firstSlice = watermark / sliceIntervalMillis;
+    if (endSlice <= firstSlice) {
+      return 0;
+    }
+
+    int handled = 0;
+    Iterator<Map.Entry<SeriesKey, HostSlices>> iterator = seriesMap.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<SeriesKey, HostSlices> entry = iterator.next();
+      SeriesKey key = entry.getKey();
+      HostSlices slices = entry.getValue();
+
+      boolean pending = false;
+      for (int i = 0; i < ringSize; i++) {
+        long slice = slices.sliceNumbers[i];
+        if (slices.counts[i] == 0) {
+          continue;
+        }
+        if (slice >= endSlice) {
+          pending = true;
+          continue;
+        }
+        TimelineClusterMetric clusterMetric = new TimelineClusterMetric(key.metricName,
+          key.appId, key.instanceId, slice * sliceIntervalMillis, slices.type);
+        handler.handle(clusterMetric, key.hostName, slices.sums[i] / slices.counts[i]);
+        lastFlush.add(new FlushedSlice(key, slices.type, slice, slices.sums[i], slices.counts[i]));
+        slices.counts[i] = 0;
+        slices.sums[i] = 0;
+        handled++;
+      }
+
+      if (!pending && !slices.touched) {
+        iterator.remove();
+      } else {
+        slices.touched = false;
+      }
+    }
+
+    watermark = endSlice * sliceIntervalMillis;
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Flushed " + handled + " slices up to " + watermark + ", series = "
+        + seriesMap.size() + ", late points = " + lateCount.get()
+        + ", dropped points = " + droppedCount.get());
+    }
+    return handled;
+  }
+
+  /**
+   * Put the slices handed over by the last flush back, so that the next flush
+   * hands them over again. Late points are still dropped for them, and a
+   * slice is dropped if its slot was taken by a newer slice in the meantime.
+   */
+  public synchronized void restoreLastFlush() {
+    for (FlushedSlice flushed : lastFlush) {
+      HostSlices slices = seriesMap.get(flushed.key);
+      if (slices == null) {
+        slices = new HostSlices(flushed.type, ringSize);
+        seriesMap.put(flushed.key, slices);
+      }
+      if (!slices.restore(flushed.slice, flushed.sum, flushed.count)) {
+        droppedCount.addAndGet(flushed.count);
+      }
+    }
+    watermark = Math.min(watermark, lastFlushWatermark);
+    lastFlush.clear();
+  }
+
+  /**
+   * Forget the slices before the given slice number.
+   */
+  private void discard(long endSlice) {
+    for (HostSlices slices : seriesMap.values()) {
+      for (int i = 0; i < ringSize; i++) {
+        if (slices.counts[i] > 0 && slices.sliceNumbers[i] < endSlice) {
+          slices.counts[i] = 0;
+          slices.sums[i] = 0;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return start of the first slice that was accumulated in full
+   */
+  public synchronized long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * @return start of the first slice that was not flushed yet
+   */
+  public synchronized long getWatermark() {
+    return watermark;
+  }
+
+  public synchronized int getSeriesCount() {
+    return seriesMap.size();
+  }
+
+  /**
+   * @return points dropped because their slice had already been flushed
+   */
+  public long getLateCount() {
+    return lateCount.get();
+  }
+
+  /**
+   * @return points dropped for being too far ahead or exceeding max series
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * Sums and counts of the open slices of one host series.
+   */
+  private static class HostSlices {
+    private final String type;
+    private final long[] sliceNumbers;
+    private final double[] sums;
+    private final int[] counts;
+    private boolean touched = true;
+
+    HostSlices(String type, int ringSize) {
+      this.type = type;
+      this.sliceNumbers = new long[ringSize];
+      this.sums = new double[ringSize];
+      this.counts = new int[ringSize];
+      Arrays.fill(sliceNumbers, -1);
+    }
+
+    void add(long slice, double value) {
+      int index = (int) (slice % sliceNumbers.length);
+      if (sliceNumbers[index] != slice) {
+        // The slot held a slice that was flushed already
+        sliceNumbers[index] = slice;
+        sums[index] = 0;
+        counts[index] = 0;
+      }
+      sums[index] += value;
+      counts[index]++;
+      touched = true;
+    }
+
+    boolean restore(long slice, double sum, int count) {
+      int index = (int) (slice % sliceNumbers.length);
+      if (sliceNumbers[index] != slice && counts[index] > 0) {
+        return false;
+      }
+      sliceNumbers[index] = slice;
+      sums[index] = sum;
+      counts[index] = count;
+      touched = true;
+      return true;
+    }
+  }
+
+  /**
+   * Sum and count of one slice of a host series handed over by a flush.
+   */
+  private static class FlushedSlice {
+    private final SeriesKey key;
+    private final String type;
+    private final long slice;
+    private final double sum;
+    private final int count;
+
+    FlushedSlice(SeriesKey key, String type, long slice, double sum, int count) {
+      this.key = key;
+      this.type = type;
+      this.slice = slice;
+      this.sum = sum;
+      this.count = count;
+    }
+  }
+
+  private static class SeriesKey {
+    private final String metricName;
+    private final String appId;
+    private final String instanceId;
+    private final String hostName;
+
+    SeriesKey(TimelineMetric metric) {
+      this.metricName = metric.getMetricName();
+      this.appId = metric.getAppId();
+      this.instanceId = metric.getInstanceId();
+      this.hostName = metric.getHostName();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      SeriesKey that = (SeriesKey) o;
+
+      if (metricName != null ? !metricName.equals(that.metricName) : that.metricName != null)
+        return false;
+      if (appId != null ? !appId.equals(that.appId) : that.appId != null)
+        return false;
+      if (instanceId != null ? !instanceId.equals(that.instanceId) : that.instanceId != null)
+        return false;
+      return hostName != null ? hostName.equals(that.hostName) : that.hostName == null;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = metricName != null ? metricName.hashCode() : 0;
+      result = 31 * result + (appId != null ? appId.hashCode() : 0);
+      result = 31 * result + (instanceId != null ? instanceId.hashCode() : 0);
+      result = 31 * result + (hostName != null ? hostName.hashCode() : 0);
+      return result;
+    }
+  }
+}
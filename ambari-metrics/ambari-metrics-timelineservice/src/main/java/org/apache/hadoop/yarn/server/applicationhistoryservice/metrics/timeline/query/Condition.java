@@ -43,5 +43,7 @@ public interface Condition {
   void setFetchSize(Integer fetchSize);
   void addOrderByColumn(String column);
   void setNoLimit();
+  boolean isStreaming();
+  void setStreaming();
   boolean doUpdate();
 }
@@ -34,6 +34,7 @@ public class DefaultCondition implements Condition {
   Integer limit;
   boolean grouped;
   boolean noLimit = false;
+  boolean streaming = false;
   Integer fetchSize;
   String statement;
   Set<String> orderByColumns = new LinkedHashSet<String>();
@@ -199,6 +200,16 @@ public class DefaultCondition implements Condition {
     this.noLimit = true;
   }
 
+  @Override
+  public boolean isStreaming() {
+    return streaming;
+  }
+
+  @Override
+  public void setStreaming() {
+    this.streaming = true;
+  }
+
   @Override
   public boolean doUpdate() {
     return false;
@@ -272,6 +283,7 @@ public class DefaultCondition implements Condition {
       ", grouped=" + grouped +
       ", orderBy=" + orderByColumns +
       ", noLimit=" + noLimit +
+      ", streaming=" + streaming +
       '}';
   }
 }
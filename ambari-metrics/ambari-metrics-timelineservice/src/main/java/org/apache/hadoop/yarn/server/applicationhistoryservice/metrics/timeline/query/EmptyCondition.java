@@ -128,6 +128,16 @@ public class EmptyCondition implements Condition {
 
   }
 
+  @Override
+  public boolean isStreaming() {
+    return false;
+  }
+
+  @Override
+  public void setStreaming() {
+
+  }
+
   public void setDoUpdate(boolean doUpdate) {
     this.doUpdate = doUpdate;
   }
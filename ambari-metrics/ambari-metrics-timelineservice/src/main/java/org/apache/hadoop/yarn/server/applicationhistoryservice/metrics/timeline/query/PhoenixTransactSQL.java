@@ -447,12 +447,16 @@ public class PhoenixTransactSQL {
     }
   }
 
-  private static void validateRowCountLimit(Condition condition) {
+  public static void validateRowCountLimit(Condition condition) {
     if (condition.getMetricNames() == null
       || condition.getMetricNames().isEmpty()) {
       //aggregator can use empty metrics query
       return;
     }
+    if (condition.isStreaming() && condition.getLimit() == null) {
+      //unlimited streamed queries are written series by series, not collected
+      return;
+    }
 
     long range = condition.getEndTime() - condition.getStartTime();
     long rowsPerMetric;
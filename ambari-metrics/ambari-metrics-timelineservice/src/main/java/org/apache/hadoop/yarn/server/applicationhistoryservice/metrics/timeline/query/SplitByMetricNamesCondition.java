@@ -168,6 +168,16 @@ public class SplitByMetricNamesCondition implements Condition {
     adaptee.setNoLimit();
   }
 
+  @Override
+  public boolean isStreaming() {
+    return adaptee.isStreaming();
+  }
+
+  @Override
+  public void setStreaming() {
+    adaptee.setStreaming();
+  }
+
   @Override
   public boolean doUpdate() {
     return false;
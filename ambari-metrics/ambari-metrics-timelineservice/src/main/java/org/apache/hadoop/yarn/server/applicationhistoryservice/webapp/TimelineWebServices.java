@@ -20,6 +20,8 @@ package org.apache.hadoop.yarn.server.applicationhistoryservice.webapp;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -34,6 +36,8 @@ import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse;
 import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConsumer;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricsBufferFullException;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricStore;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.EntityIdentifier;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.GenericObjectMapper;
@@ -42,6 +46,11 @@ import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.Timeline
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.TimelineStore;
 import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
 import org.apache.hadoop.yarn.webapp.BadRequestException;
+import org.apache.hadoop.yarn.webapp.YarnJacksonJaxbJsonProvider;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -56,11 +65,13 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -81,6 +92,16 @@ public class TimelineWebServices {
 
   private static final Log LOG = LogFactory.getLog(TimelineWebServices.class);
 
+  private static final ObjectMapper STREAMING_MAPPER = new ObjectMapper();
+  static {
+    YarnJacksonJaxbJsonProvider.configObjectMapper(STREAMING_MAPPER);
+    STREAMING_MAPPER.getJsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    // Let the spool decide when to write
+    STREAMING_MAPPER.configure(SerializationConfig.Feature.FLUSH_AFTER_WRITE_VALUE, false);
+  }
+  // Size of a streamed response which is kept in memory before spooling to disk
+  private static final int STREAMING_SPOOL_THRESHOLD = 8 * 1024 * 1024;
+
   private TimelineStore store;
   private TimelineMetricStore timelineMetricStore;
 
@@ -277,6 +298,10 @@ public class TimelineWebServices {
 
       return timelineMetricStore.putMetrics(metrics);
 
+    } catch (TimelineMetricsBufferFullException e) {
+      // Tell the sink to back off instead of failing the whole collector
+      LOG.warn(e.getMessage());
+      throw new WebApplicationException(e, Response.Status.SERVICE_UNAVAILABLE);
     } catch (Exception e) {
       LOG.error("Error saving metrics.", e);
       throw new WebApplicationException(e, Response.Status.INTERNAL_SERVER_ERROR);
@@ -342,12 +367,13 @@ public class TimelineWebServices {
    * @param precision Precision [ seconds, minutes, hours ]
    * @param limit limit on total number of {@link TimelineMetric} records
    *              retrieved.
-   * @return {@link @TimelineMetrics}
+   * @return {@link @TimelineMetrics}, streamed series by series if the
+   * store has streaming queries enabled
    */
   @GET
   @Path("/metrics")
   @Produces({ MediaType.APPLICATION_JSON })
-  public TimelineMetrics getTimelineMetrics(
+  public Response getTimelineMetrics(
     @Context HttpServletRequest req,
     @Context HttpServletResponse res,
     @QueryParam("metricNames") String metricNames,
@@ -370,11 +396,31 @@ public class TimelineWebServices {
           "precision: " + precision);
       }
 
-      return timelineMetricStore.getTimelineMetrics(
-        parseListStr(metricNames, ","), parseListStr(hostname, ","), appId, instanceId,
-        parseLongStr(startTime), parseLongStr(endTime),
-        Precision.getPrecision(precision), parseIntStr(limit),
-        parseBoolean(grouped));
+      List<String> metricNameList = parseListStr(metricNames, ",");
+      List<String> hostnameList = parseListStr(hostname, ",");
+      Long start = parseLongStr(startTime);
+      Long end = parseLongStr(endTime);
+      Precision queryPrecision = Precision.getPrecision(precision);
+      Integer queryLimit = parseIntStr(limit);
+      boolean queryGrouped = parseBoolean(grouped);
+
+      // Aggregates across hosts hold one series per metric, so only host
+      // metrics are streamed. The query is validated here, so that invalid
+      // queries are rejected before any rows are read.
+      if (timelineMetricStore.isStreamingQueryEnabled()
+          && hostnameList != null && !hostnameList.isEmpty()) {
+        timelineMetricStore.validateTimelineMetricsQuery(metricNameList,
+          hostnameList, appId, instanceId, start, end, queryPrecision,
+          queryLimit, queryGrouped);
+
+        return Response.ok(new MetricsStreamingOutput(metricNameList,
+          hostnameList, appId, instanceId, start, end, queryPrecision,
+          queryLimit, queryGrouped)).build();
+      }
+
+      return Response.ok(timelineMetricStore.getTimelineMetrics(
+        metricNameList, hostnameList, appId, instanceId, start, end,
+        queryPrecision, queryLimit, queryGrouped)).build();
 
     } catch (NumberFormatException ne) {
       throw new BadRequestException("startTime and limit should be numeric " +
@@ -394,6 +440,80 @@ public class TimelineWebServices {
     }
   }
 
+  /**
+   * Writes the {@link TimelineMetrics} JSON of a query incrementally, one
+   * series at a time. The query must have been validated with
+   * {@link TimelineMetricStore#validateTimelineMetricsQuery}.
+   * <p/>
+   * The JSON is written to a spool, in memory up to
+   * {@link #STREAMING_SPOOL_THRESHOLD} and in a temporary file beyond it, and
+   * only copied to the client once the query is done. A slow client then does
+   * not hold the Phoenix connection and its scanners open, and a failure
+   * while reading is returned as an error instead of a truncated response.
+   */
+  private class MetricsStreamingOutput implements StreamingOutput {
+    private final List<String> metricNames;
+    private final List<String> hostnames;
+    private final String appId;
+    private final String instanceId;
+    private final Long startTime;
+    private final Long endTime;
+    private final Precision precision;
+    private final Integer limit;
+    private final boolean grouped;
+
+    private MetricsStreamingOutput(List<String> metricNames, List<String> hostnames,
+        String appId, String instanceId, Long startTime, Long endTime,
+        Precision precision, Integer limit, boolean grouped) {
+      this.metricNames = metricNames;
+      this.hostnames = hostnames;
+      this.appId = appId;
+      this.instanceId = instanceId;
+      this.startTime = startTime;
+      this.endTime = endTime;
+      this.precision = precision;
+      this.limit = limit;
+      this.grouped = grouped;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+      DeferredFileOutputStream spool = new DeferredFileOutputStream(
+        STREAMING_SPOOL_THRESHOLD, "metrics", ".json", null);
+      try {
+        final JsonGenerator generator = STREAMING_MAPPER.getJsonFactory()
+          .createJsonGenerator(spool, JsonEncoding.UTF8);
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("metrics");
+
+        try {
+          timelineMetricStore.getTimelineMetrics(metricNames, hostnames, appId,
+            instanceId, startTime, endTime, precision, limit, grouped,
+            new TimelineMetricConsumer() {
+              @Override
+              public void accept(TimelineMetric metric) throws IOException {
+                STREAMING_MAPPER.writeValue(generator, metric);
+              }
+            });
+        } catch (SQLException sql) {
+          throw new IOException("Unable to read metrics", sql);
+        }
+
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+        spool.close();
+
+        spool.writeTo(output);
+      } finally {
+        spool.close();
+        if (spool.getFile() != null) {
+          FileUtils.deleteQuietly(spool.getFile());
+        }
+      }
+    }
+  }
+
   @GET
   @Path("/metrics/metadata")
   @Produces({ MediaType.APPLICATION_JSON })
@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MetricValuesCodecTest {
+
+  @Test
+  public void testCompressedRoundTrip() throws Exception {
+    Random random = new Random(42);
+    for (int series = 0; series < 200; series++) {
+      TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+      long time = 1450000000000L + random.nextInt(100000);
+      double value = random.nextDouble() * 100;
+
+      int count = random.nextInt(300);
+      for (int i = 0; i < count; i++) {
+        // regular, jittered and very large intervals
+        time += series % 3 == 0 ? 10000 : 1 + (long) (random.nextDouble() *
+          (series % 2 == 0 ? 100000000000L : 20000));
+        if (random.nextInt(4) == 0) {
+          value = random.nextDouble() * 1000000;
+        }
+        values.put(time, series % 7 == 0 ? Double.NaN : value);
+      }
+
+      String encoded = MetricValuesCodec.COMPRESSED.encode(values);
+      assertThat(encoded).startsWith(MetricValuesCodec.COMPRESSED_PREFIX);
+      assertThat(MetricValuesCodec.decodeValues(encoded)).isEqualTo(values);
+    }
+  }
+
+  @Test
+  public void testCompressedIsSmallerThanJson() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    for (int i = 0; i < 360; i++) {
+      values.put(1450000000000L + i * 10000L, (double) (i % 10));
+    }
+
+    String json = MetricValuesCodec.JSON.encode(values);
+    String compressed = MetricValuesCodec.COMPRESSED.encode(values);
+    assertThat(compressed.length()).isLessThan(json.length() / 5);
+  }
+
+  @Test
+  public void testReadsJsonRows() throws Exception {
+    TreeMap<Long, Double> values = MetricValuesCodec.decodeValues("{\"1450000000000\":1.5,\"1450000010000\":2.0}");
+    assertThat(values).hasSize(2);
+    assertThat(values.get(1450000000000L)).isEqualTo(1.5);
+    assertThat(values.get(1450000010000L)).isEqualTo(2.0);
+  }
+
+  @Test
+  public void testNullValuesFallBackToJson() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1L, 1.0);
+    values.put(2L, null);
+
+    String encoded = MetricValuesCodec.COMPRESSED.encode(values);
+    assertThat(encoded).startsWith("{");
+    assertThat(MetricValuesCodec.decodeValues(encoded)).isEqualTo(values);
+  }
+
+  @Test
+  public void testFromName() throws Exception {
+    assertThat(MetricValuesCodec.fromName("compressed")).isEqualTo(MetricValuesCodec.COMPRESSED);
+    assertThat(MetricValuesCodec.fromName("JSON")).isEqualTo(MetricValuesCodec.JSON);
+    assertThat(MetricValuesCodec.fromName("unknown")).isEqualTo(MetricValuesCodec.JSON);
+    assertThat(MetricValuesCodec.fromName(null)).isEqualTo(MetricValuesCodec.JSON);
+  }
+}
@@ -33,6 +33,8 @@ import java.util.Set;
 import java.util.TreeMap;
 
 public class TestTimelineMetricStore implements TimelineMetricStore {
+  private boolean streamingQueryEnabled = false;
+
   @Override
   public TimelineMetrics getTimelineMetrics(List<String> metricNames,
       List<String> hostnames, String applicationId, String instanceId, Long startTime,
@@ -70,6 +72,37 @@ public class TestTimelineMetricStore implements TimelineMetricStore {
     return timelineMetrics;
   }
 
+  @Override
+  public void getTimelineMetrics(List<String> metricNames,
+      List<String> hostnames, String applicationId, String instanceId, Long startTime,
+      Long endTime, Precision precision, Integer limit, boolean groupedByHosts,
+      TimelineMetricConsumer consumer) throws SQLException, IOException {
+    for (TimelineMetric metric : getTimelineMetrics(metricNames, hostnames,
+        applicationId, instanceId, startTime, endTime, precision, limit,
+        groupedByHosts).getMetrics()) {
+      consumer.accept(metric);
+    }
+  }
+
+  @Override
+  public void validateTimelineMetricsQuery(List<String> metricNames,
+      List<String> hostnames, String applicationId, String instanceId,
+      Long startTime, Long endTime, Precision precision, Integer limit,
+      boolean groupedByHosts) {
+    if (metricNames == null || metricNames.isEmpty()) {
+      throw new IllegalArgumentException("No metric name filter specified.");
+    }
+  }
+
+  @Override
+  public boolean isStreamingQueryEnabled() {
+    return streamingQueryEnabled;
+  }
+
+  public void setStreamingQueryEnabled(boolean streamingQueryEnabled) {
+    this.streamingQueryEnabled = streamingQueryEnabled;
+  }
+
   @Override
   public TimelineMetric getTimelineMetric(String metricName, List<String> hostname,
       String applicationId, String instanceId, Long startTime, Long endTime,
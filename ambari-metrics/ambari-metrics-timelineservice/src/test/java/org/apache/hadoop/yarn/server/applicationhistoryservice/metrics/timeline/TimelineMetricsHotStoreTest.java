@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimelineMetricsHotStoreTest {
+
+  private static final long WINDOW = 3600000L;
+  private static final long ALLOWANCE = 300000L;
+
+  @Test
+  public void testQueryWithinWindow() throws Exception {
+    long now = System.currentTimeMillis();
+    TimelineMetricsHotStore hotStore = new TimelineMetricsHotStore(WINDOW, 100, now - 600000L, ALLOWANCE);
+
+    hotStore.put(metrics(
+      metric("cpu_user", "h1", "HOST", now - 30000L, now - 20000L, now - 10000L),
+      metric("cpu_user", "h2", "HOST", now - 30000L),
+      metric("mem_free", "h1", "HOST", now - 30000L)));
+
+    TimelineMetrics result = hotStore.getTimelineMetrics(Collections.singletonList("cpu_user"),
+      Arrays.asList("h1", "h2", "h3"), "HOST", null, now - 25000L, now);
+    assertThat(result).isNotNull();
+    List<TimelineMetric> metrics = result.getMetrics();
+    assertThat(metrics).hasSize(1);
+    assertThat(metrics.get(0).getHostName()).isEqualTo("h1");
+    assertThat(metrics.get(0).getMetricValues()).containsOnlyKeys(now - 20000L, now - 10000L);
+
+    // other app ids are filtered out
+    assertThat(hotStore.getTimelineMetrics(Collections.singletonList("cpu_user"),
+      Collections.singletonList("h1"), "datanode", null, now - 25000L, now).getMetrics()).isEmpty();
+    assertThat(hotStore.getHitCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testMissBeforeCoverage() throws Exception {
+    long now = System.currentTimeMillis();
+    TimelineMetricsHotStore hotStore = new TimelineMetricsHotStore(WINDOW, 100, now - 60000L, ALLOWANCE);
+    hotStore.put(metrics(metric("cpu_user", "h1", "HOST", now - 30000L)));
+
+    // before the collector started
+    assertThat(hotStore.getTimelineMetrics(Collections.singletonList("cpu_user"),
+      Collections.singletonList("h1"), null, null, now - 120000L, now)).isNull();
+    assertThat(hotStore.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    long now = System.currentTimeMillis();
+    TimelineMetricsHotStore hotStore = new TimelineMetricsHotStore(WINDOW, 2, now - 600000L, ALLOWANCE);
+    hotStore.put(metrics(metric("m1", "h1", "HOST", now - 30000L)));
+    hotStore.put(metrics(metric("m2", "h1", "HOST", now - 30000L)));
+    hotStore.put(metrics(metric("m3", "h1", "HOST", now - 30000L)));
+
+    assertThat(hotStore.getSeriesCount()).isEqualTo(2);
+    // m1 was evicted, so its points may be missing
+    assertThat(hotStore.getTimelineMetrics(Collections.singletonList("m1"),
+      Collections.singletonList("h1"), null, null, now - 300000L, now)).isNull();
+    assertThat(hotStore.getTimelineMetrics(Collections.singletonList("m3"),
+      Collections.singletonList("h1"), null, null, now - 300000L, now).getMetrics()).hasSize(1);
+  }
+
+  @Test
+  public void testOutOfBandSeriesSkipped() throws Exception {
+    long now = System.currentTimeMillis();
+    TimelineMetricsHotStore hotStore = new TimelineMetricsHotStore(WINDOW, 100, now - 3000000L, ALLOWANCE);
+
+    // within the window but starting before the allowance, like the store discards it
+    hotStore.put(metrics(
+      metric("cpu_user", "h1", "HOST", now - 400000L, now - 10000L),
+      metric("cpu_user", "h2", "HOST", now - 200000L, now - 10000L),
+      metric("cpu_user", "h3", "HOST", now + 400000L)));
+
+    TimelineMetrics result = hotStore.getTimelineMetrics(Collections.singletonList("cpu_user"),
+      Arrays.asList("h1", "h2", "h3"), "HOST", null, now - 500000L, now + 500000L);
+    assertThat(result.getMetrics()).hasSize(1);
+    assertThat(result.getMetrics().get(0).getHostName()).isEqualTo("h2");
+    assertThat(hotStore.getSeriesCount()).isEqualTo(1);
+  }
+
+  private static TimelineMetrics metrics(TimelineMetric... metrics) {
+    TimelineMetrics timelineMetrics = new TimelineMetrics();
+    timelineMetrics.setMetrics(Arrays.asList(metrics));
+    return timelineMetrics;
+  }
+
+  private static TimelineMetric metric(String name, String host, String appId, long... times) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(name);
+    metric.setHostName(host);
+    metric.setAppId(appId);
+    metric.setStartTime(times[0]);
+    for (long time : times) {
+      metric.getMetricValues().put(time, 1.0);
+    }
+    return metric;
+  }
+}
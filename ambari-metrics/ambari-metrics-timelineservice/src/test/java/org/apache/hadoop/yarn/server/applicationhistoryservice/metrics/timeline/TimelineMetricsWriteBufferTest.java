@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataManager;
+import org.easymock.Capture;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricsWriteBufferTest {
+
+  @Test
+  public void testCoalesceRejectAndFlushOnStop() throws Exception {
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    TimelineMetricMetadataManager metadataManager = createNiceMock(TimelineMetricMetadataManager.class);
+
+    Capture<TimelineMetrics> written = new Capture<TimelineMetrics>();
+    hBaseAccessor.insertMetricRecordsWithMetadata(eq(metadataManager), capture(written));
+    expectLastCall().once();
+    replay(hBaseAccessor, metadataManager);
+
+    Configuration metricsConf = new Configuration(false);
+    metricsConf.setInt(TimelineMetricConfiguration.WRITE_BUFFER_CAPACITY, 2);
+    metricsConf.setInt(TimelineMetricConfiguration.WRITE_BUFFER_WRITER_THREADS, 1);
+    metricsConf.setInt(TimelineMetricConfiguration.WRITE_BUFFER_BATCH_SIZE, 10);
+    metricsConf.setLong(TimelineMetricConfiguration.WRITE_BUFFER_COMMIT_INTERVAL, 600000);
+
+    TimelineMetricsWriteBuffer writeBuffer =
+      new TimelineMetricsWriteBuffer(hBaseAccessor, metadataManager, metricsConf);
+
+    assertTrue(writeBuffer.offer(metrics(metric("m1", "h1", 2000L, 2.0), metric("m2", "h1", 2000L, 1.0))));
+    // same series as a pending one, merged
+    assertTrue(writeBuffer.offer(metrics(metric("m1", "h1", 1000L, 1.0))));
+    assertEquals(2, writeBuffer.getPendingCount());
+    // a new series does not fit
+    assertFalse(writeBuffer.offer(metrics(metric("m3", "h1", 1000L, 1.0))));
+    assertEquals(1, writeBuffer.getRejectedCount());
+
+    writeBuffer.stop();
+    verify(hBaseAccessor);
+
+    assertEquals(0, writeBuffer.getPendingCount());
+    assertEquals(2, writeBuffer.getWrittenCount());
+    assertEquals(2, written.getValue().getMetrics().size());
+
+    TimelineMetric merged = written.getValue().getMetrics().get(0);
+    assertEquals("m1", merged.getMetricName());
+    assertEquals(1000L, merged.getStartTime());
+    assertEquals(2, merged.getMetricValues().size());
+
+    assertFalse(writeBuffer.offer(metrics(metric("m1", "h1", 3000L, 1.0))));
+  }
+
+  @Test
+  public void testRetryFailedWrite() throws Exception {
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    TimelineMetricMetadataManager metadataManager = createNiceMock(TimelineMetricMetadataManager.class);
+
+    Capture<TimelineMetrics> written = new Capture<TimelineMetrics>();
+    hBaseAccessor.insertMetricRecordsWithMetadata(eq(metadataManager), anyObject(TimelineMetrics.class));
+    expectLastCall().andThrow(new SQLException("Commit failed")).once();
+    hBaseAccessor.insertMetricRecordsWithMetadata(eq(metadataManager), capture(written));
+    expectLastCall().once();
+    replay(hBaseAccessor, metadataManager);
+
+    TimelineMetricsWriteBuffer writeBuffer =
+      new TimelineMetricsWriteBuffer(hBaseAccessor, metadataManager, bufferConf(1));
+
+    assertTrue(writeBuffer.offer(metrics(metric("m1", "h1", 1000L, 1.0))));
+    writeBuffer.stop();
+    verify(hBaseAccessor);
+
+    assertEquals(1, writeBuffer.getRetriedCount());
+    assertEquals(0, writeBuffer.getFailedCount());
+    assertEquals(1, writeBuffer.getWrittenCount());
+    assertEquals("m1", written.getValue().getMetrics().get(0).getMetricName());
+  }
+
+  @Test
+  public void testDropAfterRetries() throws Exception {
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    TimelineMetricMetadataManager metadataManager = createNiceMock(TimelineMetricMetadataManager.class);
+
+    hBaseAccessor.insertMetricRecordsWithMetadata(eq(metadataManager), anyObject(TimelineMetrics.class));
+    expectLastCall().andThrow(new SQLException("Commit failed")).times(2);
+    replay(hBaseAccessor, metadataManager);
+
+    TimelineMetricsWriteBuffer writeBuffer =
+      new TimelineMetricsWriteBuffer(hBaseAccessor, metadataManager, bufferConf(1));
+
+    assertTrue(writeBuffer.offer(metrics(metric("m1", "h1", 1000L, 1.0))));
+    writeBuffer.stop();
+    verify(hBaseAccessor);
+
+    assertEquals(0, writeBuffer.getPendingCount());
+    assertEquals(1, writeBuffer.getRetriedCount());
+    assertEquals(1, writeBuffer.getFailedCount());
+    assertEquals(0, writeBuffer.getWrittenCount());
+  }
+
+  private static Configuration bufferConf(int maxRetries) {
+    Configuration metricsConf = new Configuration(false);
+    metricsConf.setInt(TimelineMetricConfiguration.WRITE_BUFFER_WRITER_THREADS, 1);
+    metricsConf.setLong(TimelineMetricConfiguration.WRITE_BUFFER_COMMIT_INTERVAL, 600000);
+    metricsConf.setInt(TimelineMetricConfiguration.WRITE_BUFFER_MAX_RETRIES, maxRetries);
+    return metricsConf;
+  }
+
+  private static TimelineMetrics metrics(TimelineMetric... metrics) {
+    TimelineMetrics timelineMetrics = new TimelineMetrics();
+    timelineMetrics.setMetrics(Arrays.asList(metrics));
+    return timelineMetrics;
+  }
+
+  private static TimelineMetric metric(String name, String host, long time, double value) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(name);
+    metric.setHostName(host);
+    metric.setAppId("app");
+    metric.setStartTime(time);
+    metric.getMetricValues().put(time, value);
+    return metric;
+  }
+}
@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimelineMetricSliceAccumulatorTest {
+  private static final long INTERVAL = 30000;
+
+  @Test
+  public void testFlushesAveragesOfFinishedSlices() throws Exception {
+    TimelineMetricSliceAccumulator accumulator =
+      new TimelineMetricSliceAccumulator(INTERVAL, 5 * INTERVAL, 10, 0);
+    assertThat(accumulator.getStartTime()).isEqualTo(INTERVAL);
+
+    accumulator.add(metrics(metric("cpu", "h1", INTERVAL, 1.0, INTERVAL + 10000, 3.0,
+      2 * INTERVAL + 5000, 10.0)));
+    accumulator.add(metrics(metric("cpu", "h2", INTERVAL + 20000, 4.0)));
+
+    Map<String, Double> averages = new HashMap<String, Double>();
+    assertThat(accumulator.flush(2 * INTERVAL, collect(averages))).isEqualTo(2);
+    assertThat(averages).containsEntry("cpu@h1@" + INTERVAL, 2.0)
+      .containsEntry("cpu@h2@" + INTERVAL, 4.0).hasSize(2);
+
+    averages.clear();
+    assertThat(accumulator.flush(3 * INTERVAL, collect(averages))).isEqualTo(1);
+    assertThat(averages).containsEntry("cpu@h1@" + 2 * INTERVAL, 10.0).hasSize(1);
+  }
+
+  @Test
+  public void testDropsLateAndEarlyPoints() throws Exception {
+    TimelineMetricSliceAccumulator accumulator =
+      new TimelineMetricSliceAccumulator(INTERVAL, 2 * INTERVAL, 10, 0);
+    accumulator.flush(3 * INTERVAL, collect(new HashMap<String, Double>()));
+
+    // Ring holds slices 3 to 6
+    accumulator.add(metrics(metric("cpu", "h1", 2 * INTERVAL, 1.0, 3 * INTERVAL, 2.0,
+      7 * INTERVAL, 3.0)));
+    assertThat(accumulator.getLateCount()).isEqualTo(1);
+    assertThat(accumulator.getDroppedCount()).isEqualTo(1);
+
+    Map<String, Double> averages = new HashMap<String, Double>();
+    accumulator.flush(10 * INTERVAL, collect(averages));
+    assertThat(averages).containsOnlyKeys("cpu@h1@" + 3 * INTERVAL);
+  }
+
+  @Test
+  public void testKeepsPendingSlicesAndDropsIdleSeries() throws Exception {
+    TimelineMetricSliceAccumulator accumulator =
+      new TimelineMetricSliceAccumulator(INTERVAL, 5 * INTERVAL, 1, 0);
+    accumulator.add(metrics(metric("cpu", "h1", 3 * INTERVAL, 5.0)));
+    // Over max series
+    accumulator.add(metrics(metric("cpu", "h2", 3 * INTERVAL, 5.0)));
+    assertThat(accumulator.getDroppedCount()).isEqualTo(1);
+
+    Map<String, Double> averages = new HashMap<String, Double>();
+    accumulator.flush(2 * INTERVAL, collect(averages));
+    accumulator.flush(3 * INTERVAL, collect(averages));
+    assertThat(averages).isEmpty();
+    assertThat(accumulator.getSeriesCount()).isEqualTo(1);
+
+    accumulator.flush(4 * INTERVAL, collect(averages));
+    assertThat(averages).containsOnlyKeys("cpu@h1@" + 3 * INTERVAL);
+    accumulator.flush(5 * INTERVAL, collect(averages));
+    assertThat(accumulator.getSeriesCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testSkipToContinuesAfterRescan() throws Exception {
+    TimelineMetricSliceAccumulator accumulator =
+      new TimelineMetricSliceAccumulator(INTERVAL, 5 * INTERVAL, 10, 0);
+    accumulator.add(metrics(metric("cpu", "h1", INTERVAL, 1.0, 2 * INTERVAL, 2.0,
+      3 * INTERVAL, 3.0)));
+    assertThat(accumulator.isCaughtUp()).isFalse();
+
+    // The rescan saved the slices before 3 * INTERVAL
+    accumulator.skipTo(3 * INTERVAL + 10000);
+    assertThat(accumulator.isCaughtUp()).isTrue();
+    assertThat(accumulator.getWatermark()).isEqualTo(3 * INTERVAL);
+
+    Map<String, Double> averages = new HashMap<String, Double>();
+    accumulator.flush(4 * INTERVAL, collect(averages));
+    assertThat(averages).containsOnlyKeys("cpu@h1@" + 3 * INTERVAL);
+  }
+
+  @Test
+  public void testNotCaughtUpBeforeDroppedSlices() throws Exception {
+    TimelineMetricSliceAccumulator accumulator =
+      new TimelineMetricSliceAccumulator(INTERVAL, 2 * INTERVAL, 10, 0);
+    // Ring holds slices 1 to 4, so slice 6 is dropped
+    accumulator.add(metrics(metric("cpu", "h1", 6 * INTERVAL, 1.0)));
+    assertThat(accumulator.getStartTime()).isEqualTo(7 * INTERVAL);
+
+    accumulator.skipTo(5 * INTERVAL);
+    assertThat(accumulator.isCaughtUp()).isFalse();
+    accumulator.skipTo(7 * INTERVAL);
+    assertThat(accumulator.isCaughtUp()).isTrue();
+  }
+
+  @Test
+  public void testRestoreLastFlush() throws Exception {
+    TimelineMetricSliceAccumulator accumulator =
+      new TimelineMetricSliceAccumulator(INTERVAL, 5 * INTERVAL, 10, 0);
+    accumulator.add(metrics(metric("cpu", "h1", INTERVAL, 1.0, INTERVAL + 10000, 3.0,
+      2 * INTERVAL, 5.0)));
+
+    Map<String, Double> averages = new HashMap<String, Double>();
+    assertThat(accumulator.flush(3 * INTERVAL, collect(averages))).isEqualTo(2);
+
+    // The slices could not be saved
+    accumulator.restoreLastFlush();
+    assertThat(accumulator.getWatermark()).isEqualTo(INTERVAL);
+
+    averages.clear();
+    assertThat(accumulator.flush(3 * INTERVAL, collect(averages))).isEqualTo(2);
+    assertThat(averages).containsEntry("cpu@h1@" + INTERVAL, 2.0)
+      .containsEntry("cpu@h1@" + 2 * INTERVAL, 5.0).hasSize(2);
+  }
+
+  private static TimelineMetricSliceAccumulator.SliceHandler collect(final Map<String, Double> averages) {
+    return new TimelineMetricSliceAccumulator.SliceHandler() {
+      @Override
+      public void handle(TimelineClusterMetric clusterMetric, String hostname, double average) {
+        averages.put(clusterMetric.getMetricName() + "@" + hostname + "@"
+          + clusterMetric.getTimestamp(), average);
+      }
+    };
+  }
+
+  private static TimelineMetrics metrics(TimelineMetric... metrics) {
+    TimelineMetrics timelineMetrics = new TimelineMetrics();
+    timelineMetrics.setMetrics(Arrays.asList(metrics));
+    return timelineMetrics;
+  }
+
+  private static TimelineMetric metric(String name, String host, Object... timesAndValues) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(name);
+    metric.setHostName(host);
+    metric.setAppId("HOST");
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    for (int i = 0; i < timesAndValues.length; i += 2) {
+      values.put(((Number) timesAndValues[i]).longValue(), (Double) timesAndValues[i + 1]);
+    }
+    metric.setMetricValues(values);
+    return metric;
+  }
+}
@@ -388,4 +388,38 @@ public class TestTimelineWebServices extends JerseyTest {
     assertEquals(MediaType.APPLICATION_JSON_TYPE, response.getType());
     verifyMetrics(response.getEntity(TimelineMetrics.class));
   }
+
+  @Test
+  public void testGetMetricsStreamed() throws Exception {
+    ((TestTimelineMetricStore) metricStore).setStreamingQueryEnabled(true);
+    try {
+      WebResource r = resource();
+      ClientResponse response = r.path("ws").path("v1").path("timeline")
+        .path("metrics").queryParam("metricNames", "cpu_user,mem_free")
+        .queryParam("hostname", "c6401").queryParam("precision", "seconds")
+        .accept(MediaType.APPLICATION_JSON)
+        .get(ClientResponse.class);
+      assertEquals(MediaType.APPLICATION_JSON_TYPE, response.getType());
+      verifyMetrics(response.getEntity(TimelineMetrics.class));
+    } finally {
+      ((TestTimelineMetricStore) metricStore).setStreamingQueryEnabled(false);
+    }
+  }
+
+  @Test
+  public void testGetMetricsStreamedInvalidQuery() throws Exception {
+    ((TestTimelineMetricStore) metricStore).setStreamingQueryEnabled(true);
+    try {
+      WebResource r = resource();
+      ClientResponse response = r.path("ws").path("v1").path("timeline")
+        .path("metrics").queryParam("hostname", "c6401")
+        .accept(MediaType.APPLICATION_JSON)
+        .get(ClientResponse.class);
+      // rejected before anything is streamed
+      assertEquals(ClientResponse.Status.BAD_REQUEST,
+        response.getClientResponseStatus());
+    } finally {
+      ((TestTimelineMetricStore) metricStore).setStreamingQueryEnabled(false);
+    }
+  }
 }
@@ -35,5 +35,17 @@ public enum ExperimentalFeature {
    * The caching of current alert information in order to reduce overall load on
    * the database by preventing frequent updates and JPA entity invalidation.
    */
-  ALERT_CACHING
+  ALERT_CACHING,
+
+  /**
+   * The processing of agent heartbeat reports on background, per-host
+   * ordered workers instead of on the agent's request thread.
+   */
+  ASYNC_HEARTBEAT_PROCESSING,
+
+  /**
+   * The coalescing of received alerts across heartbeats so that they are
+   * persisted in periodic batches instead of once per heartbeat.
+   */
+  ALERT_BATCHING
 }
@@ -142,6 +142,7 @@ public class ActionManager {
     }
 
     List<CommandReport> reportsToProcess = new ArrayList<CommandReport>();
+    boolean commandCompleted = false;
     Iterator<HostRoleCommand> commandIterator = commands.iterator();
     //persist the action response into the db.
     for (CommandReport report : reports) {
@@ -162,9 +163,24 @@ public class ActionManager {
         continue;
       }
       reportsToProcess.add(report);
+
+      if (!commandCompleted) {
+        try {
+          commandCompleted = HostRoleStatus.valueOf(report.getStatus()).isCompletedState();
+        } catch (IllegalArgumentException e) {
+          LOG.warn("The task " + command.getTaskId() + " reported an unknown status "
+              + report.getStatus());
+        }
+      }
     }
 
     db.updateHostRoleStates(reportsToProcess);
+
+    // a finished command may unblock the next stage; rather than waiting for
+    // the next scheduler interval, let the scheduler run right away
+    if (commandCompleted) {
+      scheduler.awake();
+    }
   }
 
   /**
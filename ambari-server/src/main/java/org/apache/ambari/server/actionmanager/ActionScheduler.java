@@ -101,6 +101,14 @@ class ActionScheduler implements Runnable {
 
   private final Set<Long> requestsInProgress = new HashSet<Long>();
 
+  /**
+   * Caches whether an in-progress request is exclusive so that the request
+   * entity does not have to be looked up for every stage on every scheduler
+   * iteration. Only accessed from the scheduler thread; entries are removed
+   * once a request no longer has stages in progress.
+   */
+  private final Map<Long, Boolean> exclusiveRequests = new HashMap<Long, Boolean>();
+
   /**
    * Contains request ids that have been scheduled to be cancelled,
    * but are not cancelled yet
@@ -250,6 +258,11 @@ class ActionScheduler implements Runnable {
       HashSet<String> hostsWithTasks = getListOfHostsWithPendingTask(stages);
       actionQueue.updateListOfHostsWithPendingTask(hostsWithTasks);
 
+      Set<Long> inProgressRequestIds = new HashSet<Long>();
+      for (Stage stage : stages) {
+        inProgressRequestIds.add(stage.getRequestId());
+      }
+
       stages = filterParallelPerHostStages(stages);
       // At this point the stages is a filtered list
 
@@ -262,9 +275,7 @@ class ActionScheduler implements Runnable {
         long requestId = stage.getRequestId();
         LOG.debug("==> STAGE_i = " + i_stage + "(requestId=" + requestId + ",StageId=" + stage.getStageId() + ")");
 
-        RequestEntity request = db.getRequestEntity(requestId);
-
-        if (request.isExclusive()) {
+        if (isExclusiveRequest(requestId)) {
           if (runningRequestIds.size() > 0 ) {
             // As a result, we will wait until any previous stages are finished
             LOG.debug("Stage requires exclusive execution, but other requests are already executing. Stopping for now");
@@ -303,7 +314,7 @@ class ActionScheduler implements Runnable {
           // only fail the request if the role failed and the stage is not
           // skippable
           if (stats.isRoleFailed() && !stage.isSkippable()) {
-            LOG.warn("{} failed, request {} will be aborted", role, request.getRequestId());
+            LOG.warn("{} failed, request {} will be aborted", role, requestId);
 
             failed = true;
             break;
@@ -410,6 +421,7 @@ class ActionScheduler implements Runnable {
       }
 
       requestsInProgress.retainAll(runningRequestIds);
+      exclusiveRequests.keySet().retainAll(inProgressRequestIds);
 
     } finally {
       LOG.debug("Scheduler finished work.");
@@ -417,6 +429,26 @@ class ActionScheduler implements Runnable {
     }
   }
 
+  /**
+   * Gets whether the specified request must be executed exclusively. The
+   * value is cached for as long as the request has stages in progress since
+   * it does not change over the lifetime of a request.
+   *
+   * @param requestId
+   *          the request ID
+   * @return {@code true} if the request is exclusive
+   */
+  private boolean isExclusiveRequest(long requestId) {
+    Boolean exclusive = exclusiveRequests.get(requestId);
+    if (null == exclusive) {
+      RequestEntity request = db.getRequestEntity(requestId);
+      exclusive = request.isExclusive();
+      exclusiveRequests.put(requestId, exclusive);
+    }
+
+    return exclusive;
+  }
+
   /**
    * Returns the list of hosts that have a task assigned
    *
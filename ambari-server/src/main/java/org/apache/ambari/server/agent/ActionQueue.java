@@ -19,36 +19,50 @@ package org.apache.ambari.server.agent;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.ambari.server.agent.AgentCommand.AgentCommandType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Singleton;
 
+/**
+ * The {@link ActionQueue} holds the commands which are waiting to be sent to
+ * each agent on its next heartbeat. Commands for a host are kept in the order
+ * that they were enqueued and are also indexed by command type and, for
+ * {@link ExecutionCommand}s, by command ID so that they can be removed without
+ * scanning the host's queue. Commands should not be modified after they have
+ * been enqueued.
+ */
 @Singleton
 public class ActionQueue {
 
   private static Logger LOG = LoggerFactory.getLogger(ActionQueue.class);
 
-  private static HashSet<String> EMPTY_HOST_LIST = new HashSet<String>();
-
-  final ConcurrentMap<String, Queue<AgentCommand>> hostQueues;
+  final ConcurrentMap<String, HostQueue> hostQueues;
 
-  HashSet<String> hostsWithPendingTask = new HashSet<String>();
+  /**
+   * An immutable snapshot of the hosts which have pending tasks. It is
+   * replaced, never modified, so readers can use it without locking.
+   */
+  private volatile Set<String> hostsWithPendingTask = Collections.emptySet();
 
   public ActionQueue() {
-    hostQueues = new ConcurrentHashMap<String, Queue<AgentCommand>>();
+    hostQueues = new ConcurrentHashMap<String, HostQueue>();
   }
 
-  private Queue<AgentCommand> getQueue(String hostname) {
+  private HostQueue getQueue(String hostname) {
     return hostQueues.get(hostname);
   }
 
@@ -58,11 +72,11 @@ public class ActionQueue {
    * @param cmd - command to add to queue
    */
   public void enqueue(String hostname, AgentCommand cmd) {
-    Queue<AgentCommand> q = getQueue(hostname);
+    HostQueue q = getQueue(hostname);
 
     if (q == null) {
       //try to add new queue to map if not found
-      q = hostQueues.putIfAbsent(hostname, new ConcurrentLinkedQueue<AgentCommand>());
+      q = hostQueues.putIfAbsent(hostname, new HostQueue());
       if (q == null) {
         //null means that new queue was added to map, get it
         q = getQueue(hostname);
@@ -79,7 +93,7 @@ public class ActionQueue {
    * @return
    */
   public AgentCommand dequeue(String hostname) {
-    Queue<AgentCommand> q = getQueue(hostname);
+    HostQueue q = getQueue(hostname);
     if (q == null) {
       return null;
     }
@@ -103,24 +117,12 @@ public class ActionQueue {
       return Collections.emptyList();
     }
 
-    Queue<AgentCommand> queue = getQueue(hostname);
+    HostQueue queue = getQueue(hostname);
     if (null == queue) {
       return null;
     }
 
-    List<AgentCommand> removedCommands = new ArrayList<AgentCommand>(
-        queue.size());
-
-    Iterator<AgentCommand> iterator = queue.iterator();
-    while (iterator.hasNext()) {
-      AgentCommand command = iterator.next();
-      if (command.getCommandType() == commandType) {
-        removedCommands.add(command);
-        iterator.remove();
-      }
-    }
-
-    return removedCommands;
+    return queue.removeByType(commandType);
   }
 
   /**
@@ -131,29 +133,16 @@ public class ActionQueue {
    * @return
    */
   public AgentCommand dequeue(String hostname, String commandId) {
-    Queue<AgentCommand> q = getQueue(hostname);
+    HostQueue q = getQueue(hostname);
     if (q == null) {
       return null;
     }
-    if (q.isEmpty()) {
-      return null;
-    } else {
-      AgentCommand c = null;
-      for (Iterator<AgentCommand> it = q.iterator(); it.hasNext();) {
-        AgentCommand ac = it.next();
-        if (ac instanceof ExecutionCommand && ((ExecutionCommand) ac)
-          .getCommandId().equals(commandId)) {
-          c = ac;
-          it.remove();
-          break;
-        }
-      }
-      return c;
-    }
+
+    return q.removeByCommandId(commandId);
   }
 
   public int size(String hostname) {
-    Queue<AgentCommand> q = getQueue(hostname);
+    HostQueue q = getQueue(hostname);
     if (q == null) {
       return 0;
     }
@@ -161,23 +150,33 @@ public class ActionQueue {
   }
 
   public List<AgentCommand> dequeueAll(String hostname) {
-    Queue<AgentCommand> q = getQueue(hostname);
+    return dequeueAll(hostname, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Dequeues, in order, at most the specified number of commands for the
+   * given host. Any remaining commands are left in the queue for the next
+   * heartbeat.
+   *
+   * @param hostname
+   *          the host to remove commands for.
+   * @param maxCommands
+   *          the maximum number of commands to remove, or a value less than
+   *          {@code 1} for no limit.
+   * @return the removed commands, or {@code null} if the host has never had
+   *         any commands queued.
+   */
+  public List<AgentCommand> dequeueAll(String hostname, int maxCommands) {
+    HostQueue q = getQueue(hostname);
     if (q == null) {
       return null;
     }
 
-    List<AgentCommand> l = new ArrayList<AgentCommand>();
-
-    AgentCommand command;
-    do {
-      //get commands from queue until empty
-      command = q.poll();
-      if (command != null) {
-        l.add(command);
-      }
-    } while (command != null);
+    if (maxCommands < 1) {
+      maxCommands = Integer.MAX_VALUE;
+    }
 
-    return l;
+    return q.drain(maxCommands);
   }
 
   /**
@@ -185,11 +184,11 @@ public class ActionQueue {
    *
    * @param hosts
    */
-  public void updateListOfHostsWithPendingTask(HashSet<String> hosts) {
+  public void updateListOfHostsWithPendingTask(Set<String> hosts) {
     if (hosts != null) {
-      hostsWithPendingTask = hosts;
-    } else if (hostsWithPendingTask.size() > 0) {
-      hostsWithPendingTask = EMPTY_HOST_LIST;
+      hostsWithPendingTask = ImmutableSet.copyOf(hosts);
+    } else if (!hostsWithPendingTask.isEmpty()) {
+      hostsWithPendingTask = Collections.emptySet();
     }
   }
 
@@ -199,11 +198,134 @@ public class ActionQueue {
    * @return
    */
   public boolean hasPendingTask(String hostName) {
-    HashSet<String> copyHostsWithTaskPending = hostsWithPendingTask;
-    if (copyHostsWithTaskPending != null) {
-      return copyHostsWithTaskPending.contains(hostName);
+    return hostsWithPendingTask.contains(hostName);
+  }
+
+  /**
+   * The commands queued for a single host. Commands are assigned an
+   * increasing sequence number which keeps them in insertion order and which
+   * is used by the type and command ID indexes.
+   */
+  static final class HostQueue {
+
+    private final LinkedHashMap<Long, AgentCommand> commands = new LinkedHashMap<Long, AgentCommand>();
+
+    private final Map<AgentCommandType, LinkedHashSet<Long>> commandsByType =
+        new EnumMap<AgentCommandType, LinkedHashSet<Long>>(AgentCommandType.class);
+
+    private final Map<String, LinkedHashSet<Long>> commandsById = new HashMap<String, LinkedHashSet<Long>>();
+
+    private long nextSequence = 0;
+
+    synchronized void add(AgentCommand command) {
+      long sequence = nextSequence++;
+      commands.put(sequence, command);
+
+      AgentCommandType commandType = command.getCommandType();
+      if (null != commandType) {
+        LinkedHashSet<Long> sequences = commandsByType.get(commandType);
+        if (null == sequences) {
+          sequences = new LinkedHashSet<Long>();
+          commandsByType.put(commandType, sequences);
+        }
+        sequences.add(sequence);
+      }
+
+      String commandId = getCommandId(command);
+      if (null != commandId) {
+        LinkedHashSet<Long> sequences = commandsById.get(commandId);
+        if (null == sequences) {
+          sequences = new LinkedHashSet<Long>();
+          commandsById.put(commandId, sequences);
+        }
+        sequences.add(sequence);
+      }
+    }
+
+    synchronized AgentCommand poll() {
+      if (commands.isEmpty()) {
+        return null;
+      }
+
+      Iterator<Map.Entry<Long, AgentCommand>> iterator = commands.entrySet().iterator();
+      Map.Entry<Long, AgentCommand> entry = iterator.next();
+      iterator.remove();
+      unindex(entry.getKey(), entry.getValue());
+      return entry.getValue();
+    }
+
+    synchronized List<AgentCommand> drain(int maxCommands) {
+      List<AgentCommand> drained = new ArrayList<AgentCommand>(Math.min(maxCommands, commands.size()));
+
+      Iterator<Map.Entry<Long, AgentCommand>> iterator = commands.entrySet().iterator();
+      while (iterator.hasNext() && drained.size() < maxCommands) {
+        Map.Entry<Long, AgentCommand> entry = iterator.next();
+        iterator.remove();
+        unindex(entry.getKey(), entry.getValue());
+        drained.add(entry.getValue());
+      }
+
+      return drained;
+    }
+
+    synchronized List<AgentCommand> removeByType(AgentCommandType commandType) {
+      LinkedHashSet<Long> sequences = commandsByType.remove(commandType);
+      if (null == sequences) {
+        return new ArrayList<AgentCommand>(0);
+      }
+
+      List<AgentCommand> removed = new ArrayList<AgentCommand>(sequences.size());
+      for (Long sequence : sequences) {
+        AgentCommand command = commands.remove(sequence);
+        removeFromIndex(commandsById, getCommandId(command), sequence);
+        removed.add(command);
+      }
+
+      return removed;
     }
 
-    return false;
+    synchronized AgentCommand removeByCommandId(String commandId) {
+      LinkedHashSet<Long> sequences = commandsById.get(commandId);
+      if (null == sequences) {
+        return null;
+      }
+
+      Long sequence = sequences.iterator().next();
+      AgentCommand command = commands.remove(sequence);
+      unindex(sequence, command);
+      return command;
+    }
+
+    synchronized int size() {
+      return commands.size();
+    }
+
+    private void unindex(Long sequence, AgentCommand command) {
+      removeFromIndex(commandsByType, command.getCommandType(), sequence);
+      removeFromIndex(commandsById, getCommandId(command), sequence);
+    }
+
+    private static <K> void removeFromIndex(Map<K, LinkedHashSet<Long>> index, K key,
+        Long sequence) {
+      if (null == key) {
+        return;
+      }
+
+      LinkedHashSet<Long> sequences = index.get(key);
+      if (null != sequences) {
+        sequences.remove(sequence);
+        if (sequences.isEmpty()) {
+          index.remove(key);
+        }
+      }
+    }
+
+    private static String getCommandId(AgentCommand command) {
+      if (command instanceof ExecutionCommand) {
+        return ((ExecutionCommand) command).getCommandId();
+      }
+
+      return null;
+    }
   }
 }
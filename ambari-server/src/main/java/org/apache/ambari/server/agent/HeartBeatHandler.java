@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Pattern;
 
 import org.apache.ambari.server.AmbariException;
@@ -151,6 +152,12 @@ public class HeartBeatHandler {
   @Inject
   private AlertDefinitionHash alertDefinitionHash;
 
+  /**
+   * Runs, and measures, the report processing stages of each heartbeat.
+   */
+  @Inject
+  private HeartbeatProcessor heartbeatProcessor;
+
   /**
    * Publishes {@link AlertEvent} instances.
    */
@@ -228,6 +235,15 @@ public class HeartBeatHandler {
       return createRestartCommand(currentResponseId);
     }
 
+    // a synchronous failure would have failed the heartbeat; ask the agent to
+    // register again, as it would have then
+    Exception processingFailure = heartbeatProcessor.takeFailure(hostname);
+    if (null != processingFailure) {
+      LOG.warn("Heartbeat reports from host {} could not be processed - sending register command",
+          hostname, processingFailure);
+      return createRegisterCommand();
+    }
+
     response = new HeartBeatResponse();
     response.setResponseId(++currentResponseId);
 
@@ -283,26 +299,80 @@ public class HeartBeatHandler {
       return createRegisterCommand();
     }
 
+    // When processed asynchronously, the reports may not have been applied
+    // when the response is built below. This is safe since the response only
+    // carries the queued commands and the host's component mapping and
+    // pending task flags, none of which are changed by processing reports.
+    if (heartbeatProcessor.isAsyncEnabled()) {
+      final HeartBeat asyncHeartbeat = heartbeat;
+      final String asyncHostname = hostname;
+      final long asyncNow = now;
+
+      try {
+        heartbeatProcessor.submit(hostname, new Runnable() {
+          @Override
+          public void run() {
+            try {
+              processReports(asyncHeartbeat, asyncHostname, asyncNow);
+            } catch (Exception e) {
+              LOG.error("Unable to process heartbeat reports from host " + asyncHostname, e);
+              heartbeatProcessor.recordFailure(asyncHostname, e);
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        LOG.warn("Heartbeat reports from host {} could not be queued - sending register command",
+            hostname, e);
+        return createRegisterCommand();
+      }
+    } else {
+      processReports(heartbeat, hostname, now);
+    }
+
+    // Send commands if node is active
+    if (hostObject.getState().equals(HostState.HEALTHY)) {
+      sendCommands(hostname, response);
+      annotateResponse(hostname, response);
+    }
+
+    return response;
+  }
+
+  /**
+   * Processes the command, status and alert reports contained in a heartbeat
+   * and recalculates the host status. The time spent in each step is recorded
+   * by the {@link HeartbeatProcessor}.
+   *
+   * @param heartbeat
+   *          the heartbeat to process.
+   * @param hostname
+   *          the host that the heartbeat is for.
+   * @param now
+   *          the time that the heartbeat was received.
+   * @throws AmbariException
+   */
+  protected void processReports(HeartBeat heartbeat, String hostname, long now)
+      throws AmbariException {
     // Examine heartbeat for command reports
+    long start = System.nanoTime();
     processCommandReports(heartbeat, hostname, clusterFsm, now);
+    heartbeatProcessor.recordStage(HeartbeatProcessor.Stage.COMMAND_REPORTS, start);
 
     // Examine heartbeat for component live status reports
+    start = System.nanoTime();
     processStatusReports(heartbeat, hostname, clusterFsm);
+    heartbeatProcessor.recordStage(HeartbeatProcessor.Stage.STATUS_REPORTS, start);
 
     // Calculate host status
     // NOTE: This step must be after processing command/status reports
+    start = System.nanoTime();
     processHostStatus(heartbeat, hostname);
+    heartbeatProcessor.recordStage(HeartbeatProcessor.Stage.HOST_STATUS, start);
 
     // Example heartbeat for alerts from the host or its components
+    start = System.nanoTime();
     processAlerts(heartbeat, hostname);
-
-    // Send commands if node is active
-    if (hostObject.getState().equals(HostState.HEALTHY)) {
-      sendCommands(hostname, response);
-      annotateResponse(hostname, response);
-    }
-
-    return response;
+    heartbeatProcessor.recordStage(HeartbeatProcessor.Stage.ALERTS, start);
   }
 
   /**
@@ -815,11 +885,14 @@ public class HeartBeatHandler {
   }
 
   /**
-   * Adds commands from action queue to a heartbeat response.
+   * Adds commands from action queue to a heartbeat response. At most
+   * {@link Configuration#getAgentHeartbeatMaxCommands()} commands are added;
+   * the rest remain queued for the next heartbeat.
    */
   protected void sendCommands(String hostname, HeartBeatResponse response)
       throws AmbariException {
-    List<AgentCommand> cmds = actionQueue.dequeueAll(hostname);
+    List<AgentCommand> cmds = actionQueue.dequeueAll(hostname,
+        config.getAgentHeartbeatMaxCommands());
     if (cmds != null && !cmds.isEmpty()) {
       for (AgentCommand ac : cmds) {
         try {
@@ -0,0 +1,451 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ambari.annotations.Experimental;
+import org.apache.ambari.annotations.ExperimentalFeature;
+import org.apache.ambari.server.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * The {@link HeartbeatProcessor} executes the report processing stages of
+ * agent heartbeats. When {@link Configuration#isHeartbeatAsyncProcessingEnabled()}
+ * is {@code true}, the stages run on a fixed number of single-threaded
+ * workers, each with a bounded queue. A host is always assigned to the same
+ * worker so that its heartbeats are processed in the order that they arrived.
+ * When a worker's queue is full, the submitting thread blocks until there is
+ * room, which pushes back on the agents. If there is still no room after
+ * {@link Configuration#getHeartbeatProcessingQueueTimeout()} seconds, the
+ * heartbeat is rejected.
+ * <p/>
+ * Regardless of whether processing is asynchronous, the latency of each
+ * {@link Stage} is recorded. Once started, the queue depth and stage latencies
+ * are exposed over JMX as {@value #MBEAN_NAME}.
+ * <p/>
+ * Since an asynchronous failure can't fail the heartbeat that caused it, the
+ * hosts whose heartbeats failed to process are remembered so that they can be
+ * asked to register again on their next heartbeat.
+ */
+@Singleton
+@Experimental(feature = ExperimentalFeature.ASYNC_HEARTBEAT_PROCESSING)
+public class HeartbeatProcessor implements HeartbeatProcessorMXBean {
+
+  /**
+   * The name that the processor's metrics are registered under.
+   */
+  public static final String MBEAN_NAME = "org.apache.ambari.server:type=HeartbeatProcessor";
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(HeartbeatProcessor.class);
+
+  /**
+   * The number of seconds that {@link #stop()} waits for queued heartbeats to
+   * be processed.
+   */
+  private static final long STOP_TIMEOUT_SECONDS = 30;
+
+  /**
+   * The distinct stages of heartbeat processing which are measured.
+   */
+  public enum Stage {
+    COMMAND_REPORTS,
+    STATUS_REPORTS,
+    HOST_STATUS,
+    ALERTS
+  }
+
+  /**
+   * Whether stages are run on the workers.
+   */
+  private final boolean m_asyncEnabled;
+
+  /**
+   * The per-host workers, or {@code null} if not enabled.
+   */
+  private final ThreadPoolExecutor[] m_workers;
+
+  /**
+   * Invocation count per stage.
+   */
+  private final Map<Stage, AtomicLong> m_stageCounts = new EnumMap<Stage, AtomicLong>(Stage.class);
+
+  /**
+   * Total elapsed nanoseconds per stage.
+   */
+  private final Map<Stage, AtomicLong> m_stageNanos = new EnumMap<Stage, AtomicLong>(Stage.class);
+
+  /**
+   * The hosts whose heartbeats could not be processed asynchronously, and the
+   * reason why.
+   */
+  private final ConcurrentMap<String, Exception> m_failures = new ConcurrentHashMap<String, Exception>();
+
+  /**
+   * The name the metrics are registered under, or {@code null} if they are not
+   * registered.
+   */
+  private volatile ObjectName m_mbeanName;
+
+  /**
+   * Constructor.
+   *
+   * @param configuration
+   *          the server configuration.
+   */
+  @Inject
+  public HeartbeatProcessor(Configuration configuration) {
+    for (Stage stage : Stage.values()) {
+      m_stageCounts.put(stage, new AtomicLong());
+      m_stageNanos.put(stage, new AtomicLong());
+    }
+
+    m_asyncEnabled = configuration.isHeartbeatAsyncProcessingEnabled();
+    if (!m_asyncEnabled) {
+      m_workers = null;
+      return;
+    }
+
+    int threads = Math.max(1, configuration.getHeartbeatProcessingThreads());
+    int queueSize = Math.max(1, configuration.getHeartbeatProcessingQueueSize());
+    long queueTimeout = Math.max(0, configuration.getHeartbeatProcessingQueueTimeout());
+
+    LOG.info("Processing heartbeats asynchronously with {} workers, each with a queue of {}",
+        threads, queueSize);
+
+    m_workers = new ThreadPoolExecutor[threads];
+    for (int i = 0; i < threads; i++) {
+      m_workers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<Runnable>(queueSize),
+          new HeartbeatProcessorThreadFactory(i), new BlockWhenFullPolicy(queueTimeout));
+    }
+  }
+
+  /**
+   * Gets whether heartbeat stages are processed asynchronously.
+   *
+   * @return {@code true} if stages are run on background workers.
+   */
+  @Override
+  public boolean isAsyncEnabled() {
+    return m_asyncEnabled;
+  }
+
+  /**
+   * Submits the processing of a heartbeat for the given host. The task will
+   * run after any other task which was previously submitted for the same
+   * host. This method blocks if the host's worker queue is full.
+   *
+   * @param hostname
+   *          the host which sent the heartbeat (not {@code null}).
+   * @param task
+   *          the processing to perform.
+   * @throws RejectedExecutionException
+   *           if the host's worker queue stayed full for the queue timeout, or
+   *           the processor has been stopped.
+   */
+  public void submit(String hostname, Runnable task) {
+    if (!m_asyncEnabled) {
+      task.run();
+      return;
+    }
+
+    getWorker(hostname).execute(task);
+  }
+
+  /**
+   * Records the time spent in a stage.
+   *
+   * @param stage
+   *          the stage that completed.
+   * @param startNanos
+   *          the value of {@link System#nanoTime()} when the stage began.
+   */
+  public void recordStage(Stage stage, long startNanos) {
+    m_stageCounts.get(stage).incrementAndGet();
+    m_stageNanos.get(stage).addAndGet(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Gets the number of times that a stage has been run.
+   *
+   * @param stage
+   *          the stage.
+   * @return the invocation count.
+   */
+  public long getStageCount(Stage stage) {
+    return m_stageCounts.get(stage).get();
+  }
+
+  /**
+   * Gets the average time, in milliseconds, spent in a stage.
+   *
+   * @param stage
+   *          the stage.
+   * @return the average latency, or {@code 0} if the stage has not run.
+   */
+  public double getStageAverageLatency(Stage stage) {
+    long count = m_stageCounts.get(stage).get();
+    if (count == 0) {
+      return 0;
+    }
+
+    return m_stageNanos.get(stage).get() / (double) count / 1000000d;
+  }
+
+  /**
+   * Records that a heartbeat from a host could not be processed
+   * asynchronously.
+   *
+   * @param hostname
+   *          the host which sent the heartbeat (not {@code null}).
+   * @param failure
+   *          the reason that processing failed.
+   */
+  public void recordFailure(String hostname, Exception failure) {
+    m_failures.put(hostname, failure);
+  }
+
+  /**
+   * Gets and clears the last asynchronous processing failure of a host.
+   *
+   * @param hostname
+   *          the host (not {@code null}).
+   * @return the failure, or {@code null} if processing has not failed since
+   *         the last call.
+   */
+  public Exception takeFailure(String hostname) {
+    return m_failures.remove(hostname);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<String, Long> getStageCounts() {
+    Map<String, Long> counts = new LinkedHashMap<String, Long>();
+    for (Stage stage : Stage.values()) {
+      counts.put(stage.name(), getStageCount(stage));
+    }
+
+    return counts;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<String, Double> getStageAverageLatencies() {
+    Map<String, Double> latencies = new LinkedHashMap<String, Double>();
+    for (Stage stage : Stage.values()) {
+      latencies.put(stage.name(), getStageAverageLatency(stage));
+    }
+
+    return latencies;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getQueueDepth() {
+    if (!m_asyncEnabled) {
+      return 0;
+    }
+
+    int depth = 0;
+    for (ThreadPoolExecutor worker : m_workers) {
+      depth += worker.getQueue().size();
+    }
+
+    return depth;
+  }
+
+  /**
+   * Gets the number of heartbeats waiting to be processed on the worker that
+   * the specified host is assigned to.
+   *
+   * @param hostname
+   *          the host.
+   * @return the queue depth, or {@code 0} if not enabled.
+   */
+  public int getQueueDepth(String hostname) {
+    if (!m_asyncEnabled) {
+      return 0;
+    }
+
+    return getWorker(hostname).getQueue().size();
+  }
+
+  /**
+   * Exposes the processing metrics over JMX.
+   */
+  public void start() {
+    try {
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+      if (!mbeanServer.isRegistered(name)) {
+        mbeanServer.registerMBean(this, name);
+        m_mbeanName = name;
+      }
+    } catch (JMException e) {
+      LOG.warn("Unable to expose the heartbeat processing metrics", e);
+    }
+  }
+
+  /**
+   * Stops the workers and removes the metrics from JMX. Queued heartbeats are
+   * given up to {@value #STOP_TIMEOUT_SECONDS} seconds to finish processing
+   * before the workers are interrupted.
+   */
+  public void stop() {
+    ObjectName name = m_mbeanName;
+    if (null != name) {
+      m_mbeanName = null;
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+      } catch (JMException e) {
+        LOG.warn("Unable to remove the heartbeat processing metrics", e);
+      }
+    }
+
+    if (!m_asyncEnabled) {
+      return;
+    }
+
+    for (ThreadPoolExecutor worker : m_workers) {
+      worker.shutdown();
+    }
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(STOP_TIMEOUT_SECONDS);
+    try {
+      for (ThreadPoolExecutor worker : m_workers) {
+        long remaining = deadline - System.nanoTime();
+        if (!worker.awaitTermination(Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+          LOG.warn("Heartbeats were still being processed after {} seconds, abandoning {} queued heartbeats",
+              STOP_TIMEOUT_SECONDS, worker.getQueue().size());
+          worker.shutdownNow();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      for (ThreadPoolExecutor worker : m_workers) {
+        worker.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Gets the worker that a host is assigned to.
+   *
+   * @param hostname
+   *          the host.
+   * @return the worker.
+   */
+  private ThreadPoolExecutor getWorker(String hostname) {
+    int index = (hostname.hashCode() & Integer.MAX_VALUE) % m_workers.length;
+    return m_workers[index];
+  }
+
+  /**
+   * Blocks the submitting thread until the worker's queue has room, for at
+   * most the queue timeout. Unlike {@link ThreadPoolExecutor.CallerRunsPolicy},
+   * this preserves the per-host ordering of heartbeats.
+   */
+  private static final class BlockWhenFullPolicy implements RejectedExecutionHandler {
+
+    /**
+     * The maximum time, in seconds, to wait for room on the queue.
+     */
+    private final long m_timeout;
+
+    private BlockWhenFullPolicy(long timeout) {
+      m_timeout = timeout;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+      if (executor.isShutdown()) {
+        throw new RejectedExecutionException("The heartbeat processor has been stopped");
+      }
+
+      try {
+        if (!executor.getQueue().offer(r, m_timeout, TimeUnit.SECONDS)) {
+          throw new RejectedExecutionException("The heartbeat processing queue stayed full for "
+              + m_timeout + " seconds");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RejectedExecutionException("Interrupted while waiting to queue a heartbeat", e);
+      }
+    }
+  }
+
+  /**
+   * A custom {@link ThreadFactory} for the heartbeat processing workers.
+   */
+  private static final class HeartbeatProcessorThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger s_threadIdPool = new AtomicInteger(1);
+
+    private final int m_worker;
+
+    private HeartbeatProcessorThreadFactory(int worker) {
+      m_worker = worker;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "heartbeat-processor-" + m_worker + "-"
+          + s_threadIdPool.getAndIncrement());
+
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import java.util.Map;
+
+/**
+ * The heartbeat processing metrics which are exposed over JMX by the
+ * {@link HeartbeatProcessor}.
+ */
+public interface HeartbeatProcessorMXBean {
+
+  /**
+   * Gets whether heartbeat stages are processed asynchronously.
+   *
+   * @return {@code true} if stages are run on background workers.
+   */
+  boolean isAsyncEnabled();
+
+  /**
+   * Gets the number of heartbeats waiting to be processed across all workers.
+   *
+   * @return the total queue depth, or {@code 0} if not enabled.
+   */
+  int getQueueDepth();
+
+  /**
+   * Gets the number of times that each stage has been run.
+   *
+   * @return the invocation count keyed by stage name.
+   */
+  Map<String, Long> getStageCounts();
+
+  /**
+   * Gets the average time, in milliseconds, spent in each stage.
+   *
+   * @return the average latency keyed by stage name.
+   */
+  Map<String, Double> getStageAverageLatencies();
+}
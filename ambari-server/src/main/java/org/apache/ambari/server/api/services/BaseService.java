@@ -27,6 +27,8 @@ import org.apache.ambari.server.api.services.parsers.RequestBodyParser;
 import org.apache.ambari.server.api.services.serializers.CsvSerializer;
 import org.apache.ambari.server.api.services.serializers.JsonSerializer;
 import org.apache.ambari.server.api.services.serializers.ResultSerializer;
+import org.apache.ambari.server.api.services.serializers.StreamingJsonSerializer;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.utils.RetryHelper;
 import org.eclipse.jetty.util.ajax.JSON;
@@ -45,6 +47,11 @@ import java.util.Set;
 public abstract class BaseService {
   public final static MediaType MEDIA_TYPE_TEXT_CSV_TYPE = new MediaType("text", "csv");
 
+  /**
+   * Whether the default serializer streams results to the client.
+   */
+  private static boolean s_streamingSerialization = false;
+
   /**
    * Factory for creating resource instances.
    */
@@ -53,8 +60,17 @@ public abstract class BaseService {
   /**
    * Result serializer.
    */
-  private ResultSerializer m_serializer = new JsonSerializer();
+  private ResultSerializer m_serializer = s_streamingSerialization ?
+      new StreamingJsonSerializer() : new JsonSerializer();
 
+  /**
+   * Initialize the services with the server configuration.
+   *
+   * @param configuration  the server configuration
+   */
+  public static void init(Configuration configuration) {
+    s_streamingSerialization = configuration.isApiStreamingSerializationEnabled();
+  }
 
   /**
    * Requests are funneled through this method so that common logic can be executed.
@@ -158,7 +174,7 @@ public abstract class BaseService {
       return new ResultSerializer() {
         @Override
         public Object serialize(Result result) {
-          return serializer.serialize(result).toString();
+          return StreamingJsonSerializer.toString(serializer.serialize(result));
         }
 
         @Override
@@ -170,7 +186,7 @@ public abstract class BaseService {
       return new ResultSerializer() {
         @Override
         public Object serialize(Result result) {
-          return JSON.parse(serializer.serialize(result).toString());
+          return JSON.parse(StreamingJsonSerializer.toString(serializer.serialize(result)));
         }
 
         @Override
@@ -30,6 +30,7 @@ import org.codehaus.jackson.util.DefaultPrettyPrinter;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -51,20 +52,21 @@ public class JsonSerializer implements ResultSerializer {
    */
   JsonGenerator m_generator;
 
+  /**
+   * Whether nodes of the result tree are removed once they have been written.
+   */
+  private boolean m_releaseNodes = false;
+
 
   @Override
   public Object serialize(Result result) {
     try {
-      ByteArrayOutputStream bytesOut = init();
-
       if (result.getStatus().isErrorState()) {
         return serializeError(result.getStatus());
       }
 
-      TreeNode<Resource> treeNode = result.getResultTree();
-      processNode(treeNode);
-
-      m_generator.close();
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+      serialize(result, bytesOut, false);
       return bytesOut.toString("UTF-8");
     } catch (IOException e) {
       //todo: exception handling.  Create ResultStatus 500 and call serializeError
@@ -72,6 +74,28 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
+  /**
+   * Serialize the given result directly to an output stream as the result
+   * tree is walked.
+   *
+   * @param result        the result to serialize; must not be in an error state
+   * @param out           the stream to write to; it is not closed
+   * @param releaseNodes  if true, each node of the result tree is removed from
+   *                      its parent once it has been written so that it can be
+   *                      garbage collected while the rest of the tree is written
+   *
+   * @throws IOException if the result can't be written
+   */
+  public void serialize(Result result, OutputStream out, boolean releaseNodes) throws IOException {
+    m_generator = createJsonGenerator(out);
+    m_releaseNodes = releaseNodes;
+
+    TreeNode<Resource> treeNode = result.getResultTree();
+    processNode(treeNode);
+
+    m_generator.flush();
+  }
+
   @Override
   public Object serializeError(ResultStatus error) {
     try {
@@ -102,7 +126,11 @@ public class JsonSerializer implements ResultSerializer {
   }
 
   private void processNode(TreeNode<Resource> node) throws IOException {
-    if (isObject(node)) {
+    // determined up front since released children change the node's shape
+    boolean isObject = isObject(node);
+    boolean isArray  = isArray(node);
+
+    if (isObject) {
       m_generator.writeStartObject();
 
       writeHref(node);
@@ -114,22 +142,27 @@ public class JsonSerializer implements ResultSerializer {
       }
     }
 
-    if (isArray(node)) {
+    if (isArray) {
       if (node.getName() != null)
         m_generator.writeArrayFieldStart(node.getName());
       else
         m_generator.writeStartArray();
     }
 
-    for (TreeNode<Resource> child : node.getChildren()) {
-      processNode(child);
+    Iterator<TreeNode<Resource>> children = node.getChildren().iterator();
+    while (children.hasNext()) {
+      processNode(children.next());
+
+      if (m_releaseNodes) {
+        children.remove();
+      }
     }
 
-    if (isArray(node)) {
+    if (isArray) {
       m_generator.writeEndArray();
     }
 
-    if (isObject(node)) {
+    if (isObject) {
       m_generator.writeEndObject();
     }
   }
@@ -202,8 +235,8 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
-  private JsonGenerator createJsonGenerator(ByteArrayOutputStream baos) throws IOException {
-    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(baos,
+  private JsonGenerator createJsonGenerator(OutputStream out) throws IOException {
+    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(out,
         Charset.forName("UTF-8").newEncoder()));
 
     DefaultPrettyPrinter p = new DefaultPrettyPrinter();
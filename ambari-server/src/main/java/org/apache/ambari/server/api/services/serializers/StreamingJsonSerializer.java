@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.api.services.serializers;
+
+import org.apache.ambari.server.api.services.Result;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * JSON serializer which defers writing until the response entity is written.
+ * The result tree is still built completely in memory by the query before it
+ * is serialized; what this serializer avoids is a second, rendered copy of the
+ * result.  The tree is written directly to the response stream and each node
+ * is released once it has been written, so written resources can be collected
+ * while the rest of the response is produced.  Error results are rendered
+ * immediately.
+ * <p/>
+ * The status of the response is decided before the entity is written.  If
+ * writing fails part way through, the failure is propagated from
+ * {@link StreamingOutput#write(OutputStream)} without closing the open JSON
+ * structures.  When nothing has been flushed to the client yet, the container
+ * can still answer with an error status; otherwise the client receives a 200
+ * status with a truncated body which does not parse as JSON.
+ */
+public class StreamingJsonSerializer extends JsonSerializer {
+
+  @Override
+  public Object serialize(final Result result) {
+    if (result.getStatus().isErrorState()) {
+      return serializeError(result.getStatus());
+    }
+
+    return new StreamingOutput() {
+      @Override
+      public void write(OutputStream output) throws IOException {
+        serialize(result, output, true);
+      }
+    };
+  }
+
+  /**
+   * Convert a serialized result to a string.  Streaming results are written
+   * to memory; any other result is converted with {@link Object#toString()}.
+   *
+   * @param serialized  the serialized result
+   *
+   * @return the string form of the serialized result
+   */
+  public static String toString(Object serialized) {
+    if (serialized instanceof StreamingOutput) {
+      try {
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        ((StreamingOutput) serialized).write(bytesOut);
+        return bytesOut.toString("UTF-8");
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to serialize to json: " + e, e);
+      }
+    }
+    return serialized.toString();
+  }
+}
@@ -314,6 +314,11 @@ public class Configuration {
   public static final String KERBEROS_KEYTAB_CACHE_DIR_DEFAULT = "/var/lib/ambari-server/data/cache";
   public static final String KERBEROS_CHECK_JAAS_CONFIGURATION_KEY = "kerberos.check.jaas.configuration";
   public static final String KERBEROS_CHECK_JAAS_CONFIGURATION_DEFAULT = "false";
+  public static final String KERBEROS_OPERATION_THREADS_KEY = "kerberos.operation.threads";
+  public static final String KERBEROS_OPERATION_THREADS_DEFAULT = "1";
+
+  public static final String TOPOLOGY_TASK_THREADS_KEY = "topology.task.threads";
+  public static final String TOPOLOGY_TASK_THREADS_DEFAULT = "1";
 
   /**
    * Recovery related configuration
@@ -498,6 +503,38 @@ public class Configuration {
    */
   public static final String ALERTS_EXECUTION_SCHEDULER_THREADS_DEFAULT = "2";
 
+  /**
+   * The maximum number of threads which dispatch alert notifications.
+   */
+  public static final String ALERTS_DISPATCH_THREADS_KEY = "alerts.dispatch.maxThreads";
+
+  /**
+   * The default maximum number of threads which dispatch alert notifications.
+   */
+  public static final String ALERTS_DISPATCH_THREADS_DEFAULT = "2";
+
+  /**
+   * The maximum number of notifications for a single alert target which are
+   * dispatched concurrently.
+   */
+  public static final String ALERTS_DISPATCH_TARGET_CONCURRENCY_KEY = "alerts.dispatch.target.concurrency";
+
+  /**
+   * The default number of concurrent dispatches per alert target.
+   */
+  public static final String ALERTS_DISPATCH_TARGET_CONCURRENCY_DEFAULT = "1";
+
+  /**
+   * The number of times a failed alert notification is dispatched again
+   * before its notices are marked as failed.
+   */
+  public static final String ALERTS_DISPATCH_RETRIES_KEY = "alerts.dispatch.retries";
+
+  /**
+   * The default number of retries of a failed alert notification.
+   */
+  public static final String ALERTS_DISPATCH_RETRIES_DEFAULT = "0";
+
   /**
    * If {@code true} then alert information is cached and not immediately
    * persisted in the database.
@@ -525,6 +562,152 @@ public class Configuration {
    */
   public static final String ALERTS_CACHE_SIZE_DEFAULT = "50000";
 
+  /**
+   * The interval, in milliseconds, at which received alerts are coalesced
+   * and persisted in batches. Repeated alerts with the same state for the
+   * same cluster, definition, instance and host within an interval are
+   * reduced to the latest one, while state changes are kept. A value of
+   * {@code 0} processes alerts as they are received.
+   */
+  public static final String ALERTS_INGEST_BATCH_INTERVAL = "alerts.ingest.batch.interval";
+
+  /**
+   * The default alert batching interval, which disables batching.
+   */
+  public static final String ALERTS_INGEST_BATCH_INTERVAL_DEFAULT = "0";
+
+  /**
+   * If {@code true} then command, status and host status reports contained in
+   * agent heartbeats are processed on background workers and the heartbeat
+   * response is returned to the agent right away.
+   */
+  public static final String HEARTBEAT_ASYNC_PROCESSING_ENABLED = "agent.heartbeat.async.processing.enabled";
+
+  /**
+   * The number of workers which process heartbeat reports. Each host is
+   * always assigned to the same worker so that its heartbeats are processed
+   * in the order that they were received.
+   */
+  public static final String HEARTBEAT_PROCESSING_THREADS = "agent.heartbeat.processing.threads";
+
+  /**
+   * The default number of heartbeat processing workers.
+   */
+  public static final String HEARTBEAT_PROCESSING_THREADS_DEFAULT = "4";
+
+  /**
+   * The maximum number of heartbeats queued on a single worker before the
+   * agent request threads are blocked.
+   */
+  public static final String HEARTBEAT_PROCESSING_QUEUE_SIZE = "agent.heartbeat.processing.queue.size";
+
+  /**
+   * The default size of each heartbeat processing queue.
+   */
+  public static final String HEARTBEAT_PROCESSING_QUEUE_SIZE_DEFAULT = "500";
+
+  /**
+   * The maximum number of seconds that an agent request thread waits for room
+   * on a full heartbeat processing queue before the heartbeat is rejected and
+   * the agent is asked to register again.
+   */
+  public static final String HEARTBEAT_PROCESSING_QUEUE_TIMEOUT = "agent.heartbeat.processing.queue.timeout";
+
+  /**
+   * The default time, in seconds, to wait for room on a heartbeat processing
+   * queue.
+   */
+  public static final String HEARTBEAT_PROCESSING_QUEUE_TIMEOUT_DEFAULT = "10";
+
+  /**
+   * The maximum number of queued commands sent to an agent in a single
+   * heartbeat response. Any remaining commands are sent on subsequent
+   * heartbeats. A value of {@code 0} means that there is no limit.
+   */
+  public static final String AGENT_HEARTBEAT_MAX_COMMANDS = "agent.heartbeat.commands.max";
+
+  /**
+   * The default maximum number of commands per heartbeat response.
+   */
+  public static final String AGENT_HEARTBEAT_MAX_COMMANDS_DEFAULT = "0";
+
+  /**
+   * Whether REST API results are written directly to the response stream
+   * instead of being rendered into a string first.  The result tree itself
+   * is still built in memory before it is written.
+   */
+  public static final String API_STREAMING_SERIALIZATION_ENABLED = "api.serialization.streaming.enabled";
+
+  /**
+   * The default for streaming REST API results.
+   */
+  public static final String API_STREAMING_SERIALIZATION_ENABLED_DEFAULT = "false";
+
+  /**
+   * Whether JMX endpoints are scraped in the background into a snapshot cache
+   * that is shared by all JMX property providers.
+   */
+  public static final String JMX_METRICS_CACHE_ENABLED = "server.jmx.cache.enabled";
+
+  /**
+   * The default for the shared JMX snapshot cache.
+   */
+  public static final String JMX_METRICS_CACHE_ENABLED_DEFAULT = "false";
+
+  /**
+   * The interval, in seconds, between background scrapes of a JMX endpoint.
+   */
+  public static final String JMX_METRICS_CACHE_REFRESH_INTERVAL = "server.jmx.cache.refresh.interval";
+
+  /**
+   * The default interval between background scrapes of a JMX endpoint.
+   */
+  public static final String JMX_METRICS_CACHE_REFRESH_INTERVAL_DEFAULT = "15";
+
+  /**
+   * The time, in seconds, after which a JMX endpoint that has not been
+   * requested is no longer scraped.
+   */
+  public static final String JMX_METRICS_CACHE_IDLE_TIMEOUT = "server.jmx.cache.idle.timeout";
+
+  /**
+   * The default idle time after which a JMX endpoint is no longer scraped.
+   */
+  public static final String JMX_METRICS_CACHE_IDLE_TIMEOUT_DEFAULT = "300";
+
+  /**
+   * The number of threads used to scrape JMX endpoints in the background.
+   */
+  public static final String JMX_METRICS_CACHE_THREADS = "server.jmx.cache.threads";
+
+  /**
+   * The default number of threads used to scrape JMX endpoints.
+   */
+  public static final String JMX_METRICS_CACHE_THREADS_DEFAULT = "4";
+
+  /**
+   * Whether concurrent metrics GET requests for the same URL share a single
+   * request and response.
+   */
+  public static final String METRICS_REQUEST_COALESCING_ENABLED = "server.metrics.http.coalescing.enabled";
+
+  /**
+   * The default for sharing concurrent metrics requests.
+   */
+  public static final String METRICS_REQUEST_COALESCING_ENABLED_DEFAULT = "false";
+
+  /**
+   * The maximum number of metrics requests that may be in flight to a single
+   * host when request coalescing is enabled. A value of {@code 0} means that
+   * there is no limit.
+   */
+  public static final String METRICS_MAX_REQUESTS_PER_HOST = "server.metrics.http.max.requests.per.host";
+
+  /**
+   * The default maximum number of metrics requests in flight per host.
+   */
+  public static final String METRICS_MAX_REQUESTS_PER_HOST_DEFAULT = "0";
+
   /**
    * For HTTP Response header configuration for Ambari Server UI
    */
@@ -1989,6 +2172,31 @@ public class Configuration {
       ALERTS_EXECUTION_SCHEDULER_THREADS_KEY, ALERTS_EXECUTION_SCHEDULER_THREADS_DEFAULT));
   }
 
+  /**
+   * @return max thread pool size for AlertNoticeDispatchService, default 2
+   */
+  public int getAlertDispatchPoolSize() {
+    return Integer.parseInt(properties.getProperty(
+      ALERTS_DISPATCH_THREADS_KEY, ALERTS_DISPATCH_THREADS_DEFAULT));
+  }
+
+  /**
+   * @return the maximum number of concurrent dispatches per alert target,
+   *         default 1
+   */
+  public int getAlertDispatchTargetConcurrency() {
+    return Integer.parseInt(properties.getProperty(
+      ALERTS_DISPATCH_TARGET_CONCURRENCY_KEY, ALERTS_DISPATCH_TARGET_CONCURRENCY_DEFAULT));
+  }
+
+  /**
+   * @return the number of retries of a failed alert notification, default 0
+   */
+  public int getAlertDispatchRetries() {
+    return Integer.parseInt(properties.getProperty(
+      ALERTS_DISPATCH_RETRIES_KEY, ALERTS_DISPATCH_RETRIES_DEFAULT));
+  }
+
   /**
    * Get the node recovery type DEFAULT|AUTO_START|FULL
    * @return
@@ -2089,6 +2297,35 @@ public class Configuration {
       KERBEROS_CHECK_JAAS_CONFIGURATION_DEFAULT));
   }
 
+  /**
+   * Gets the number of threads used to create principals and keytab files when
+   * Kerberos identities are processed. Each thread uses its own connection to
+   * the KDC. A value of {@code 1} processes the identities sequentially.
+   *
+   * @return the number of Kerberos operation threads, or
+   *         {@value #KERBEROS_OPERATION_THREADS_DEFAULT} if not set.
+   */
+  @Experimental(feature = ExperimentalFeature.PARALLEL_PROCESSING)
+  public int getKerberosOperationThreads() {
+    return Integer.parseInt(properties.getProperty(
+      KERBEROS_OPERATION_THREADS_KEY, KERBEROS_OPERATION_THREADS_DEFAULT));
+  }
+
+  /**
+   * Gets the number of threads used to run the install and start tasks of
+   * hosts provisioned from a blueprint. The tasks of a single host always run
+   * in order on the same thread. A value of {@code 1} runs the tasks of all
+   * hosts sequentially.
+   *
+   * @return the number of topology task threads, or
+   *         {@value #TOPOLOGY_TASK_THREADS_DEFAULT} if not set.
+   */
+  @Experimental(feature = ExperimentalFeature.PARALLEL_PROCESSING)
+  public int getTopologyTaskThreads() {
+    return Integer.parseInt(properties.getProperty(
+      TOPOLOGY_TASK_THREADS_KEY, TOPOLOGY_TASK_THREADS_DEFAULT));
+  }
+
   /**
    * Gets the type of database by examining the {@link #getDatabaseUrl()} JDBC
    * URL.
@@ -2452,6 +2689,156 @@ public class Configuration {
     return Integer.parseInt(properties.getProperty(ALERTS_CACHE_SIZE, ALERTS_CACHE_SIZE_DEFAULT));
   }
 
+  /**
+   * Gets the interval at which received alerts are persisted in batches.
+   *
+   * @return the batch interval in milliseconds, or
+   *         {@value #ALERTS_INGEST_BATCH_INTERVAL_DEFAULT} if not set, in
+   *         which case alerts are not batched.
+   */
+  @Experimental(feature = ExperimentalFeature.ALERT_BATCHING)
+  public long getAlertIngestBatchInterval() {
+    return Long.parseLong(properties.getProperty(ALERTS_INGEST_BATCH_INTERVAL,
+        ALERTS_INGEST_BATCH_INTERVAL_DEFAULT));
+  }
+
+  /**
+   * Gets whether heartbeat reports are processed asynchronously. The default
+   * is {@code false}.
+   *
+   * @return {@code true} if heartbeat reports are processed on background
+   *         workers, {@code false} otherwise.
+   */
+  @Experimental(feature = ExperimentalFeature.ASYNC_HEARTBEAT_PROCESSING)
+  public boolean isHeartbeatAsyncProcessingEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        HEARTBEAT_ASYNC_PROCESSING_ENABLED, Boolean.FALSE.toString()));
+  }
+
+  /**
+   * Gets the number of workers used to process heartbeat reports.
+   *
+   * @return the number of workers, or
+   *         {@value #HEARTBEAT_PROCESSING_THREADS_DEFAULT} if not set.
+   */
+  @Experimental(feature = ExperimentalFeature.ASYNC_HEARTBEAT_PROCESSING)
+  public int getHeartbeatProcessingThreads() {
+    return Integer.parseInt(properties.getProperty(
+        HEARTBEAT_PROCESSING_THREADS, HEARTBEAT_PROCESSING_THREADS_DEFAULT));
+  }
+
+  /**
+   * Gets the maximum number of heartbeats queued on each worker.
+   *
+   * @return the queue size, or
+   *         {@value #HEARTBEAT_PROCESSING_QUEUE_SIZE_DEFAULT} if not set.
+   */
+  @Experimental(feature = ExperimentalFeature.ASYNC_HEARTBEAT_PROCESSING)
+  public int getHeartbeatProcessingQueueSize() {
+    return Integer.parseInt(properties.getProperty(
+        HEARTBEAT_PROCESSING_QUEUE_SIZE, HEARTBEAT_PROCESSING_QUEUE_SIZE_DEFAULT));
+  }
+
+  /**
+   * Gets the time to wait for room on a full heartbeat processing queue.
+   *
+   * @return the timeout in seconds, or
+   *         {@value #HEARTBEAT_PROCESSING_QUEUE_TIMEOUT_DEFAULT} if not set.
+   */
+  @Experimental(feature = ExperimentalFeature.ASYNC_HEARTBEAT_PROCESSING)
+  public int getHeartbeatProcessingQueueTimeout() {
+    return Integer.parseInt(properties.getProperty(
+        HEARTBEAT_PROCESSING_QUEUE_TIMEOUT, HEARTBEAT_PROCESSING_QUEUE_TIMEOUT_DEFAULT));
+  }
+
+  /**
+   * Gets the maximum number of commands sent to an agent in a single heartbeat
+   * response.
+   *
+   * @return the maximum number of commands, or {@code 0} for no limit.
+   */
+  public int getAgentHeartbeatMaxCommands() {
+    return Integer.parseInt(properties.getProperty(
+        AGENT_HEARTBEAT_MAX_COMMANDS, AGENT_HEARTBEAT_MAX_COMMANDS_DEFAULT));
+  }
+
+  /**
+   * Gets whether REST API results are streamed to the client as they are
+   * serialized.
+   *
+   * @return {@code true} if results are streamed, {@code false} otherwise.
+   */
+  public boolean isApiStreamingSerializationEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        API_STREAMING_SERIALIZATION_ENABLED, API_STREAMING_SERIALIZATION_ENABLED_DEFAULT));
+  }
+
+  /**
+   * Gets whether JMX endpoints are scraped in the background into a shared
+   * snapshot cache.
+   *
+   * @return {@code true} if the cache is enabled, {@code false} otherwise.
+   */
+  public boolean isJMXMetricsCacheEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        JMX_METRICS_CACHE_ENABLED, JMX_METRICS_CACHE_ENABLED_DEFAULT));
+  }
+
+  /**
+   * Gets the interval between background scrapes of a JMX endpoint. The
+   * default is {@value #JMX_METRICS_CACHE_REFRESH_INTERVAL_DEFAULT} seconds.
+   *
+   * @return the refresh interval, in seconds.
+   */
+  public int getJMXMetricsCacheRefreshInterval() {
+    return Integer.parseInt(properties.getProperty(
+        JMX_METRICS_CACHE_REFRESH_INTERVAL, JMX_METRICS_CACHE_REFRESH_INTERVAL_DEFAULT));
+  }
+
+  /**
+   * Gets the time after which an endpoint that has not been requested is no
+   * longer scraped. The default is
+   * {@value #JMX_METRICS_CACHE_IDLE_TIMEOUT_DEFAULT} seconds.
+   *
+   * @return the idle timeout, in seconds.
+   */
+  public int getJMXMetricsCacheIdleTimeout() {
+    return Integer.parseInt(properties.getProperty(
+        JMX_METRICS_CACHE_IDLE_TIMEOUT, JMX_METRICS_CACHE_IDLE_TIMEOUT_DEFAULT));
+  }
+
+  /**
+   * Gets the number of threads used to scrape JMX endpoints. The default is
+   * {@value #JMX_METRICS_CACHE_THREADS_DEFAULT}.
+   *
+   * @return the number of scraper threads.
+   */
+  public int getJMXMetricsCacheThreads() {
+    return Integer.parseInt(properties.getProperty(
+        JMX_METRICS_CACHE_THREADS, JMX_METRICS_CACHE_THREADS_DEFAULT));
+  }
+
+  /**
+   * Gets whether concurrent metrics GET requests for the same URL share a
+   * single request and response.
+   *
+   * @return {@code true} if requests are shared, {@code false} otherwise.
+   */
+  public boolean isMetricsRequestCoalescingEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        METRICS_REQUEST_COALESCING_ENABLED, METRICS_REQUEST_COALESCING_ENABLED_DEFAULT));
+  }
+
+  /**
+   * Gets the maximum number of metrics requests in flight to a single host.
+   *
+   * @return the maximum number of requests, or {@code 0} for no limit.
+   */
+  public int getMetricsMaxRequestsPerHost() {
+    return Integer.parseInt(properties.getProperty(
+        METRICS_MAX_REQUESTS_PER_HOST, METRICS_MAX_REQUESTS_PER_HOST_DEFAULT));
+  }
+
   /**
    * @return number of retry attempts for api and blueprint operations
    */
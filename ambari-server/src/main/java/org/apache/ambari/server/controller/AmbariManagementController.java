@@ -29,6 +29,7 @@ import org.apache.ambari.server.actionmanager.ActionManager;
 import org.apache.ambari.server.agent.ExecutionCommand;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.controller.internal.RequestStageContainer;
+import org.apache.ambari.server.controller.jmx.JMXMetricsCacheProvider;
 import org.apache.ambari.server.controller.metrics.timeline.cache.TimelineMetricCacheProvider;
 import org.apache.ambari.server.metadata.RoleCommandOrder;
 import org.apache.ambari.server.scheduler.ExecutionScheduleManager;
@@ -795,6 +796,12 @@ public interface AmbariManagementController {
 
   TimelineMetricCacheProvider getTimelineMetricCacheProvider();
 
+  /**
+   * Returns the provider of the shared JMX snapshot cache
+   * @return JMXMetricsCacheProvider instance
+   */
+  JMXMetricsCacheProvider getJMXMetricsCacheProvider();
+
   /**
    * Returns KerberosHelper instance
    * @return
@@ -390,15 +390,19 @@ public interface KerberosHelper {
    * See {@link org.apache.ambari.server.state.kerberos.VariableReplacementHelper#replaceVariables(String, java.util.Map)}
    * for information on variable replacement.
    *
-   * @param configurations a Map of configurations
-   * @param updates        a Map of configuration updates
-   * @param replacements   a Map of (grouped) replacement values
+   * @param configurations   a Map of configurations
+   * @param updates          a Map of configuration updates
+   * @param replacements     a Map of (grouped) replacement values
+   * @param replacementCache a Map used to remember values replaced using the replacements Map, which
+   *                         may be shared by calls using the same, unchanging replacements Map; or
+   *                         null to not remember replaced values
    * @return the merged Map
    * @throws AmbariException
    */
   Map<String, Map<String, String>> mergeConfigurations(Map<String, Map<String, String>> configurations,
                                                        Map<String, KerberosConfigurationDescriptor> updates,
-                                                       Map<String, Map<String, String>> replacements)
+                                                       Map<String, Map<String, String>> replacements,
+                                                       Map<String, String> replacementCache)
       throws AmbariException;
 
   /**
@@ -418,6 +422,10 @@ public interface KerberosHelper {
    *                                       values
    * @param configurations                 a Map of configurations to use a replacements for variables
    *                                       in identity fields
+   * @param replacementCache               a Map used to remember values replaced using the
+   *                                       configurations Map, which may be shared by calls using the
+   *                                       same, unchanging configurations Map; or null to not remember
+   *                                       replaced values
    * @return an integer indicating the number of identities added to the data file
    * @throws java.io.IOException if an error occurs while writing a record to the data file
    */
@@ -425,7 +433,8 @@ public interface KerberosHelper {
                     Collection<KerberosIdentityDescriptor> identities,
                     Collection<String> identityFilter, String hostname, String serviceName,
                     String componentName, Map<String, Map<String, String>> kerberosConfigurations,
-                    Map<String, Map<String, String>> configurations)
+                    Map<String, Map<String, String>> configurations,
+                    Map<String, String> replacementCache)
       throws IOException;
 
   /**
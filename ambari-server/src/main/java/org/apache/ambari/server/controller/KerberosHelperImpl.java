@@ -345,6 +345,10 @@ public class KerberosHelperImpl implements KerberosHelper {
     Map<String, Map<String, String>> configurations = addAdditionalConfigurations(cluster,
         deepCopy(existingConfigurations), null, kerberosDescriptorProperties);
 
+    // The configurations do not change while the services are processed, so the service-level
+    // identities shared by all components only need their variables replaced once
+    Map<String, String> replacementCache = new HashMap<String, String>();
+
     Map<String, Set<String>> propertiesToIgnore = new HashMap<String, Set<String>>();
 
     for (String serviceName : services) {
@@ -363,7 +367,7 @@ public class KerberosHelperImpl implements KerberosHelper {
                 String configType = entry.getKey();
                 Map<String, String> properties = entry.getValue();
 
-                mergeConfigurations(kerberosConfigurations, configType, entry.getValue(), configurations);
+                mergeConfigurations(kerberosConfigurations, configType, entry.getValue(), configurations, replacementCache);
 
                 if ((properties != null) && !properties.isEmpty()) {
                   Set<String> propertyNames = propertiesToIgnore.get(configType);
@@ -382,7 +386,7 @@ public class KerberosHelperImpl implements KerberosHelper {
                 String configType = entry.getKey();
                 Map<String, String> properties = entry.getValue();
 
-                mergeConfigurations(kerberosConfigurations, configType, entry.getValue(), configurations);
+                mergeConfigurations(kerberosConfigurations, configType, entry.getValue(), configurations, replacementCache);
 
                 if ((properties != null) && !properties.isEmpty()) {
                   Set<String> propertyNames = propertiesToIgnore.get(configType);
@@ -396,7 +400,7 @@ public class KerberosHelperImpl implements KerberosHelper {
             }
 
             mergeConfigurations(kerberosConfigurations,
-                componentDescriptor.getConfigurations(!serviceAlreadyExists), configurations);
+                componentDescriptor.getConfigurations(!serviceAlreadyExists), configurations, replacementCache);
           }
         }
       }
@@ -947,7 +951,8 @@ public class KerberosHelperImpl implements KerberosHelper {
   @Override
   public Map<String, Map<String, String>> mergeConfigurations(Map<String, Map<String, String>> configurations,
                                                               Map<String, KerberosConfigurationDescriptor> updates,
-                                                              Map<String, Map<String, String>> replacements)
+                                                              Map<String, Map<String, String>> replacements,
+                                                              Map<String, String> replacementCache)
       throws AmbariException {
 
     if ((updates != null) && !updates.isEmpty()) {
@@ -961,7 +966,7 @@ public class KerberosHelperImpl implements KerberosHelper {
 
         if (configurationDescriptor != null) {
           Map<String, String> updatedProperties = configurationDescriptor.getProperties();
-          mergeConfigurations(configurations, type, updatedProperties, replacements);
+          mergeConfigurations(configurations, type, updatedProperties, replacements, replacementCache);
         }
       }
     }
@@ -974,7 +979,8 @@ public class KerberosHelperImpl implements KerberosHelper {
                            Collection<KerberosIdentityDescriptor> identities,
                            Collection<String> identityFilter, String hostname, String serviceName,
                            String componentName, Map<String, Map<String, String>> kerberosConfigurations,
-                           Map<String, Map<String, String>> configurations)
+                           Map<String, Map<String, String>> configurations,
+                           Map<String, String> replacementCache)
       throws IOException {
     int identitiesAdded = 0;
 
@@ -988,9 +994,9 @@ public class KerberosHelperImpl implements KerberosHelper {
           String principalConfiguration = null;
 
           if (principalDescriptor != null) {
-            principal = variableReplacementHelper.replaceVariables(principalDescriptor.getValue(), configurations);
+            principal = variableReplacementHelper.replaceVariables(principalDescriptor.getValue(), configurations, replacementCache);
             principalType = KerberosPrincipalType.translate(principalDescriptor.getType());
-            principalConfiguration = variableReplacementHelper.replaceVariables(principalDescriptor.getConfiguration(), configurations);
+            principalConfiguration = variableReplacementHelper.replaceVariables(principalDescriptor.getConfiguration(), configurations, replacementCache);
           }
 
           if (principal != null) {
@@ -1004,12 +1010,12 @@ public class KerberosHelperImpl implements KerberosHelper {
             boolean keytabIsCachable = false;
 
             if (keytabDescriptor != null) {
-              keytabFilePath = variableReplacementHelper.replaceVariables(keytabDescriptor.getFile(), configurations);
-              keytabFileOwnerName = variableReplacementHelper.replaceVariables(keytabDescriptor.getOwnerName(), configurations);
-              keytabFileOwnerAccess = variableReplacementHelper.replaceVariables(keytabDescriptor.getOwnerAccess(), configurations);
-              keytabFileGroupName = variableReplacementHelper.replaceVariables(keytabDescriptor.getGroupName(), configurations);
-              keytabFileGroupAccess = variableReplacementHelper.replaceVariables(keytabDescriptor.getGroupAccess(), configurations);
-              keytabFileConfiguration = variableReplacementHelper.replaceVariables(keytabDescriptor.getConfiguration(), configurations);
+              keytabFilePath = variableReplacementHelper.replaceVariables(keytabDescriptor.getFile(), configurations, replacementCache);
+              keytabFileOwnerName = variableReplacementHelper.replaceVariables(keytabDescriptor.getOwnerName(), configurations, replacementCache);
+              keytabFileOwnerAccess = variableReplacementHelper.replaceVariables(keytabDescriptor.getOwnerAccess(), configurations, replacementCache);
+              keytabFileGroupName = variableReplacementHelper.replaceVariables(keytabDescriptor.getGroupName(), configurations, replacementCache);
+              keytabFileGroupAccess = variableReplacementHelper.replaceVariables(keytabDescriptor.getGroupAccess(), configurations, replacementCache);
+              keytabFileConfiguration = variableReplacementHelper.replaceVariables(keytabDescriptor.getConfiguration(), configurations, replacementCache);
               keytabIsCachable = keytabDescriptor.isCachable();
             }
 
@@ -1089,6 +1095,8 @@ public class KerberosHelperImpl implements KerberosHelper {
 
       if (kerberosDescriptor != null) {
         Map<String, String> kerberosDescriptorProperties = kerberosDescriptor.getProperties();
+        HostConfigurationsCalculator configurationsCalculator =
+            new HostConfigurationsCalculator(cluster, kerberosDescriptorProperties);
 
         for (String hostname : hosts) {
           Map<String, KerberosIdentityDescriptor> hostActiveIdentities = new HashMap<String, KerberosIdentityDescriptor>();
@@ -1097,7 +1105,7 @@ public class KerberosHelperImpl implements KerberosHelper {
           if (!identities.isEmpty()) {
             // Calculate the current host-specific configurations. These will be used to replace
             // variables within the Kerberos descriptor data
-            Map<String, Map<String, String>> configurations = calculateConfigurations(cluster, hostname, kerberosDescriptorProperties);
+            Map<String, Map<String, String>> configurations = configurationsCalculator.calculate(hostname);
 
             for (KerberosIdentityDescriptor identity : identities) {
               KerberosPrincipalDescriptor principalDescriptor = identity.getPrincipalDescriptor();
@@ -1599,6 +1607,9 @@ public class KerberosHelperImpl implements KerberosHelper {
             // Iterate over the hosts in the cluster to find the components installed in each.  For each
             // component (aka service component host - sch) determine the configuration updates and
             // and the principals an keytabs to create.
+            HostConfigurationsCalculator configurationsCalculator =
+                new HostConfigurationsCalculator(cluster, kerberosDescriptorProperties);
+
             for (Host host : hosts.values()) {
               String hostname = host.getHostName();
 
@@ -1608,7 +1619,7 @@ public class KerberosHelperImpl implements KerberosHelper {
               if ((serviceComponentHosts != null) && !serviceComponentHosts.isEmpty()) {
                 // Calculate the current host-specific configurations. These will be used to replace
                 // variables within the Kerberos descriptor data
-                Map<String, Map<String, String>> configurations = calculateConfigurations(cluster, hostname, kerberosDescriptorProperties);
+                Map<String, Map<String, String>> configurations = configurationsCalculator.calculate(hostname);
 
                 // Add a short date value
                 configurations.get("").put("short_date", new SimpleDateFormat("MMddyy").format(new Date()));
@@ -1637,7 +1648,7 @@ public class KerberosHelperImpl implements KerberosHelper {
 
                     // Add service-level principals (and keytabs)
                     identitiesAdded += addIdentities(kerberosIdentityDataFileWriter, Collections.singleton(identity),
-                        null, hostname, serviceName, componentName, null, configurations);
+                        null, hostname, serviceName, componentName, null, configurations, null);
 
                     if (identitiesAdded > 0) {
                       // Add the relevant principal name and keytab file data to the command params state
@@ -1880,7 +1891,7 @@ public class KerberosHelperImpl implements KerberosHelper {
         String type = parts[0];
         String property = parts[1];
 
-        mergeConfigurations(configurations, type, Collections.singletonMap(property, value), replacements);
+        mergeConfigurations(configurations, type, Collections.singletonMap(property, value), replacements, null);
       }
     }
   }
@@ -1894,13 +1905,16 @@ public class KerberosHelperImpl implements KerberosHelper {
    *
    * @param configurations a Map of configurations
    * @param type           the configuration type
-   * @param updates        a Map of property updates
-   * @param replacements   a Map of (grouped) replacement values
+   * @param updates          a Map of property updates
+   * @param replacements     a Map of (grouped) replacement values
+   * @param replacementCache a Map used to remember values replaced using the replacements Map, or
+   *                         null to not remember replaced values
    * @throws AmbariException
    */
   private void mergeConfigurations(Map<String, Map<String, String>> configurations, String type,
                                    Map<String, String> updates,
-                                   Map<String, Map<String, String>> replacements) throws AmbariException {
+                                   Map<String, Map<String, String>> replacements,
+                                   Map<String, String> replacementCache) throws AmbariException {
     if (updates != null) {
       Map<String, String> existingProperties = configurations.get(type);
       if (existingProperties == null) {
@@ -1910,8 +1924,8 @@ public class KerberosHelperImpl implements KerberosHelper {
 
       for (Map.Entry<String, String> property : updates.entrySet()) {
         existingProperties.put(
-            variableReplacementHelper.replaceVariables(property.getKey(), replacements),
-            variableReplacementHelper.replaceVariables(property.getValue(), replacements)
+            variableReplacementHelper.replaceVariables(property.getKey(), replacements, replacementCache),
+            variableReplacementHelper.replaceVariables(property.getValue(), replacements, replacementCache)
         );
       }
     }
@@ -2190,12 +2204,27 @@ public class KerberosHelperImpl implements KerberosHelper {
    * @throws AmbariException
    */
   private Map<String, Map<String, String>> calculateExistingConfigurations(Cluster cluster, String hostname) throws AmbariException {
+    return calculateExistingConfigurations(cluster,
+        ambariManagementController.findConfigurationTagsWithOverrides(cluster, hostname));
+  }
+
+  /**
+   * Determines the existing configurations for the cluster given the configuration tags, including
+   * any host overrides, which apply.
+   *
+   * @param cluster           the cluster
+   * @param configurationTags the configuration tags by configuration type
+   * @return a map of the existing configurations
+   * @throws AmbariException
+   */
+  private Map<String, Map<String, String>> calculateExistingConfigurations(Cluster cluster,
+                                                                           Map<String, Map<String, String>> configurationTags)
+      throws AmbariException {
     // For a configuration type, both tag and an actual configuration can be stored
     // Configurations from the tag is always expanded and then over-written by the actual
     // global:version1:{a1:A1,b1:B1,d1:D1} + global:{a1:A2,c1:C1,DELETED_d1:x} ==>
     // global:{a1:A2,b1:B1,c1:C1}
     Map<String, Map<String, String>> configurations = new HashMap<String, Map<String, String>>();
-    Map<String, Map<String, String>> configurationTags = ambariManagementController.findConfigurationTagsWithOverrides(cluster, hostname);
 
     if (configurationTags.get(Configuration.GLOBAL_CONFIG_TAG) != null) {
       configHelper.applyCustomConfig(
@@ -2306,6 +2335,71 @@ public class KerberosHelperImpl implements KerberosHelper {
     }
   }
 
+  /**
+   * HostConfigurationsCalculator calculates the host-specific configurations, as
+   * {@link #calculateConfigurations(Cluster, String, Map)} does, for many hosts of a cluster.
+   * <p/>
+   * Hosts which are not in a configuration group share the same configuration tags, and so the
+   * same existing configurations. The existing configurations are only calculated once for each
+   * distinct set of configuration tags and the clusterHostInfo data is only calculated once for
+   * all hosts. A calculator should only be used for a single pass over the hosts since it does not
+   * notice configuration or topology changes made after it has calculated them.
+   */
+  private class HostConfigurationsCalculator {
+    private final Cluster cluster;
+    private final Map<String, String> kerberosDescriptorProperties;
+
+    /**
+     * The existing configurations, keyed by the configuration tags they were calculated from
+     */
+    private final Map<Map<String, Map<String, String>>, Map<String, Map<String, String>>> existingConfigurations =
+        new HashMap<Map<String, Map<String, String>>, Map<String, Map<String, String>>>();
+
+    /**
+     * The clusterHostInfo configuration, calculated for the first host
+     */
+    private Map<String, String> clusterHostInfo = null;
+
+    private HostConfigurationsCalculator(Cluster cluster, Map<String, String> kerberosDescriptorProperties) {
+      this.cluster = cluster;
+      this.kerberosDescriptorProperties = kerberosDescriptorProperties;
+    }
+
+    /**
+     * Calculates the map of configurations relative to the cluster and the specified host.
+     *
+     * @param hostname the relevant hostname
+     * @return a new, mutable Map of calculated configuration types
+     * @throws AmbariException
+     */
+    private Map<String, Map<String, String>> calculate(String hostname) throws AmbariException {
+      Map<String, Map<String, String>> configurationTags =
+          ambariManagementController.findConfigurationTagsWithOverrides(cluster, hostname);
+
+      Map<String, Map<String, String>> existing = existingConfigurations.get(configurationTags);
+      if (existing == null) {
+        existing = calculateExistingConfigurations(cluster, configurationTags);
+        existingConfigurations.put(configurationTags, existing);
+      }
+
+      Map<String, Map<String, String>> configurations = deepCopy(existing);
+      if ((clusterHostInfo != null) && !configurations.containsKey("clusterHostInfo")) {
+        configurations.put("clusterHostInfo", new HashMap<String, String>(clusterHostInfo));
+      }
+
+      configurations = addAdditionalConfigurations(cluster, configurations, hostname, kerberosDescriptorProperties);
+
+      if ((clusterHostInfo == null) && !existing.containsKey("clusterHostInfo")) {
+        Map<String, String> calculatedClusterHostInfo = configurations.get("clusterHostInfo");
+        if (calculatedClusterHostInfo != null) {
+          clusterHostInfo = new HashMap<String, String>(calculatedClusterHostInfo);
+        }
+      }
+
+      return configurations;
+    }
+  }
+
   /* ********************************************************************************************
    * Helper classes and enums
    * ******************************************************************************************** *\
@@ -29,6 +29,8 @@ import org.apache.ambari.server.controller.HostResponse;
 import org.apache.ambari.server.controller.ServiceComponentHostRequest;
 import org.apache.ambari.server.controller.ServiceComponentHostResponse;
 import org.apache.ambari.server.controller.jmx.JMXHostProvider;
+import org.apache.ambari.server.controller.jmx.JMXMetricsCache;
+import org.apache.ambari.server.controller.jmx.JMXMetricsCacheProvider;
 import org.apache.ambari.server.controller.jmx.JMXPropertyProvider;
 import org.apache.ambari.server.controller.metrics.MetricHostProvider;
 import org.apache.ambari.server.controller.metrics.MetricsPropertyProvider;
@@ -179,6 +181,9 @@ public abstract class AbstractProviderModule implements ProviderModule,
   @Inject
   TimelineMetricCacheProvider metricCacheProvider;
 
+  @Inject
+  JMXMetricsCacheProvider jmxMetricsCacheProvider;
+
   /**
    * The map of host components.
    */
@@ -218,6 +223,9 @@ public abstract class AbstractProviderModule implements ProviderModule,
     if (metricCacheProvider == null && managementController != null) {
       metricCacheProvider = managementController.getTimelineMetricCacheProvider();
     }
+    if (jmxMetricsCacheProvider == null && managementController != null) {
+      jmxMetricsCacheProvider = managementController.getJMXMetricsCacheProvider();
+    }
   }
 
 
@@ -616,6 +624,8 @@ public abstract class AbstractProviderModule implements ProviderModule,
     URLStreamProvider streamProvider = new URLStreamProvider(
         PROPERTY_REQUEST_CONNECT_TIMEOUT, PROPERTY_REQUEST_READ_TIMEOUT,
         configuration);
+    // only used by the metrics property providers
+    streamProvider.setCoalesceRequests(true);
 
     if (type.isInternalType()) {
       switch (type.getInternalType()) {
@@ -966,8 +976,11 @@ public abstract class AbstractProviderModule implements ProviderModule,
                                                      String componentNamePropertyId,
                                                      String statePropertyId) {
 
+    JMXMetricsCache metricsCache = jmxMetricsCacheProvider == null ?
+        null : jmxMetricsCacheProvider.getJMXMetricsCache();
+
     return new JMXPropertyProvider(PropertyHelper.getJMXPropertyIds(type), streamProvider,
-        jmxHostProvider, metricsHostProvider, clusterNamePropertyId, hostNamePropertyId,
+        metricsCache, jmxHostProvider, metricsHostProvider, clusterNamePropertyId, hostNamePropertyId,
         componentNamePropertyId, statePropertyId);
   }
 
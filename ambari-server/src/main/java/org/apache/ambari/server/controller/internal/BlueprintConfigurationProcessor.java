@@ -43,6 +43,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -109,6 +110,11 @@ public class BlueprintConfigurationProcessor {
   private static Map<String, Map<String, PropertyUpdater>> removePropertyUpdaters =
     new HashMap<String, Map<String, PropertyUpdater>>();
 
+  /**
+   * Number of parent levels merged into the host group properties during cluster creation
+   */
+  private static final int HOST_GROUP_CONFIG_DEPTH = 1;
+
   /**
    * Collection of all updaters
    */
@@ -181,6 +187,13 @@ public class BlueprintConfigurationProcessor {
   public Collection<String> getRequiredHostGroups() {
     Collection<String> requiredHostGroups = new HashSet<String>();
 
+    // cluster scoped configuration which also includes all default and BP properties
+    Map<String, Map<String, String>> clusterProps = clusterTopology.getConfiguration().getFullProperties();
+    Collection<Map<String, Map<String, String>>> allHgConfigProps = new ArrayList<Map<String, Map<String, String>>>();
+    for (HostGroupInfo groupInfo : clusterTopology.getHostGroupInfo().values()) {
+      allHgConfigProps.add(groupInfo.getConfiguration().getProperties());
+    }
+
     for (Map<String, Map<String, PropertyUpdater>> updaterMap : createCollectionOfUpdaters()) {
       for (Map.Entry<String, Map<String, PropertyUpdater>> entry : updaterMap.entrySet()) {
         String type = entry.getKey();
@@ -188,8 +201,6 @@ public class BlueprintConfigurationProcessor {
           String propertyName = updaterEntry.getKey();
           PropertyUpdater updater = updaterEntry.getValue();
 
-          // cluster scoped configuration which also includes all default and BP properties
-          Map<String, Map<String, String>> clusterProps = clusterTopology.getConfiguration().getFullProperties();
           Map<String, String> typeMap = clusterProps.get(type);
           if (typeMap != null && typeMap.containsKey(propertyName)) {
             requiredHostGroups.addAll(updater.getRequiredHostGroups(
@@ -197,8 +208,7 @@ public class BlueprintConfigurationProcessor {
           }
 
           // host group configs
-          for (HostGroupInfo groupInfo : clusterTopology.getHostGroupInfo().values()) {
-            Map<String, Map<String, String>> hgConfigProps = groupInfo.getConfiguration().getProperties();
+          for (Map<String, Map<String, String>> hgConfigProps : allHgConfigProps) {
             Map<String, String> hgTypeMap = hgConfigProps.get(type);
             if (hgTypeMap != null && hgTypeMap.containsKey(propertyName)) {
               requiredHostGroups.addAll(updater.getRequiredHostGroups(
@@ -233,6 +243,15 @@ public class BlueprintConfigurationProcessor {
     // removes a property other than the property it is registered for then we will
     // have an issue as it won't be removed from the clusterProps map as it is a copy.
     Map<String, Map<String, String>> clusterProps = clusterConfig.getFullProperties();
+
+    // merged host group properties are calculated once and kept in sync with the updates below,
+    // rather than being recalculated for every registered property
+    Map<HostGroupInfo, Map<String, Map<String, String>>> allHgConfigProps =
+        new LinkedHashMap<HostGroupInfo, Map<String, Map<String, String>>>();
+    for (HostGroupInfo groupInfo : groupInfoMap.values()) {
+      allHgConfigProps.put(groupInfo, groupInfo.getConfiguration().getFullProperties(HOST_GROUP_CONFIG_DEPTH));
+    }
+
     for (Map<String, Map<String, PropertyUpdater>> updaterMap : createCollectionOfUpdaters()) {
       for (Map.Entry<String, Map<String, PropertyUpdater>> entry : updaterMap.entrySet()) {
         String type = entry.getKey();
@@ -256,12 +275,25 @@ public class BlueprintConfigurationProcessor {
             }
 
             clusterConfig.setProperty(type, propertyName, updatedValue);
+
+            // host groups that see the cluster scoped value must see the updated value as well
+            for (Map.Entry<HostGroupInfo, Map<String, Map<String, String>>> hgEntry : allHgConfigProps.entrySet()) {
+              if (inheritsClusterProperty(hgEntry.getKey().getConfiguration(), clusterConfig, type, propertyName)) {
+                Map<String, Map<String, String>> hgConfigProps = hgEntry.getValue();
+                Map<String, String> hgTypeMap = hgConfigProps.get(type);
+                if (hgTypeMap == null) {
+                  hgTypeMap = new HashMap<String, String>();
+                  hgConfigProps.put(type, hgTypeMap);
+                }
+                hgTypeMap.put(propertyName, updatedValue);
+              }
+            }
           }
 
           // host group configs
-          for (HostGroupInfo groupInfo : groupInfoMap.values()) {
-            Configuration hgConfig = groupInfo.getConfiguration();
-            Map<String, Map<String, String>> hgConfigProps = hgConfig.getFullProperties(1);
+          for (Map.Entry<HostGroupInfo, Map<String, Map<String, String>>> hgEntry : allHgConfigProps.entrySet()) {
+            Configuration hgConfig = hgEntry.getKey().getConfiguration();
+            Map<String, Map<String, String>> hgConfigProps = hgEntry.getValue();
             Map<String, String> hgTypeMap = hgConfigProps.get(type);
             if (hgTypeMap != null && hgTypeMap.containsKey(propertyName)) {
               final String originalValue = hgTypeMap.get(propertyName);
@@ -273,6 +305,7 @@ public class BlueprintConfigurationProcessor {
               }
 
               hgConfig.setProperty(type, propertyName, updatedValue);
+              hgTypeMap.put(propertyName, updatedValue);
             }
           }
         }
@@ -304,6 +337,35 @@ public class BlueprintConfigurationProcessor {
     return configTypesUpdated;
   }
 
+  /**
+   * Determine whether the merged host group properties used during cluster creation take the given
+   * property from the cluster scoped configuration.  This is the case when the cluster configuration
+   * is within {@link #HOST_GROUP_CONFIG_DEPTH} levels of the host group configuration and no
+   * configuration before it sets the property.
+   *
+   * @param hgConfig       host group configuration
+   * @param clusterConfig  cluster scoped configuration
+   * @param type           config type
+   * @param propertyName   property name
+   *
+   * @return true if the host group sees the cluster scoped value of the property
+   */
+  private static boolean inheritsClusterProperty(Configuration hgConfig, Configuration clusterConfig,
+                                                 String type, String propertyName) {
+    Configuration config = hgConfig;
+    for (int depth = 0; config != null && depth <= HOST_GROUP_CONFIG_DEPTH; depth++) {
+      if (config == clusterConfig) {
+        return true;
+      }
+      Map<String, String> typeProps = config.getProperties().get(type);
+      if (typeProps != null && typeProps.containsKey(propertyName)) {
+        return false;
+      }
+      config = config.getParentConfiguration();
+    }
+    return false;
+  }
+
   /**
    * Returns true if property should be retained with default value instead of deleting
    * TODO: This is a temporary work-around till BP integrates with stack advisor
@@ -349,11 +411,12 @@ public class BlueprintConfigurationProcessor {
       }
     }
 
+    Map<Pattern, String> hostPatterns = createHostPatterns();
     for (Configuration configuration : allConfigs) {
       doSingleHostExportUpdate(singleHostTopologyUpdaters, configuration);
       doSingleHostExportUpdate(dbHostTopologyUpdaters, configuration);
 
-      doMultiHostExportUpdate(multiHostTopologyUpdaters, configuration);
+      doMultiHostExportUpdate(multiHostTopologyUpdaters, configuration, hostPatterns);
 
       doRemovePropertyExport(removePropertyUpdaters, configuration);
 
@@ -676,7 +739,7 @@ public class BlueprintConfigurationProcessor {
     Map<String, Map<String, PropertyUpdater>> highAvailabilityUpdaters = createMapOfOozieServerHAUpdaters();
 
     if (highAvailabilityUpdaters.get("oozie-site").size() > 0) {
-      doMultiHostExportUpdate(highAvailabilityUpdaters, clusterTopology.getConfiguration());
+      doMultiHostExportUpdate(highAvailabilityUpdaters, clusterTopology.getConfiguration(), createHostPatterns());
     }
   }
 
@@ -1000,13 +1063,33 @@ public class BlueprintConfigurationProcessor {
     return propertyValue.contains("undefined");
   }
 
+  /**
+   * Compile the patterns which match each host of the cluster topology in a property value,
+   * mapped to the host group token which replaces the host.  The patterns are compiled once
+   * for an export instead of once for every host in every exported property.
+   *
+   * @return map of host pattern to host group token, in host group order
+   */
+  private Map<Pattern, String> createHostPatterns() {
+    Map<Pattern, String> hostPatterns = new LinkedHashMap<Pattern, String>();
+    for (HostGroupInfo groupInfo : clusterTopology.getHostGroupInfo().values()) {
+      String hostGroupToken = "%HOSTGROUP::" + groupInfo.getHostGroupName() + "%";
+      for (String host : groupInfo.getHostNames()) {
+        hostPatterns.put(Pattern.compile(host + "\\b"), hostGroupToken);
+      }
+    }
+    return hostPatterns;
+  }
+
   /**
    * Update multi host topology configuration properties for blueprint export.
    *
    * @param updaters       registered updaters
    * @param configuration  configuration being processed
+   * @param hostPatterns   host patterns mapped to host group tokens, see {@link #createHostPatterns()}
    */
-  private void doMultiHostExportUpdate(Map<String, Map<String, PropertyUpdater>> updaters, Configuration configuration) {
+  private void doMultiHostExportUpdate(Map<String, Map<String, PropertyUpdater>> updaters, Configuration configuration,
+                                       Map<Pattern, String> hostPatterns) {
     Map<String, Map<String, String>> properties = configuration.getFullProperties();
     for (Map.Entry<String, Map<String, PropertyUpdater>> entry : updaters.entrySet()) {
       String type = entry.getKey();
@@ -1014,12 +1097,8 @@ public class BlueprintConfigurationProcessor {
         Map<String, String> typeProperties = properties.get(type);
         if (typeProperties != null && typeProperties.containsKey(propertyName)) {
           String propValue = typeProperties.get(propertyName);
-          for (HostGroupInfo groupInfo : clusterTopology.getHostGroupInfo().values()) {
-            Collection<String> hosts = groupInfo.getHostNames();
-            for (String host : hosts) {
-              propValue = propValue.replaceAll(host + "\\b", "%HOSTGROUP::" +
-                  groupInfo.getHostGroupName() + "%");
-            }
+          for (Map.Entry<Pattern, String> hostPattern : hostPatterns.entrySet()) {
+            propValue = hostPattern.getKey().matcher(propValue).replaceAll(hostPattern.getValue());
           }
           Collection<String> addedGroups = new HashSet<String>();
           String[] toks = propValue.split(",");
@@ -18,13 +18,14 @@
 
 package org.apache.ambari.server.controller.internal;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -186,6 +187,22 @@ public class ClusterControllerImpl implements ClusterController {
         resourceComparator = new ResourceComparator(sortRequest);
       }
 
+      // if the provider did not sort the set and only a page starting from
+      // an offset is requested, then avoid sorting the whole set
+      if (!providerAlreadySorted && null != pageRequest && !providerAlreadyPaged) {
+        switch (pageRequest.getStartingPoint()) {
+          case Beginning:
+            return getSortedPageFromOffset(pageRequest.getPageSize(), 0,
+                providerResources, predicate, provider, resourceComparator);
+          case OffsetStart:
+            return getSortedPageFromOffset(pageRequest.getPageSize(),
+                pageRequest.getOffset(), providerResources, predicate, provider,
+                resourceComparator);
+          default:
+            break;
+        }
+      }
+
       // if the provider did not already sort the set, then sort it based
       // on the comparator
       if (!providerAlreadySorted) {
@@ -565,25 +582,9 @@ public class ClusterControllerImpl implements ClusterController {
     return propertyProviders.get(type);
   }
 
-  /**
-   * Evaluate the predicate and create a list of filtered resources
-   *
-   * @param resourceIterable @ResourceIterable
-   * @return @LinkedList of filtered resources
-   */
-  private LinkedList<Resource> getEvaluatedResources(ResourceIterable
-                                              resourceIterable) {
-    LinkedList<Resource> resources = new LinkedList<Resource>();
-    if (resourceIterable != null) {
-      for (Resource resource : resourceIterable) {
-        resources.add(resource);
-      }
-    }
-    return resources;
-  }
-
   /**
    * Get one page of resources from the given set of resources starting at the given offset.
+   * The filtered resources are walked once and only the requested page is retained.
    *
    * @param pageSize   the page size
    * @param offset     the offset
@@ -598,33 +599,78 @@ public class ClusterControllerImpl implements ClusterController {
                                          ResourcePredicateEvaluator evaluator) {
 
     int currentOffset = 0;
-    Resource previous      = null;
+    int totalCount    = 0;
+    Resource previous = null;
+    Resource next     = null;
     Set<Resource> pageResources = new LinkedHashSet<Resource>();
-    LinkedList<Resource> filteredResources =
-      getEvaluatedResources(new ResourceIterable(resources, predicate, evaluator));
-    Iterator<Resource> iterator = filteredResources.iterator();
 
-    // skip till offset
-    while (currentOffset < offset && iterator.hasNext()) {
-      previous = iterator.next();
-      ++currentOffset;
-    }
-
-    // get a page worth of resources
-    for (int i = 0; i < pageSize && iterator.hasNext(); ++i) {
-      pageResources.add(iterator.next());
+    for (Resource resource : new ResourceIterable(resources, predicate, evaluator)) {
+      if (currentOffset < offset) {
+        // skip till offset
+        previous = resource;
+        ++currentOffset;
+      } else if (pageResources.size() < pageSize) {
+        pageResources.add(resource);
+      } else if (next == null) {
+        next = resource;
+      }
+      ++totalCount;
     }
 
     return new PageResponseImpl(pageResources,
         currentOffset,
         previous,
-        iterator.hasNext() ? iterator.next() : null,
-        filteredResources.size()
+        next,
+        totalCount
+      );
+  }
+
+  /**
+   * Get one page of resources from the given set of resources starting at the given
+   * offset, sorted with the given comparator.  Rather than sorting the entire set, only
+   * the smallest resources up to and including the one following the page are retained.
+   *
+   * @param pageSize    the page size
+   * @param offset      the offset
+   * @param resources   the set of resources
+   * @param predicate   the predicate
+   * @param comparator  the comparator used to order the resources
+   *
+   * @return a page response containing a page of resources
+   */
+  private PageResponse getSortedPageFromOffset(int pageSize, int offset,
+                                               Set<Resource> resources,
+                                               Predicate predicate,
+                                               ResourcePredicateEvaluator evaluator,
+                                               Comparator<Resource> comparator) {
+
+    long limit = (long) Math.max(offset, 0) + Math.max(pageSize, 0) + 1;
+    int  totalCount = 0;
+    TreeSet<Resource> topResources = new TreeSet<Resource>(comparator);
+
+    for (Resource resource : new ResourceIterable(resources, predicate, evaluator)) {
+      // count every match; the bounded set can't tell whether a resource
+      // equal to an evicted one has already been counted
+      ++totalCount;
+      if (topResources.add(resource) && topResources.size() > limit) {
+        topResources.pollLast();
+      }
+    }
+
+    PageResponse page = getPageFromOffset(pageSize, offset, topResources, null, evaluator);
+
+    return new PageResponseImpl(page.getIterable(),
+        page.getOffset(),
+        page.getPreviousResource(),
+        page.getNextResource(),
+        totalCount
       );
   }
 
   /**
    * Get one page of resources from the given set of resources ending at the given offset.
+   * The filtered resources are walked once and only the trailing resources needed to
+   * build the page are retained.
    *
    * @param pageSize   the page size
    * @param offset     the offset; -1 indicates the end of the resource set
@@ -638,32 +684,40 @@ public class ClusterControllerImpl implements ClusterController {
                                        Predicate predicate,
                                        ResourcePredicateEvaluator evaluator) {
 
-    int                currentOffset = resources.size() - 1;
-    Resource           next          = null;
-    List<Resource>     pageResources = new LinkedList<Resource>();
-    LinkedList<Resource> filteredResources =
-      getEvaluatedResources(new ResourceIterable(resources, predicate, evaluator));
-    Iterator<Resource> iterator = filteredResources.descendingIterator();
-
-    if (offset != -1) {
-      // skip till offset
-      while (currentOffset > offset && iterator.hasNext()) {
-        next = iterator.next();
-        --currentOffset;
+    int resourceCount = resources.size();
+    pageSize = Math.max(pageSize, 0);
+
+    // the number of resources to skip back from the end of the filtered resources
+    int skipCount = offset == -1 ? 0 : Math.max(resourceCount - 1 - offset, 0);
+
+    // retain the skipped resources, the page and the resource preceding the page
+    long capacity = (long) skipCount + pageSize + 1;
+    int  trailingCapacity = (int) Math.min(capacity, resourceCount);
+
+    int totalCount = 0;
+    ArrayDeque<Resource> trailingResources = new ArrayDeque<Resource>();
+    for (Resource resource : new ResourceIterable(resources, predicate, evaluator)) {
+      trailingResources.addLast(resource);
+      if (trailingResources.size() > trailingCapacity) {
+        trailingResources.removeFirst();
       }
+      ++totalCount;
     }
 
-    // get a page worth of resources
-    for (int i = 0; i < pageSize && iterator.hasNext(); ++i) {
-      pageResources.add(0, iterator.next());
-      --currentOffset;
-    }
+    List<Resource> trailing  = new ArrayList<Resource>(trailingResources);
+    int            base      = totalCount - trailing.size();
+    int            skipped   = Math.min(skipCount, totalCount);
+    int            pageEnd   = totalCount - skipped;
+    int            pageStart = pageEnd - Math.min(pageSize, pageEnd);
+
+    List<Resource> pageResources = new ArrayList<Resource>(
+        trailing.subList(pageStart - base, pageEnd - base));
 
     return new PageResponseImpl(pageResources,
-        currentOffset + 1,
-        iterator.hasNext() ? iterator.next() : null,
-        next,
-        filteredResources.size()
+        resourceCount - skipped - pageResources.size(),
+        pageStart > 0 ? trailing.get(pageStart - 1 - base) : null,
+        skipped > 0 ? trailing.get(pageEnd - base) : null,
+        totalCount
       );
   }
 
@@ -22,6 +22,8 @@ import com.google.inject.Injector;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.configuration.ComponentSSLConfiguration;
 import org.apache.ambari.server.controller.jmx.JMXHostProvider;
+import org.apache.ambari.server.controller.jmx.JMXMetricsCache;
+import org.apache.ambari.server.controller.jmx.JMXMetricsCacheProvider;
 import org.apache.ambari.server.controller.jmx.JMXPropertyProvider;
 import org.apache.ambari.server.controller.metrics.MetricHostProvider;
 import org.apache.ambari.server.controller.metrics.MetricsPropertyProvider;
@@ -81,6 +83,7 @@ public class StackDefinedPropertyProvider implements PropertyProvider {
   private final MetricHostProvider metricHostProvider;
   private final MetricsServiceProvider metricsServiceProvider;
   private TimelineMetricCacheProvider cacheProvider;
+  private JMXMetricsCacheProvider jmxMetricsCacheProvider;
 
   /**
    * PropertyHelper/AbstractPropertyProvider expect map of maps,
@@ -127,6 +130,7 @@ public class StackDefinedPropertyProvider implements PropertyProvider {
     defaultJmx = defaultJmxPropertyProvider;
     defaultGanglia = defaultGangliaPropertyProvider;
     cacheProvider = injector.getInstance(TimelineMetricCacheProvider.class);
+    jmxMetricsCacheProvider = injector.getInstance(JMXMetricsCacheProvider.class);
   }
 
   @Override
@@ -192,8 +196,11 @@ public class StackDefinedPropertyProvider implements PropertyProvider {
       }
 
       if (jmxMap.size() > 0) {
+        JMXMetricsCache metricsCache = jmxMetricsCacheProvider == null ?
+            null : jmxMetricsCacheProvider.getJMXMetricsCache();
+
         JMXPropertyProvider jpp = new JMXPropertyProvider(jmxMap, streamProvider,
-            jmxHostProvider, metricHostProvider,
+            metricsCache, jmxHostProvider, metricHostProvider,
             clusterNamePropertyId, hostNamePropertyId,
             componentNamePropertyId, resourceStatePropertyId);
 
@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Shares the responses of concurrent GET requests for the same URL and
+ * bounds the number of requests that may be in flight to a single host.
+ * <p/>
+ * The first caller for a URL performs the request and reads the whole
+ * response; callers that ask for the same URL while it is in flight wait for
+ * that response instead of opening their own connection. Since responses are
+ * read fully and closed right away, the underlying connections are returned
+ * to the keep-alive cache. A host that already has the maximum number of
+ * requests in flight fails further requests once the given wait time has
+ * passed, so that a few slow hosts can't hold all of the metrics threads.
+ */
+public class URLRequestCoalescer {
+
+  /**
+   * The maximum number of requests in flight per host; 0 for no limit.
+   */
+  private final int maxRequestsPerHost;
+
+  private final ConcurrentMap<String, FutureTask<byte[]>> inFlightRequests = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param maxRequestsPerHost  the maximum number of requests in flight per
+   *                            host; 0 for no limit
+   */
+  public URLRequestCoalescer(int maxRequestsPerHost) {
+    this.maxRequestsPerHost = Math.max(0, maxRequestsPerHost);
+  }
+
+  /**
+   * Read the response for the given URL, sharing it with any concurrent
+   * callers for the same URL.
+   *
+   * @param spec           the URL
+   * @param request        opens the response stream of the request
+   * @param maxWaitMillis  the time to wait for a free request slot of the host
+   *
+   * @return the response
+   *
+   * @throws IOException if the request failed or the host has too many
+   *                     requests in flight
+   */
+  public InputStream read(final String spec, final Callable<InputStream> request, final long maxWaitMillis)
+      throws IOException {
+
+    FutureTask<byte[]> task = new FutureTask<>(new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws Exception {
+        return fetch(spec, request, maxWaitMillis);
+      }
+    });
+
+    FutureTask<byte[]> inFlightTask = inFlightRequests.putIfAbsent(spec, task);
+    if (inFlightTask == null) {
+      requestCount.incrementAndGet();
+      try {
+        task.run();
+      } finally {
+        inFlightRequests.remove(spec, task);
+      }
+      inFlightTask = task;
+    } else {
+      coalescedCount.incrementAndGet();
+    }
+
+    try {
+      return new ByteArrayInputStream(inFlightTask.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for " + spec);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * @return the number of requests that were performed
+   */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * @return the number of requests that were served by an in-flight request
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  /**
+   * @return the number of requests that were failed because the host had too
+   *         many requests in flight
+   */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  // ----- helper methods ----------------------------------------------------
+
+  private byte[] fetch(String spec, Callable<InputStream> request, long maxWaitMillis) throws Exception {
+    Semaphore permits = getHostPermits(spec);
+
+    if (permits != null && !permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+      rejectedCount.incrementAndGet();
+      throw new IOException("Too many requests in flight to the host of " + spec);
+    }
+
+    try {
+      InputStream in = request.call();
+      try {
+        return IOUtils.toByteArray(in);
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+    } finally {
+      if (permits != null) {
+        permits.release();
+      }
+    }
+  }
+
+  private Semaphore getHostPermits(String spec) throws IOException {
+    if (maxRequestsPerHost == 0) {
+      return null;
+    }
+
+    String host = new URL(spec).getHost();
+    Semaphore permits = hostPermits.get(host);
+    if (permits == null) {
+      Semaphore newPermits = new Semaphore(maxRequestsPerHost);
+      permits = hostPermits.putIfAbsent(host, newPermits);
+      if (permits == null) {
+        permits = newPermits;
+      }
+    }
+    return permits;
+  }
+}
@@ -29,6 +29,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
@@ -36,6 +37,7 @@ import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManagerFactory;
 
 import org.apache.ambari.server.configuration.ComponentSSLConfiguration;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.utilities.StreamProvider;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
@@ -60,6 +62,13 @@ public class URLStreamProvider implements StreamProvider {
   private final String trustStoreType;
   private volatile SSLSocketFactory sslSocketFactory = null;
   private AppCookieManager appCookieManager = null;
+  private boolean coalesceRequests = false;
+
+  /**
+   * Shares concurrent GET requests for the same URL between the providers
+   * that coalesce requests; null if each read opens its own connection.
+   */
+  private static volatile URLRequestCoalescer requestCoalescer;
 
 
   // ----- Constructors ------------------------------------------------------
@@ -101,6 +110,25 @@ public class URLStreamProvider implements StreamProvider {
     this.setupTruststoreForHttps = true;
   }
 
+  /**
+   * Enable the sharing of concurrent GET requests, if it is configured.
+   *
+   * @param configuration  the server configuration
+   */
+  public static void init(Configuration configuration) {
+    requestCoalescer = configuration.isMetricsRequestCoalescingEnabled() ?
+        new URLRequestCoalescer(configuration.getMetricsMaxRequestsPerHost()) : null;
+  }
+
+  /**
+   * Get the request coalescer shared by all stream providers.
+   *
+   * @return the request coalescer, or null if it is not enabled
+   */
+  public static URLRequestCoalescer getRequestCoalescer() {
+    return requestCoalescer;
+  }
+
   public void setSetupTruststoreForHttps(boolean setupTruststoreForHttps) {
     this.setupTruststoreForHttps = setupTruststoreForHttps;
   }
@@ -109,6 +137,22 @@ public class URLStreamProvider implements StreamProvider {
     return this.setupTruststoreForHttps;
   }
 
+  /**
+   * Set whether GET reads of this provider share concurrent requests for the
+   * same URL.  Only takes effect if request coalescing is enabled for the
+   * server.  Should only be set for providers reading metrics, whose
+   * responses may be shared by all callers.
+   *
+   * @param coalesceRequests  true to share concurrent GET requests
+   */
+  public void setCoalesceRequests(boolean coalesceRequests) {
+    this.coalesceRequests = coalesceRequests;
+  }
+
+  public boolean getCoalesceRequests() {
+    return coalesceRequests;
+  }
+
   // ----- StreamProvider ----------------------------------------------------
 
   @Override
@@ -117,8 +161,17 @@ public class URLStreamProvider implements StreamProvider {
   }
 
   @Override
-  public InputStream readFrom(String spec) throws IOException {
-    return readFrom(spec, "GET", null);
+  public InputStream readFrom(final String spec) throws IOException {
+    URLRequestCoalescer coalescer = requestCoalescer;
+    if (coalescer == null || !coalesceRequests) {
+      return readFrom(spec, "GET", null);
+    }
+    return coalescer.read(spec, new Callable<InputStream>() {
+      @Override
+      public InputStream call() throws IOException {
+        return readFrom(spec, "GET", null);
+      }
+    }, connTimeout);
   }
 
 
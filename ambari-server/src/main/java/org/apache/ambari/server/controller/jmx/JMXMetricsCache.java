@@ -0,0 +1,394 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.jmx;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ambari.server.controller.utilities.StreamProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared cache of parsed JMX snapshots, keyed by the endpoint URL. Every
+ * endpoint that is requested through {@link #getMetrics(String, StreamProvider)}
+ * is scraped in the background on a fixed interval, so that concurrent REST
+ * requests for the same component read the latest snapshot instead of each
+ * opening a connection to the daemon and parsing its full JMX output.
+ * Endpoints that have not been requested for the idle timeout are dropped.
+ * An endpoint is scraped with the stream provider it was requested with, so
+ * requests that read the same URL with different stream providers are cached
+ * separately.
+ * <p/>
+ * A snapshot is served while it is younger than twice the refresh interval;
+ * an older (or missing) snapshot is fetched synchronously by the caller, with
+ * concurrent callers for the same endpoint waiting on a single fetch.
+ * <p/>
+ * While started, the endpoint statistics are exposed over JMX as
+ * {@value #MBEAN_NAME}.
+ */
+public class JMXMetricsCache implements JMXMetricsCacheMXBean {
+
+  public static final String MBEAN_NAME = "org.apache.ambari.server:type=JMXMetricsCache";
+
+  private final static Logger LOG = LoggerFactory.getLogger(JMXMetricsCache.class);
+
+  private final long refreshIntervalMillis;
+  private final long maxAgeMillis;
+  private final long idleTimeoutMillis;
+  private final ScheduledExecutorService scheduler;
+
+  private final ConcurrentMap<EndpointKey, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+  private volatile ObjectName mbeanName;
+
+  /**
+   * Constructor.
+   *
+   * @param refreshIntervalMillis  the interval between scrapes of an endpoint
+   * @param idleTimeoutMillis      the time after which an endpoint that has
+   *                               not been requested is no longer scraped
+   * @param threads                the number of scraper threads
+   */
+  public JMXMetricsCache(long refreshIntervalMillis, long idleTimeoutMillis, int threads) {
+    this.refreshIntervalMillis = Math.max(1L, refreshIntervalMillis);
+    this.maxAgeMillis = 2 * this.refreshIntervalMillis;
+    this.idleTimeoutMillis = Math.max(this.maxAgeMillis, idleTimeoutMillis);
+    scheduler = Executors.newScheduledThreadPool(Math.max(1, threads), new JMXScraperThreadFactory());
+  }
+
+  /**
+   * Start the background scraping of requested endpoints and expose the
+   * statistics over JMX.
+   */
+  public void start() {
+    try {
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+      if (!mbeanServer.isRegistered(name)) {
+        mbeanServer.registerMBean(this, name);
+        mbeanName = name;
+      }
+    } catch (JMException e) {
+      LOG.warn("Unable to expose the JMX scraping statistics", e);
+    }
+
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        refreshEndpoints();
+      }
+    }, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop the background scraping and remove the statistics from JMX.
+   */
+  public void stop() {
+    ObjectName name = mbeanName;
+    if (name != null) {
+      mbeanName = null;
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+      } catch (JMException e) {
+        LOG.warn("Unable to remove the JMX scraping statistics", e);
+      }
+    }
+
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Get the latest JMX snapshot of the given endpoint, fetching it with the
+   * given stream provider if there is no sufficiently recent snapshot. The
+   * endpoint is scraped in the background with that stream provider from
+   * then on. The returned
+   * snapshot is shared and must not be modified.
+   *
+   * @param spec            the JMX endpoint URL
+   * @param streamProvider  the stream provider used to read the endpoint
+   *
+   * @return the parsed JMX beans
+   *
+   * @throws IOException if the endpoint could not be read
+   */
+  public JMXMetricHolder getMetrics(String spec, StreamProvider streamProvider) throws IOException {
+    EndpointKey key = new EndpointKey(spec, streamProvider);
+    Endpoint endpoint = endpoints.get(key);
+    if (endpoint == null) {
+      Endpoint newEndpoint = new Endpoint(spec, streamProvider);
+      endpoint = endpoints.putIfAbsent(key, newEndpoint);
+      if (endpoint == null) {
+        endpoint = newEndpoint;
+      }
+    }
+
+    endpoint.lastAccessTime = System.currentTimeMillis();
+
+    JMXMetricHolder metrics = endpoint.getRecentMetrics();
+    if (metrics != null) {
+      return metrics;
+    }
+
+    synchronized (endpoint) {
+      // another caller may have fetched it while this one was waiting
+      metrics = endpoint.getRecentMetrics();
+      return metrics == null ? endpoint.fetch() : metrics;
+    }
+  }
+
+  @Override
+  public List<EndpointStatistics> getStatistics() {
+    List<EndpointStatistics> statistics = new ArrayList<>(endpoints.size());
+    long now = System.currentTimeMillis();
+    for (Endpoint endpoint : endpoints.values()) {
+      statistics.add(new EndpointStatistics(endpoint, now));
+    }
+    return statistics;
+  }
+
+  /**
+   * Refresh the snapshots that are due and drop the endpoints that are idle.
+   * Called on the scraper schedule.
+   */
+  void refreshEndpoints() {
+    long now = System.currentTimeMillis();
+
+    Iterator<Endpoint> iterator = endpoints.values().iterator();
+    while (iterator.hasNext()) {
+      final Endpoint endpoint = iterator.next();
+
+      if (now - endpoint.lastAccessTime > idleTimeoutMillis) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("No longer scraping idle JMX endpoint " + endpoint.spec);
+        }
+        iterator.remove();
+      } else if (now - endpoint.fetchTime >= refreshIntervalMillis
+          && endpoint.refreshing.compareAndSet(false, true)) {
+        scheduler.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              refresh(endpoint);
+            } finally {
+              endpoint.refreshing.set(false);
+            }
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * Fetch a new snapshot of the given endpoint.
+   */
+  void refresh(Endpoint endpoint) {
+    synchronized (endpoint) {
+      try {
+        endpoint.fetch();
+      } catch (IOException e) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Unable to scrape JMX endpoint " + endpoint.spec, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the endpoint for the given URL and stream provider.
+   *
+   * @return the endpoint, or null if it is not being scraped
+   */
+  Endpoint getEndpoint(String spec, StreamProvider streamProvider) {
+    return endpoints.get(new EndpointKey(spec, streamProvider));
+  }
+
+  // ----- inner classes -----------------------------------------------------
+
+  /**
+   * Identifies an endpoint by its URL and the stream provider that reads it.
+   * Stream providers are compared by identity.
+   */
+  private static final class EndpointKey {
+    private final String spec;
+    private final StreamProvider streamProvider;
+
+    private EndpointKey(String spec, StreamProvider streamProvider) {
+      this.spec = spec;
+      this.streamProvider = streamProvider;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof EndpointKey)) {
+        return false;
+      }
+      EndpointKey that = (EndpointKey) o;
+      return spec.equals(that.spec) && streamProvider == that.streamProvider;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * spec.hashCode() + System.identityHashCode(streamProvider);
+    }
+  }
+
+  /**
+   * A scraped JMX endpoint. Fetches are done while holding the endpoint
+   * monitor.
+   */
+  final class Endpoint {
+    private final String spec;
+    private final StreamProvider streamProvider;
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private final AtomicLong fetchCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    private volatile JMXMetricHolder metrics;
+    private volatile long fetchTime;
+    private volatile long lastAccessTime;
+    private volatile long lastLatencyMillis;
+
+    private Endpoint(String spec, StreamProvider streamProvider) {
+      this.spec = spec;
+      this.streamProvider = streamProvider;
+    }
+
+    private JMXMetricHolder getRecentMetrics() {
+      JMXMetricHolder recentMetrics = metrics;
+      return recentMetrics != null && System.currentTimeMillis() - fetchTime <= maxAgeMillis ?
+          recentMetrics : null;
+    }
+
+    private JMXMetricHolder fetch() throws IOException {
+      long start = System.currentTimeMillis();
+      try {
+        JMXMetricHolder fetchedMetrics = JMXPropertyProvider.readMetrics(streamProvider, spec);
+        long end = System.currentTimeMillis();
+
+        lastLatencyMillis = end - start;
+        metrics = fetchedMetrics;
+        fetchTime = end;
+        fetchCount.incrementAndGet();
+        return fetchedMetrics;
+      } catch (IOException | RuntimeException e) {
+        lastLatencyMillis = System.currentTimeMillis() - start;
+        failureCount.incrementAndGet();
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * A point in time view of the statistics of a scraped endpoint.
+   */
+  public static class EndpointStatistics {
+    private final String spec;
+    private final long fetchTime;
+    private final long ageMillis;
+    private final long lastLatencyMillis;
+    private final long fetchCount;
+    private final long failureCount;
+
+    private EndpointStatistics(Endpoint endpoint, long now) {
+      spec = endpoint.spec;
+      fetchTime = endpoint.fetchTime;
+      ageMillis = fetchTime == 0 ? -1 : now - fetchTime;
+      lastLatencyMillis = endpoint.lastLatencyMillis;
+      fetchCount = endpoint.fetchCount.get();
+      failureCount = endpoint.failureCount.get();
+    }
+
+    /**
+     * @return the JMX endpoint URL
+     */
+    public String getSpec() {
+      return spec;
+    }
+
+    /**
+     * @return the time of the last successful fetch, or 0 if there was none
+     */
+    public long getFetchTime() {
+      return fetchTime;
+    }
+
+    /**
+     * @return the age of the current snapshot, or -1 if there is none
+     */
+    public long getAgeMillis() {
+      return ageMillis;
+    }
+
+    /**
+     * @return the duration of the last fetch, successful or not
+     */
+    public long getLastLatencyMillis() {
+      return lastLatencyMillis;
+    }
+
+    /**
+     * @return the number of successful fetches
+     */
+    public long getFetchCount() {
+      return fetchCount;
+    }
+
+    /**
+     * @return the number of failed fetches
+     */
+    public long getFailureCount() {
+      return failureCount;
+    }
+  }
+
+  /**
+   * Names the scraper threads and makes them daemons.
+   */
+  private static final class JMXScraperThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = Executors.defaultThreadFactory().newThread(r);
+      thread.setName("ambari-jmx-scraper-" + threadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
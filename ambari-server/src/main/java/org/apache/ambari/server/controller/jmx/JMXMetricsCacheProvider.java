@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.jmx;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.configuration.Configuration;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Provides the {@link JMXMetricsCache} shared by the JMX property providers.
+ * The cache is created and started on first use and lives until
+ * {@link #stop()} is called.
+ */
+@Singleton
+public class JMXMetricsCacheProvider {
+
+  private final Configuration configuration;
+
+  private JMXMetricsCache cache;
+
+  private boolean stopped = false;
+
+  @Inject
+  public JMXMetricsCacheProvider(Configuration configuration) {
+    this.configuration = configuration;
+  }
+
+  /**
+   * Get the JMX snapshot cache, starting it if this is the first use.
+   *
+   * @return the cache, or null if it is disabled through config or the
+   *         provider has been stopped
+   */
+  public synchronized JMXMetricsCache getJMXMetricsCache() {
+    if (stopped || !configuration.isJMXMetricsCacheEnabled()) {
+      return null;
+    }
+
+    if (cache == null) {
+      cache = new JMXMetricsCache(
+          TimeUnit.SECONDS.toMillis(configuration.getJMXMetricsCacheRefreshInterval()),
+          TimeUnit.SECONDS.toMillis(configuration.getJMXMetricsCacheIdleTimeout()),
+          configuration.getJMXMetricsCacheThreads());
+      cache.start();
+    }
+    return cache;
+  }
+
+  /**
+   * Stop the JMX snapshot cache, if it was started.  Property providers
+   * created afterwards read the JMX endpoints directly.
+   */
+  public synchronized void stop() {
+    stopped = true;
+    if (cache != null) {
+      cache.stop();
+      cache = null;
+    }
+  }
+}
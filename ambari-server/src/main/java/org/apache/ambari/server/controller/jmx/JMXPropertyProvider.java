@@ -88,6 +88,12 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
 
   private final StreamProvider streamProvider;
 
+  /**
+   * The shared JMX snapshots; null if each request reads the JMX endpoints
+   * directly.
+   */
+  private final JMXMetricsCache metricsCache;
+
   private final JMXHostProvider jmxHostProvider;
 
   private final String clusterNamePropertyId;
@@ -102,11 +108,38 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
 
   // ----- Constructors ------------------------------------------------------
 
+  /**
+   * Create a JMX property provider which reads the JMX endpoints directly.
+   *
+   * @param componentMetrics         the map of supported metrics
+   * @param streamProvider           the stream provider
+   * @param jmxHostProvider          the JMX host mapping
+   * @param metricHostProvider      the host mapping
+   * @param clusterNamePropertyId    the cluster name property id
+   * @param hostNamePropertyId       the host name property id
+   * @param componentNamePropertyId  the component name property id
+   * @param statePropertyId          the state property id
+   */
+  public JMXPropertyProvider(Map<String, Map<String, PropertyInfo>> componentMetrics,
+                             StreamProvider streamProvider,
+                             JMXHostProvider jmxHostProvider,
+                             MetricHostProvider metricHostProvider,
+                             String clusterNamePropertyId,
+                             String hostNamePropertyId,
+                             String componentNamePropertyId,
+                             String statePropertyId) {
+
+    this(componentMetrics, streamProvider, null, jmxHostProvider, metricHostProvider,
+        clusterNamePropertyId, hostNamePropertyId, componentNamePropertyId, statePropertyId);
+  }
+
   /**
    * Create a JMX property provider.
    *
    * @param componentMetrics         the map of supported metrics
    * @param streamProvider           the stream provider
+   * @param metricsCache             the shared JMX snapshots; null to read the
+   *                                 JMX endpoints directly
    * @param jmxHostProvider          the JMX host mapping
    * @param metricHostProvider      the host mapping
    * @param clusterNamePropertyId    the cluster name property id
@@ -116,6 +149,7 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
    */
   public JMXPropertyProvider(Map<String, Map<String, PropertyInfo>> componentMetrics,
                              StreamProvider streamProvider,
+                             JMXMetricsCache metricsCache,
                              JMXHostProvider jmxHostProvider,
                              MetricHostProvider metricHostProvider,
                              String clusterNamePropertyId,
@@ -126,6 +160,7 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
     super(componentMetrics, hostNamePropertyId, metricHostProvider, clusterNamePropertyId);
 
     this.streamProvider           = streamProvider;
+    this.metricsCache             = metricsCache;
     this.jmxHostProvider          = jmxHostProvider;
     this.clusterNamePropertyId    = clusterNamePropertyId;
     this.hostNamePropertyId       = hostNamePropertyId;
@@ -210,45 +245,54 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
       return resource;
     }
 
-    InputStream in = null;
-
-    try {
+    for (String hostName : hostNames) {
       try {
-        for (String hostName : hostNames) {
-          try {
-            if (LOG.isDebugEnabled()) {
-              LOG.debug("Spec: " + getSpec(protocol, hostName, port, "/jmx"));
-            }
-            in = streamProvider.readFrom(getSpec(protocol, hostName, port, "/jmx"));
-            // if the ticket becomes invalid (timeout) then bail out
-            if (!ticket.isValid()) {
-              return resource;
-            }
-
-            getHadoopMetricValue(in, ids, resource, request, ticket);
-
-          } catch (IOException e) {
-            logException(e);
-          }
+        String spec = getSpec(protocol, hostName, port, "/jmx");
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Spec: " + spec);
         }
-      } finally {
-        if (in != null) {
-          in.close();
+        JMXMetricHolder metricHolder = metricsCache == null ?
+            readMetrics(streamProvider, spec) : metricsCache.getMetrics(spec, streamProvider);
+        // if the ticket becomes invalid (timeout) then bail out
+        if (!ticket.isValid()) {
+          return resource;
         }
+
+        getHadoopMetricValue(metricHolder, ids, resource, request, ticket);
+
+      } catch (IOException e) {
+        logException(e);
       }
-    } catch (IOException e) {
-      logException(e);
     }
     return resource;
   }
 
   /**
-   * Hadoop-specific metrics fetching
+   * Read and parse the JMX beans of an endpoint.
+   *
+   * @param streamProvider  the stream provider
+   * @param spec            the JMX endpoint URL
+   *
+   * @return the parsed JMX beans
+   *
+   * @throws IOException if the endpoint could not be read
    */
-  private void getHadoopMetricValue(InputStream in, Set<String> ids,
-                       Resource resource, Request request, Ticket ticket) throws IOException {
-    JMXMetricHolder metricHolder = jmxObjectReader.readValue(in);
+  static JMXMetricHolder readMetrics(StreamProvider streamProvider, String spec) throws IOException {
+    InputStream in = streamProvider.readFrom(spec);
+    try {
+      return jmxObjectReader.readValue(in);
+    } finally {
+      if (in != null) {
+        in.close();
+      }
+    }
+  }
 
+  /**
+   * Hadoop-specific metrics fetching
+   */
+  private void getHadoopMetricValue(JMXMetricHolder metricHolder, Set<String> ids,
+                       Resource resource, Request request, Ticket ticket) {
     Map<String, Map<String, Object>> categories = new HashMap<String, Map<String, Object>>();
     String componentName = (String) resource.getPropertyValue(componentNamePropertyId);
 
@@ -17,10 +17,23 @@
  */
 package org.apache.ambari.server.events.listeners.alerts;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ambari.annotations.Experimental;
+import org.apache.ambari.annotations.ExperimentalFeature;
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.EagerSingleton;
 import org.apache.ambari.server.configuration.Configuration;
@@ -56,6 +69,14 @@ import com.google.inject.persist.Transactional;
  * The {@link AlertReceivedListener} class handles {@link AlertReceivedEvent}
  * and updates the appropriate DAOs. It may also fire new
  * {@link AlertStateChangeEvent} when an {@link AlertState} change is detected.
+ * <p/>
+ * If {@link Configuration#getAlertIngestBatchInterval()} is set, then received
+ * alerts are not processed on the event bus thread. Instead, they are buffered
+ * for each cluster, definition, instance and host. Repeated alerts with the
+ * same state are coalesced into the latest one, but every state change is
+ * kept so that history is written and notifications are sent for each
+ * transition. The buffer is processed on every interval in one transaction per
+ * cluster for each round of transitions.
  */
 @Singleton
 @EagerSingleton
@@ -85,15 +106,76 @@ public class AlertReceivedListener {
    */
   private AlertEventPublisher m_alertEventPublisher;
 
+  /**
+   * The interval, in milliseconds, at which buffered alerts are processed, or
+   * {@code 0} if alerts are processed as they are received.
+   */
+  private final long m_batchInterval;
+
+  /**
+   * The executor which processes buffered alerts, or {@code null} if alerts
+   * are processed as they are received.
+   */
+  private final ScheduledExecutorService m_executor;
+
+  /**
+   * Alerts which have been received but not yet processed, grouped by cluster
+   * name and then by {@link AlertKey}. Each key holds the state transitions
+   * of the alert in the order they were received, where consecutive alerts
+   * with the same state have been coalesced. Only used when batching is
+   * enabled.
+   */
+  private final Map<String, Map<AlertKey, List<PendingAlert>>> m_pendingAlerts = new HashMap<String, Map<AlertKey, List<PendingAlert>>>();
+
+  /**
+   * The number of alerts received.
+   */
+  private final AtomicLong m_receivedCount = new AtomicLong();
+
+  /**
+   * The number of received alerts which replaced a buffered alert before it
+   * was processed.
+   */
+  private final AtomicLong m_coalescedCount = new AtomicLong();
+
+  /**
+   * The number of alerts processed.
+   */
+  private final AtomicLong m_processedCount = new AtomicLong();
+
+  /**
+   * The time between the oldest alert of the last batch being received and
+   * the batch being processed.
+   */
+  private final AtomicLong m_lastBatchLag = new AtomicLong();
+
   /**
    * Constructor.
    *
    * @param publisher
+   * @param configuration
    */
   @Inject
-  public AlertReceivedListener(AlertEventPublisher publisher) {
+  public AlertReceivedListener(AlertEventPublisher publisher, Configuration configuration) {
     m_alertEventPublisher = publisher;
     m_alertEventPublisher.register(this);
+
+    m_batchInterval = configuration.getAlertIngestBatchInterval();
+    if (m_batchInterval <= 0) {
+      m_executor = null;
+    } else {
+      m_executor = Executors.newSingleThreadScheduledExecutor(
+          new AlertIngestThreadFactory());
+
+      m_executor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          processPendingAlerts();
+        }
+      }, m_batchInterval, m_batchInterval, TimeUnit.MILLISECONDS);
+
+      LOG.info("Received alerts will be processed in batches every {}ms", m_batchInterval);
+    }
   }
 
   /**
@@ -110,15 +192,224 @@ public class AlertReceivedListener {
       LOG.debug(event.toString());
     }
 
-    //play around too many commits
     List<Alert> alerts = event.getAlerts();
+    long now = System.currentTimeMillis();
+    m_receivedCount.addAndGet(alerts.size());
+
+    if (m_batchInterval > 0) {
+      synchronized (m_pendingAlerts) {
+        for (Alert alert : alerts) {
+          Map<AlertKey, List<PendingAlert>> clusterAlerts = m_pendingAlerts.get(alert.getCluster());
+          if (null == clusterAlerts) {
+            clusterAlerts = new LinkedHashMap<AlertKey, List<PendingAlert>>();
+            m_pendingAlerts.put(alert.getCluster(), clusterAlerts);
+          }
+
+          AlertKey key = new AlertKey(alert);
+          List<PendingAlert> transitions = clusterAlerts.get(key);
+          if (null == transitions) {
+            transitions = new ArrayList<PendingAlert>(1);
+            clusterAlerts.put(key, transitions);
+          }
+
+          int last = transitions.size() - 1;
+          PendingAlert pending = last < 0 ? null : transitions.get(last);
+          if (null == pending || pending.m_alert.getState() != alert.getState()) {
+            transitions.add(new PendingAlert(alert, event.getClusterId(), now));
+            continue;
+          }
+
+          // a repeat of the same state only needs the latest text and
+          // timestamp; keep the first receive time so that lag covers the
+          // whole wait
+          m_coalescedCount.incrementAndGet();
+          if (alert.getTimestamp() >= pending.m_alert.getTimestamp()) {
+            transitions.set(last,
+                new PendingAlert(alert, event.getClusterId(), pending.m_receivedTime));
+          }
+        }
+      }
+
+      return;
+    }
 
+    List<PendingAlert> pendingAlerts = new ArrayList<PendingAlert>(alerts.size());
+    for (Alert alert : alerts) {
+      pendingAlerts.add(new PendingAlert(alert, event.getClusterId(), now));
+    }
+
+    processAlerts(pendingAlerts);
+  }
+
+  /**
+   * Processes all buffered alerts, one cluster at a time, and records the
+   * ingest metrics for the batch. This is invoked periodically when batching
+   * is enabled.
+   * <p/>
+   * Each cluster's alerts are processed in rounds, where round {@code n}
+   * contains the {@code n}th transition of every alert. This keeps the
+   * transitions of an alert in order while ensuring that a single transaction
+   * never contains the same alert twice.
+   */
+  public void processPendingAlerts() {
+    List<Collection<PendingAlert>> batches = new ArrayList<Collection<PendingAlert>>();
+    synchronized (m_pendingAlerts) {
+      if (m_pendingAlerts.isEmpty()) {
+        return;
+      }
+
+      for (Map<AlertKey, List<PendingAlert>> clusterAlerts : m_pendingAlerts.values()) {
+        for (int round = 0; !clusterAlerts.isEmpty(); round++) {
+          List<PendingAlert> batch = new ArrayList<PendingAlert>(clusterAlerts.size());
+          Iterator<List<PendingAlert>> iterator = clusterAlerts.values().iterator();
+          while (iterator.hasNext()) {
+            List<PendingAlert> transitions = iterator.next();
+            batch.add(transitions.get(round));
+            if (transitions.size() == round + 1) {
+              iterator.remove();
+            }
+          }
+
+          batches.add(batch);
+        }
+      }
+
+      m_pendingAlerts.clear();
+    }
+
+    long start = System.currentTimeMillis();
+    long oldestReceivedTime = start;
+    int size = 0;
+
+    for (Collection<PendingAlert> batch : batches) {
+      for (PendingAlert pending : batch) {
+        oldestReceivedTime = Math.min(oldestReceivedTime, pending.m_receivedTime);
+      }
+
+      size += batch.size();
+
+      try {
+        processAlerts(batch);
+      } catch (Exception exception) {
+        LOG.error("Unable to process a batch of {} received alerts", batch.size(), exception);
+      }
+    }
+
+    long end = System.currentTimeMillis();
+    m_lastBatchLag.set(end - oldestReceivedTime);
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(
+          "Processed {} alerts in {}ms with a lag of {}ms; received={}, coalesced={}, processed={}",
+          size, end - start, m_lastBatchLag.get(), m_receivedCount.get(),
+          m_coalescedCount.get(), m_processedCount.get());
+    }
+  }
+
+  /**
+   * Gets the number of alerts received by this listener.
+   *
+   * @return the number of received alerts.
+   */
+  @Experimental(feature = ExperimentalFeature.ALERT_BATCHING)
+  public long getReceivedCount() {
+    return m_receivedCount.get();
+  }
+
+  /**
+   * Gets the number of received alerts which were replaced by a newer alert
+   * before they were processed.
+   *
+   * @return the number of coalesced alerts.
+   */
+  @Experimental(feature = ExperimentalFeature.ALERT_BATCHING)
+  public long getCoalescedCount() {
+    return m_coalescedCount.get();
+  }
+
+  /**
+   * Gets the number of alerts which were processed by this listener. Alerts
+   * which were coalesced or were not valid are not counted.
+   *
+   * @return the number of processed alerts.
+   */
+  @Experimental(feature = ExperimentalFeature.ALERT_BATCHING)
+  public long getProcessedCount() {
+    return m_processedCount.get();
+  }
+
+  /**
+   * Gets the time between the oldest alert of the most recent batch being
+   * received and the batch being processed.
+   *
+   * @return the lag, in milliseconds, of the last batch.
+   */
+  @Experimental(feature = ExperimentalFeature.ALERT_BATCHING)
+  public long getLastBatchLag() {
+    return m_lastBatchLag.get();
+  }
+
+  /**
+   * Gets the number of alerts which are buffered and waiting to be processed.
+   *
+   * @return the number of pending alerts.
+   */
+  @Experimental(feature = ExperimentalFeature.ALERT_BATCHING)
+  public int getPendingCount() {
+    int count = 0;
+    synchronized (m_pendingAlerts) {
+      for (Map<AlertKey, List<PendingAlert>> clusterAlerts : m_pendingAlerts.values()) {
+        for (List<PendingAlert> transitions : clusterAlerts.values()) {
+          count += transitions.size();
+        }
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Stops the thread which processes buffered alerts after processing any
+   * alerts which are still pending. This does nothing if batching is not
+   * enabled.
+   */
+  public void stop() {
+    if (null == m_executor) {
+      return;
+    }
+
+    m_executor.shutdown();
+    try {
+      if (!m_executor.awaitTermination(m_batchInterval, TimeUnit.MILLISECONDS)) {
+        m_executor.shutdownNow();
+      }
+    } catch (InterruptedException interruptedException) {
+      m_executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+
+    processPendingAlerts();
+  }
+
+  /**
+   * Updates the current alerts and their history for the specified alerts and
+   * then publishes any initial or state change events. The alerts must not
+   * contain duplicates for the same cluster.
+   *
+   * @param pendingAlerts
+   *          the alerts to process.
+   */
+  @RequiresSession
+  void processAlerts(Collection<PendingAlert> pendingAlerts) {
+    //play around too many commits
     Map<Alert, AlertCurrentEntity> toCreate = new HashMap<Alert, AlertCurrentEntity>();
     Map<Alert, AlertCurrentEntity> toMerge = new HashMap<Alert, AlertCurrentEntity>();
     Map<Alert, AlertCurrentEntity> toCreateHistoryAndMerge = new HashMap<Alert, AlertCurrentEntity>();
     Map<Alert, AlertState> oldStates = new HashMap<Alert, AlertState>();
 
-    for (Alert alert : alerts) {
+    for (PendingAlert pending : pendingAlerts) {
+      Alert alert = pending.m_alert;
+
       // jobs that were running when a service/component/host was changed
       // which invalidate the alert should not be reported
       if (!isValid(alert)) {
@@ -128,7 +419,7 @@ public class AlertReceivedListener {
       Long clusterId = getClusterIdByName(alert.getCluster());
       if (clusterId == null) {
         //check event
-        clusterId = event.getClusterId();
+        clusterId = pending.m_clusterId;
       }
 
       AlertDefinitionEntity definition = m_definitionDao.findByName(clusterId,
@@ -207,6 +498,8 @@ public class AlertReceivedListener {
     // invokes the EntityManager create/merge on various entities in a single
     // transaction
     saveEntities(toCreate, toMerge, toCreateHistoryAndMerge);
+    m_processedCount.addAndGet(
+        toCreate.size() + toMerge.size() + toCreateHistoryAndMerge.size());
 
     //broadcast events
     for (Map.Entry<Alert, AlertCurrentEntity> entry : toCreate.entrySet()) {
@@ -405,4 +698,82 @@ public class AlertReceivedListener {
 
     return history;
   }
+
+  /**
+   * An alert which has been received along with the ID of the cluster from
+   * the event which carried it.
+   */
+  static final class PendingAlert {
+    private final Alert m_alert;
+    private final Long m_clusterId;
+    private final long m_receivedTime;
+
+    private PendingAlert(Alert alert, Long clusterId, long receivedTime) {
+      m_alert = alert;
+      m_clusterId = clusterId;
+      m_receivedTime = receivedTime;
+    }
+  }
+
+  /**
+   * The identity of a received alert within a cluster. {@link Alert#equals}
+   * only compares hash codes, so it cannot be used to key buffered alerts.
+   */
+  private static final class AlertKey {
+    private final String m_definitionName;
+    private final String m_instance;
+    private final String m_hostName;
+
+    private AlertKey(Alert alert) {
+      m_definitionName = alert.getName();
+      m_instance = alert.getInstance();
+      m_hostName = alert.getHostName();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+      return Objects.hash(m_definitionName, m_instance, m_hostName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object object) {
+      if (this == object) {
+        return true;
+      }
+
+      if (!(object instanceof AlertKey)) {
+        return false;
+      }
+
+      AlertKey that = (AlertKey) object;
+      return Objects.equals(m_definitionName, that.m_definitionName)
+          && Objects.equals(m_instance, that.m_instance)
+          && Objects.equals(m_hostName, that.m_hostName);
+    }
+  }
+
+  /**
+   * A custom {@link ThreadFactory} for the thread which processes batches of
+   * received alerts.
+   */
+  private static final class AlertIngestThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger s_threadIdPool = new AtomicInteger(1);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "alert-ingest-" + s_threadIdPool.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
 }
@@ -17,6 +17,8 @@
  */
 package org.apache.ambari.server.orm.dao;
 
+import static org.apache.ambari.server.orm.dao.DaoUtils.ORACLE_LIST_LIMIT;
+
 import java.text.MessageFormat;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +26,7 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Order;
@@ -49,6 +52,7 @@ import org.apache.ambari.server.state.Service;
 import org.eclipse.persistence.config.HintValues;
 import org.eclipse.persistence.config.QueryHints;
 
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
@@ -673,6 +677,37 @@ public class AlertDispatchDAO {
     entityManagerProvider.get().remove(merge(alertNotice));
   }
 
+  /**
+   * Sets the state of the notifications with the specified UUIDs using bulk
+   * JPQL updates. The updates do not go through the EM, so any notification
+   * instances held by the caller must be updated by the caller.
+   *
+   * @param uuids
+   *          the UUIDs of the notifications to update (not {@code null}).
+   * @param notifyState
+   *          the new state of the notifications (not {@code null}).
+   * @return the number of notifications updated.
+   */
+  @Transactional
+  public int updateNoticeStates(List<String> uuids, NotificationState notifyState) {
+    if (uuids.isEmpty()) {
+      return 0;
+    }
+
+    Query query = entityManagerProvider.get().createNamedQuery(
+        "AlertNoticeEntity.updateStateByUuids");
+
+    query.setParameter("notifyState", notifyState);
+
+    int updated = 0;
+    for (List<String> partition : Lists.partition(uuids, ORACLE_LIST_LIMIT)) {
+      query.setParameter("uuids", partition);
+      updated += query.executeUpdate();
+    }
+
+    return updated;
+  }
+
   /**
    * Removes notifications for the specified alert definition ID. This will
    * invoke {@link EntityManager#clear()} when completed since the JPQL
@@ -84,6 +84,10 @@ public abstract class AbstractPrepareKerberosServerAction extends KerberosServer
       // variables within the Kerberos descriptor data
       Map<String, Map<String, String>> configurations = kerberosHelper.calculateConfigurations(cluster, null, kerberosDescriptorProperties);
 
+      // The configurations are not host-specific, so the identities and configurations of a
+      // component resolve to the same values on every host and only need to be resolved once
+      Map<String, String> replacementCache = new HashMap<String, String>();
+
       actionLog.writeStdOut(String.format("Writing Kerberos identity data metadata file to %s", identityDataFile.getAbsolutePath()));
       try {
         kerberosIdentityDataFileWriter = kerberosIdentityDataFileWriterFactory.createKerberosIdentityDataFileWriter(identityDataFile);
@@ -116,7 +120,8 @@ public abstract class AbstractPrepareKerberosServerAction extends KerberosServer
 
                 // Add service-level principals (and keytabs)
                 kerberosHelper.addIdentities(kerberosIdentityDataFileWriter, serviceIdentities,
-                    identityFilter, hostName, serviceName, componentName, kerberosConfigurations, configurations);
+                    identityFilter, hostName, serviceName, componentName, kerberosConfigurations, configurations,
+                    replacementCache);
                 propertiesToIgnore = gatherPropertiesToIgnore(serviceIdentities, propertiesToIgnore);
 
                 KerberosComponentDescriptor componentDescriptor = serviceDescriptor.getComponent(componentName);
@@ -127,11 +132,12 @@ public abstract class AbstractPrepareKerberosServerAction extends KerberosServer
                   // Calculate the set of configurations to update and replace any variables
                   // using the previously calculated Map of configurations for the host.
                   kerberosHelper.mergeConfigurations(kerberosConfigurations,
-                      componentDescriptor.getConfigurations(true), configurations);
+                      componentDescriptor.getConfigurations(true), configurations, replacementCache);
 
                   // Add component-level principals (and keytabs)
                   kerberosHelper.addIdentities(kerberosIdentityDataFileWriter, componentIdentities,
-                      identityFilter, hostName, serviceName, componentName, kerberosConfigurations, configurations);
+                      identityFilter, hostName, serviceName, componentName, kerberosConfigurations, configurations,
+                      replacementCache);
                   propertiesToIgnore = gatherPropertiesToIgnore(componentIdentities, propertiesToIgnore);
                 }
               }
@@ -36,10 +36,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 /**
@@ -82,8 +82,11 @@ public class CreateKeytabFilesServerAction extends KerberosServerAction {
   /**
    * A map of data used to track what has been processed in order to optimize the creation of keytabs
    * such as knowing when to create a cached keytab file or use a cached keytab file.
+   * <p/>
+   * Identities may be processed in parallel, but all identities for a principal are processed by
+   * the same thread, so only the map itself needs to be safe for concurrent access.
    */
-  Map<String, Set<String>> visitedIdentities = new HashMap<String, Set<String>>();
+  Map<String, Set<String>> visitedIdentities = new ConcurrentHashMap<String, Set<String>>();
 
   /**
    * Called to execute this action.  Upon invocation, calls
@@ -23,11 +23,13 @@ import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.agent.CommandReport;
 import org.apache.ambari.server.agent.ExecutionCommand;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.KerberosHelper;
 import org.apache.ambari.server.security.credential.PrincipalKeyCredential;
 import org.apache.ambari.server.serveraction.AbstractServerAction;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,8 +37,23 @@ import static org.apache.ambari.server.serveraction.kerberos.KerberosIdentityDat
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * KerberosServerAction is an abstract class to be implemented by Kerberos-related
@@ -126,6 +143,14 @@ public abstract class KerberosServerAction extends AbstractServerAction {
 
   private static final Logger LOG = LoggerFactory.getLogger(KerberosServerAction.class);
 
+  /**
+   * The number of identities between progress messages when identities are processed in parallel.
+   */
+  private static final int IDENTITY_PROGRESS_INTERVAL = 1000;
+
+  @Inject
+  private Configuration configuration;
+
   /**
    * The Cluster that this ServerAction implementation is executing on
    */
@@ -234,7 +259,7 @@ public abstract class KerberosServerAction extends AbstractServerAction {
       Object map = requestSharedDataContext.get(PRINCIPAL_PASSWORD_MAP);
 
       if (map == null) {
-        map = new HashMap<String, String>();
+        map = new ConcurrentHashMap<String, String>();
         requestSharedDataContext.put(PRINCIPAL_PASSWORD_MAP, map);
       }
 
@@ -260,7 +285,7 @@ public abstract class KerberosServerAction extends AbstractServerAction {
       Object map = requestSharedDataContext.get(PRINCIPAL_KEY_NUMBER_MAP);
 
       if (map == null) {
-        map = new HashMap<String, String>();
+        map = new ConcurrentHashMap<String, Integer>();
         requestSharedDataContext.put(PRINCIPAL_KEY_NUMBER_MAP, map);
       }
 
@@ -377,68 +402,43 @@ public abstract class KerberosServerAction extends AbstractServerAction {
               throw new AmbariException(message);
             }
 
-            KerberosOperationHandler handler = kerberosOperationHandlerFactory.getKerberosOperationHandler(kdcType);
-            if (handler == null) {
-              String message = String.format("Failed to process the identities, a KDC operation handler was not found for the KDC type of : %s",
-                  kdcType.toString());
-              actionLog.writeStdErr(message);
-              LOG.error(message);
-              throw new AmbariException(message);
-            }
-
             Map<String, String> kerberosConfiguration = getConfiguration("kerberos-env");
+            int threads = configuration.getKerberosOperationThreads();
 
-            try {
-              handler.open(administratorCredential, defaultRealm, kerberosConfiguration);
-            } catch (KerberosOperationException e) {
-              String message = String.format("Failed to process the identities, could not properly open the KDC operation handler: %s",
-                  e.getMessage());
-              actionLog.writeStdErr(message);
-              LOG.error(message);
-              throw new AmbariException(message, e);
-            }
-
-            // Create the data file reader to parse and iterate through the records
-            KerberosIdentityDataFileReader reader = null;
-            try {
-              reader = kerberosIdentityDataFileReaderFactory.createKerberosIdentityDataFileReader(identityDataFile);
-              for (Map<String, String> record : reader) {
-                // Process the current record
-                commandReport = processRecord(record, defaultRealm, handler, kerberosConfiguration, requestSharedDataContext);
-
-                // If the principal processor returns a CommandReport, than it is time to stop since
-                // an error condition has probably occurred, else all is assumed to be well.
-                if (commandReport != null) {
-                  break;
-                }
-              }
-            } catch (AmbariException e) {
-              // Catch this separately from IOException since the reason it was thrown was not the same
-              // Note: AmbariException is an IOException, so there may be some confusion
-              throw new AmbariException(e.getMessage(), e);
-            } catch (IOException e) {
-              String message = String.format("Failed to process the identities, cannot read the index file: %s",
-                  identityDataFile.getAbsolutePath());
-              actionLog.writeStdErr(message);
-              LOG.error(message, e);
-              throw new AmbariException(message, e);
-            } finally {
-              if (reader != null) {
-                // The reader needs to be closed, if it fails to close ignore the exception since
-                // there is little we can or care to do about it now.
-                try {
-                  reader.close();
-                } catch (IOException e) {
-                  // Ignore this...
-                }
-              }
+            if (threads > 1) {
+              commandReport = processIdentities(identityDataFile, threads, administratorCredential,
+                  defaultRealm, kdcType, kerberosConfiguration, requestSharedDataContext);
+            } else {
+              KerberosOperationHandler handler = openOperationHandler(administratorCredential,
+                  defaultRealm, kdcType, kerberosConfiguration);
 
-              // The KerberosOperationHandler needs to be closed, if it fails to close ignore the
-              // exception since there is little we can or care to do about it now.
+              // Create the data file reader to parse and iterate through the records
+              KerberosIdentityDataFileReader reader = null;
               try {
-                handler.close();
-              } catch (KerberosOperationException e) {
-                // Ignore this...
+                reader = kerberosIdentityDataFileReaderFactory.createKerberosIdentityDataFileReader(identityDataFile);
+                for (Map<String, String> record : reader) {
+                  // Process the current record
+                  commandReport = processRecord(record, defaultRealm, handler, kerberosConfiguration, requestSharedDataContext);
+
+                  // If the principal processor returns a CommandReport, than it is time to stop since
+                  // an error condition has probably occurred, else all is assumed to be well.
+                  if (commandReport != null) {
+                    break;
+                  }
+                }
+              } catch (AmbariException e) {
+                // Catch this separately from IOException since the reason it was thrown was not the same
+                // Note: AmbariException is an IOException, so there may be some confusion
+                throw new AmbariException(e.getMessage(), e);
+              } catch (IOException e) {
+                String message = String.format("Failed to process the identities, cannot read the index file: %s",
+                    identityDataFile.getAbsolutePath());
+                actionLog.writeStdErr(message);
+                LOG.error(message, e);
+                throw new AmbariException(message, e);
+              } finally {
+                closeReader(reader);
+                closeOperationHandler(handler);
               }
             }
           }
@@ -456,6 +456,294 @@ public abstract class KerberosServerAction extends AbstractServerAction {
         : commandReport;
   }
 
+  /**
+   * Processes the identities in the specified identity data file using a pool of worker threads.
+   * <p/>
+   * The records are grouped by their evaluated principal so that all records for a principal are
+   * processed in order by the same worker, as they would be if processed sequentially. Principals
+   * whose keytab files are written to the same file on the same host are placed in the same group,
+   * since writing a keytab file reads, merges and rewrites any existing file. Each worker
+   * opens its own {@link KerberosOperationHandler} so that no KDC session or LDAP connection is
+   * shared across threads. Once a record fails, the workers stop taking more principals.
+   *
+   * @param identityDataFile         the identity data file to process
+   * @param threads                  the maximum number of worker threads
+   * @param administratorCredential  the KDC administrator credential
+   * @param defaultRealm             a String declaring the default Kerberos realm
+   * @param kdcType                  the type of KDC to process the identities in
+   * @param kerberosConfiguration    a Map of configuration properties from kerberos-env
+   * @param requestSharedDataContext a Map to be used a shared data among all ServerActions related
+   *                                 to a given request
+   * @return a CommandReport, indicating an error condition; or null, indicating a success condition
+   * @throws AmbariException if an error occurs while processing the identity records
+   */
+  private CommandReport processIdentities(File identityDataFile, int threads,
+                                          PrincipalKeyCredential administratorCredential,
+                                          final String defaultRealm, KDCType kdcType,
+                                          final Map<String, String> kerberosConfiguration,
+                                          final Map<String, Object> requestSharedDataContext)
+      throws AmbariException {
+    // Group the records by evaluated principal, keeping the order in which they were written
+    Map<String, List<Map<String, String>>> recordsByPrincipal = new LinkedHashMap<String, List<Map<String, String>>>();
+    // The first principal written to each host and keytab file, and the principals merged with it
+    Map<String, String> principalByKeytabFile = new HashMap<String, String>();
+    Map<String, String> mergedPrincipals = new HashMap<String, String>();
+    int recordCount = 0;
+
+    KerberosIdentityDataFileReader reader = null;
+    try {
+      reader = kerberosIdentityDataFileReaderFactory.createKerberosIdentityDataFileReader(identityDataFile);
+      for (Map<String, String> record : reader) {
+        String principal = record.get(KerberosIdentityDataFileReader.PRINCIPAL);
+
+        if (principal != null) {
+          String evaluatedPrincipal = principal.replace("_HOST", record.get(KerberosIdentityDataFileReader.HOSTNAME))
+              .replace("_REALM", defaultRealm);
+
+          List<Map<String, String>> records = recordsByPrincipal.get(evaluatedPrincipal);
+          if (records == null) {
+            records = new ArrayList<Map<String, String>>();
+            recordsByPrincipal.put(evaluatedPrincipal, records);
+          }
+
+          records.add(record);
+          recordCount++;
+
+          String keytabFilePath = record.get(KerberosIdentityDataFileReader.KEYTAB_FILE_PATH);
+          if (!StringUtils.isEmpty(keytabFilePath)) {
+            String keytabFile = record.get(KerberosIdentityDataFileReader.HOSTNAME) + ":" + keytabFilePath;
+            String keytabFilePrincipal = principalByKeytabFile.get(keytabFile);
+            if (keytabFilePrincipal == null) {
+              principalByKeytabFile.put(keytabFile, evaluatedPrincipal);
+            } else {
+              mergePrincipals(mergedPrincipals, keytabFilePrincipal, evaluatedPrincipal);
+            }
+          }
+        }
+      }
+    } catch (IOException e) {
+      String message = String.format("Failed to process the identities, cannot read the index file: %s",
+          identityDataFile.getAbsolutePath());
+      actionLog.writeStdErr(message);
+      LOG.error(message, e);
+      throw new AmbariException(message, e);
+    } finally {
+      closeReader(reader);
+    }
+
+    if (recordsByPrincipal.isEmpty()) {
+      return null;
+    }
+
+    // Combine the records of principals sharing a keytab file, in the order of their first principal
+    Map<String, List<Map<String, String>>> recordGroups = new LinkedHashMap<String, List<Map<String, String>>>();
+    for (Map.Entry<String, List<Map<String, String>>> entry : recordsByPrincipal.entrySet()) {
+      String groupPrincipal = findMergedPrincipal(mergedPrincipals, entry.getKey());
+      List<Map<String, String>> records = recordGroups.get(groupPrincipal);
+      if (records == null) {
+        recordGroups.put(groupPrincipal, new ArrayList<Map<String, String>>(entry.getValue()));
+      } else {
+        records.addAll(entry.getValue());
+      }
+    }
+
+    // Create the shared maps up front since the workers may not safely create them
+    getPrincipalPasswordMap(requestSharedDataContext);
+    getPrincipalKeyNumberMap(requestSharedDataContext);
+
+    final Queue<List<Map<String, String>>> pending = new ConcurrentLinkedQueue<List<Map<String, String>>>(recordGroups.values());
+    final AtomicReference<CommandReport> failure = new AtomicReference<CommandReport>();
+    final AtomicBoolean stopped = new AtomicBoolean(false);
+    final AtomicInteger processed = new AtomicInteger();
+    final int total = recordCount;
+
+    int workers = Math.min(threads, recordGroups.size());
+    List<KerberosOperationHandler> handlers = new ArrayList<KerberosOperationHandler>(workers);
+    ExecutorService executor = null;
+
+    String message = String.format("Processing %d identities for %d principals in %d groups using %d workers",
+        total, recordsByPrincipal.size(), recordGroups.size(), workers);
+    actionLog.writeStdOut(message);
+    LOG.info(message);
+
+    try {
+      for (int i = 0; i < workers; i++) {
+        handlers.add(openOperationHandler(administratorCredential, defaultRealm, kdcType, kerberosConfiguration));
+      }
+
+      executor = Executors.newFixedThreadPool(workers, new KerberosOperationThreadFactory());
+      List<Future<Void>> futures = new ArrayList<Future<Void>>(workers);
+
+      for (final KerberosOperationHandler handler : handlers) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            List<Map<String, String>> records;
+            while (!stopped.get() && ((records = pending.poll()) != null)) {
+              for (Map<String, String> record : records) {
+                CommandReport commandReport;
+                try {
+                  commandReport = processRecord(record, defaultRealm, handler,
+                      kerberosConfiguration, requestSharedDataContext);
+                } catch (Exception e) {
+                  stopped.set(true);
+                  throw e;
+                }
+
+                if (commandReport != null) {
+                  failure.compareAndSet(null, commandReport);
+                  stopped.set(true);
+                  return null;
+                }
+
+                int count = processed.incrementAndGet();
+                if ((count % IDENTITY_PROGRESS_INTERVAL) == 0) {
+                  String message = String.format("Processed %d of %d identities", count, total);
+                  actionLog.writeStdOut(message);
+                  LOG.info(message);
+                }
+              }
+            }
+
+            return null;
+          }
+        }));
+      }
+
+      // Wait for every worker so that none is still using its handler once they are closed
+      Throwable cause = null;
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          if (cause == null) {
+            cause = e.getCause();
+          }
+        }
+      }
+
+      if (cause instanceof AmbariException) {
+        throw new AmbariException(cause.getMessage(), cause);
+      } else if (cause != null) {
+        message = String.format("Failed to process the identities: %s", cause.getMessage());
+        actionLog.writeStdErr(message);
+        LOG.error(message, cause);
+        throw new AmbariException(message, cause);
+      }
+    } catch (InterruptedException e) {
+      stopped.set(true);
+      Thread.currentThread().interrupt();
+      throw new AmbariException("Interrupted while processing the identities", e);
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+
+      for (KerberosOperationHandler handler : handlers) {
+        closeOperationHandler(handler);
+      }
+    }
+
+    return failure.get();
+  }
+
+  /**
+   * Places two principals, and any principals already merged with either, in the same group.
+   *
+   * @param mergedPrincipals map of principal to a principal it was merged with
+   * @param principal1       a principal
+   * @param principal2       another principal
+   */
+  private static void mergePrincipals(Map<String, String> mergedPrincipals, String principal1, String principal2) {
+    String group1 = findMergedPrincipal(mergedPrincipals, principal1);
+    String group2 = findMergedPrincipal(mergedPrincipals, principal2);
+    if (!group1.equals(group2)) {
+      mergedPrincipals.put(group2, group1);
+    }
+  }
+
+  /**
+   * Finds the principal which identifies the group of the specified principal.
+   *
+   * @param mergedPrincipals map of principal to a principal it was merged with
+   * @param principal        a principal
+   * @return the principal identifying the group
+   */
+  private static String findMergedPrincipal(Map<String, String> mergedPrincipals, String principal) {
+    String group = principal;
+    String next;
+    while ((next = mergedPrincipals.get(group)) != null) {
+      group = next;
+    }
+    return group;
+  }
+
+  /**
+   * Creates and opens a {@link KerberosOperationHandler} for the specified KDC type.
+   *
+   * @param administratorCredential the KDC administrator credential
+   * @param defaultRealm            a String declaring the default Kerberos realm
+   * @param kdcType                 the type of KDC to create the handler for
+   * @param kerberosConfiguration   a Map of configuration properties from kerberos-env
+   * @return an open KerberosOperationHandler
+   * @throws AmbariException if a handler is not available or cannot be opened
+   */
+  private KerberosOperationHandler openOperationHandler(PrincipalKeyCredential administratorCredential,
+                                                        String defaultRealm, KDCType kdcType,
+                                                        Map<String, String> kerberosConfiguration)
+      throws AmbariException {
+    KerberosOperationHandler handler = kerberosOperationHandlerFactory.getKerberosOperationHandler(kdcType);
+    if (handler == null) {
+      String message = String.format("Failed to process the identities, a KDC operation handler was not found for the KDC type of : %s",
+          kdcType.toString());
+      actionLog.writeStdErr(message);
+      LOG.error(message);
+      throw new AmbariException(message);
+    }
+
+    try {
+      handler.open(administratorCredential, defaultRealm, kerberosConfiguration);
+    } catch (KerberosOperationException e) {
+      String message = String.format("Failed to process the identities, could not properly open the KDC operation handler: %s",
+          e.getMessage());
+      actionLog.writeStdErr(message);
+      LOG.error(message);
+      throw new AmbariException(message, e);
+    }
+
+    return handler;
+  }
+
+  /**
+   * Closes the specified reader, ignoring any failure since there is little we can or care to do
+   * about it.
+   *
+   * @param reader the reader to close, may be null
+   */
+  private void closeReader(KerberosIdentityDataFileReader reader) {
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        // Ignore this...
+      }
+    }
+  }
+
+  /**
+   * Closes the specified KerberosOperationHandler, ignoring any failure since there is little we
+   * can or care to do about it.
+   *
+   * @param handler the handler to close
+   */
+  private void closeOperationHandler(KerberosOperationHandler handler) {
+    try {
+      handler.close();
+    } catch (KerberosOperationException e) {
+      // Ignore this...
+    }
+  }
+
   /**
    * Processes an identity as necessary.
    * <p/>
@@ -521,4 +809,22 @@ public abstract class KerberosServerAction extends AbstractServerAction {
 
     return commandReport;
   }
+
+  /**
+   * A custom {@link ThreadFactory} for the threads which process identities in parallel.
+   */
+  private static final class KerberosOperationThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger s_threadIdPool = new AtomicInteger(1);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "kerberos-operation-" + s_threadIdPool.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
 }
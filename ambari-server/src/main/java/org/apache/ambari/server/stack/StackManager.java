@@ -19,10 +19,20 @@
 package org.apache.ambari.server.stack;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
 
@@ -73,6 +83,16 @@ public class StackManager {
    */
   private final static Logger LOG = LoggerFactory.getLogger(StackManager.class);
 
+  /**
+   * Maximum number of threads used to parse stack and service definitions
+   */
+  private static final int MAX_PARSER_THREADS = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Number of threads used to parse stack and service definitions
+   */
+  private final int parserThreads;
+
   /**
    * Map of stack id to stack info
    */
@@ -104,8 +124,35 @@ public class StackManager {
       ActionMetadata actionMetadata, StackDAO stackDao)
       throws AmbariException {
 
+    this(stackRoot, commonServicesRoot, osFamily, metaInfoDAO, actionMetadata,
+        stackDao, MAX_PARSER_THREADS);
+  }
+
+  /**
+   * Constructor. Initialize stack manager, parsing the stack and service
+   * definitions with the given number of threads.
+   *
+   * @param stackRoot           stack root directory
+   * @param commonServicesRoot  common services root directory
+   * @param osFamily            the OS family read from resources
+   * @param metaInfoDAO         metainfo DAO
+   * @param actionMetadata      action meta data
+   * @param stackDao            stack DAO
+   * @param parserThreads       the number of parser threads; with a single
+   *                            thread the definitions are parsed serially on
+   *                            the calling thread
+   *
+   * @throws AmbariException
+   *           if an exception occurs while processing the stacks
+   */
+  StackManager(File stackRoot, File commonServicesRoot, OsFamily osFamily,
+      MetainfoDAO metaInfoDAO, ActionMetadata actionMetadata, StackDAO stackDao,
+      int parserThreads) throws AmbariException {
+
     LOG.info("Initializing the stack manager...");
 
+    this.parserThreads = Math.max(1, parserThreads);
+
     validateStackDirectory(stackRoot);
     validateCommonServicesDirectory(commonServicesRoot);
 
@@ -290,33 +337,56 @@ public class StackManager {
     Map<String, ServiceModule> commonServiceModules = new HashMap<String, ServiceModule>();
 
     if(commonServicesRoot != null) {
+      List<Callable<Map<String, ServiceModule>>> parsers = new ArrayList<Callable<Map<String, ServiceModule>>>();
       File[] commonServiceFiles = commonServicesRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
       for (File commonService : commonServiceFiles) {
         if (commonService.isFile()) {
           continue;
         }
-        for (File serviceFolder : commonService.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
-          String serviceName = serviceFolder.getParentFile().getName();
-          String serviceVersion = serviceFolder.getName();
-          ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
-          ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
-          if (metaInfoXml != null) {
-            if (metaInfoXml.isValid()) {
-              for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
-                ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
-
-                String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
-                commonServiceModules.put(commonServiceKey, serviceModule);
-              }
-            } else {
-              ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
-              serviceModule.setValid(false);
-              serviceModule.setErrors(metaInfoXml.getErrors());
-              commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
-              metaInfoXml.setSchemaVersion(null);
+        for (final File serviceFolder : commonService.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+          parsers.add(new Callable<Map<String, ServiceModule>>() {
+            @Override
+            public Map<String, ServiceModule> call() throws Exception {
+              return parseCommonServiceDirectory(serviceFolder);
             }
-          }
+          });
+        }
+      }
+
+      // Merge in directory order, so that duplicates resolve as they did when parsed serially
+      for (Map<String, ServiceModule> serviceModules : parseInParallel(parsers)) {
+        commonServiceModules.putAll(serviceModules);
+      }
+    }
+    return commonServiceModules;
+  }
+
+  /**
+   * Parse a single common service version directory.
+   *
+   * @param serviceFolder  the common service version directory to parse
+   * @return map of common service id which contains name and version to common service module.
+   * @throws AmbariException if unable to parse the common service
+   */
+  private Map<String, ServiceModule> parseCommonServiceDirectory(File serviceFolder) throws AmbariException {
+    Map<String, ServiceModule> commonServiceModules = new LinkedHashMap<String, ServiceModule>();
+
+    ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
+    ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
+    if (metaInfoXml != null) {
+      if (metaInfoXml.isValid()) {
+        for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
+          ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
+
+          String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
+          commonServiceModules.put(commonServiceKey, serviceModule);
         }
+      } else {
+        ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
+        serviceModule.setValid(false);
+        serviceModule.setErrors(metaInfoXml.getErrors());
+        commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
+        metaInfoXml.setSchemaVersion(null);
       }
     }
     return commonServiceModules;
@@ -332,29 +402,115 @@ public class StackManager {
   private Map<String, StackModule> parseStackDirectory(File stackRoot) throws AmbariException {
     Map<String, StackModule> stackModules = new HashMap<String, StackModule>();
 
+    List<String> stackKeys = new ArrayList<String>();
+    List<Callable<StackModule>> parsers = new ArrayList<Callable<StackModule>>();
     File[] stackFiles = stackRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
     for (File stack : stackFiles) {
       if (stack.isFile()) {
         continue;
       }
-      for (File stackFolder : stack.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+      for (final File stackFolder : stack.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
         if (stackFolder.isFile()) {
           continue;
         }
         String stackName = stackFolder.getParentFile().getName();
         String stackVersion = stackFolder.getName();
 
-        StackModule stackModule = new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
-        String stackKey = stackName + StackManager.PATH_DELIMITER + stackVersion;
-        stackModules.put(stackKey, stackModule);
-        stackMap.put(stackKey, stackModule.getModuleInfo());
+        stackKeys.add(stackName + StackManager.PATH_DELIMITER + stackVersion);
+        parsers.add(new Callable<StackModule>() {
+          @Override
+          public StackModule call() throws Exception {
+            return new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
+          }
+        });
       }
     }
 
+    List<StackModule> parsedModules = parseInParallel(parsers);
+    for (int i = 0; i < parsedModules.size(); i++) {
+      StackModule stackModule = parsedModules.get(i);
+      String stackKey = stackKeys.get(i);
+      stackModules.put(stackKey, stackModule);
+      stackMap.put(stackKey, stackModule.getModuleInfo());
+    }
+
     if (stackMap.isEmpty()) {
       throw new AmbariException("Unable to find stack definitions under " +
           "stackRoot = " + stackRoot.getAbsolutePath());
     }
     return stackModules;
   }
+
+  /**
+   * Run the given parsers on a pool of threads, or serially on the calling
+   * thread if only one parser thread is configured. Parsing a stack or service
+   * definition only reads its own directory, so definitions are parsed
+   * independently of each other; inheritance is resolved afterwards.
+   *
+   * @param parsers  the parsers to run
+   * @return the parsed modules, in the order of the parsers
+   * @throws AmbariException if any of the parsers fails
+   */
+  private <T> List<T> parseInParallel(List<Callable<T>> parsers) throws AmbariException {
+    List<T> modules = new ArrayList<T>(parsers.size());
+    if (parsers.isEmpty()) {
+      return modules;
+    }
+
+    if (parserThreads == 1) {
+      for (Callable<T> parser : parsers) {
+        try {
+          modules.add(parser.call());
+        } catch (AmbariException | RuntimeException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new AmbariException("Unable to parse stack definitions", e);
+        }
+      }
+      return modules;
+    }
+
+    int threads = Math.min(parserThreads, parsers.size());
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new StackParserThreadFactory());
+    try {
+      for (Future<T> future : executor.invokeAll(parsers)) {
+        modules.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AmbariException("Interrupted while parsing stack definitions", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof AmbariException) {
+        throw (AmbariException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new AmbariException("Unable to parse stack definitions", cause);
+    } finally {
+      executor.shutdownNow();
+    }
+    return modules;
+  }
+
+  /**
+   * A custom {@link ThreadFactory} for the threads that parse stack and
+   * service definitions.
+   */
+  private static final class StackParserThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger threadId = new AtomicInteger(1);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = Executors.defaultThreadFactory().newThread(r);
+      thread.setName("stack-parser-" + threadId.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
 }
@@ -24,12 +24,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.ambari.server.AmbariException;
@@ -111,15 +112,26 @@ public class AlertDefinitionHash {
   /**
    * Due to the nature of the asynchronous events for alerts and Ambari, this
    * lock will ensure that only a single writer is writing to the
-   * {@link ActionQueue}.
+   * {@link ActionQueue}. Commands are built before it is taken, so it is only
+   * held while they are swapped into the queue.
    */
   private ReentrantLock m_actionQueueLock = new ReentrantLock();
 
   /**
    * The hashes for all hosts for any cluster. The key is the hostname and the
-   * value is a map between cluster name and hash.
+   * value is a map between cluster name and hash. Read and written by
+   * heartbeat and event threads concurrently.
    */
-  private Map<String, Map<String, String>> m_hashes = new HashMap<String, Map<String, String>>();
+  private final ConcurrentMap<String, ConcurrentMap<String, String>> m_hashes =
+      new ConcurrentHashMap<String, ConcurrentMap<String, String>>();
+
+  /**
+   * Incremented before any cached hash is invalidated. A hash is only kept in
+   * the cache if no invalidation happened while it was being calculated, so
+   * that a hash calculated from definitions which have since changed is never
+   * cached after the invalidation which removed it.
+   */
+  private final AtomicLong m_invalidations = new AtomicLong();
 
   /**
    * Gets a unique hash value reprssenting all of the alert definitions that
@@ -138,19 +150,14 @@ public class AlertDefinitionHash {
    * @return the unique hash or {@value #NULL_MD5_HASH} if none.
    */
   public String getHash(String clusterName, String hostName) {
-    Map<String, String> clusterMapping = m_hashes.get(hostName);
-    if (null == clusterMapping) {
-      clusterMapping = new ConcurrentHashMap<String, String>();
-      m_hashes.put(hostName, clusterMapping);
-    }
-
-    String hash = clusterMapping.get(hostName);
+    String hash = getCachedHash(clusterName, hostName);
     if (null != hash) {
       return hash;
     }
 
+    long invalidations = m_invalidations.get();
     hash = hash(clusterName, hostName);
-    clusterMapping.put(clusterName, hash);
+    cacheHash(clusterName, hostName, hash, invalidations);
 
     return hash;
   }
@@ -159,6 +166,7 @@ public class AlertDefinitionHash {
    * Invalidate all cached hashes causing subsequent lookups to recalculate.
    */
   public void invalidateAll() {
+    m_invalidations.incrementAndGet();
     m_hashes.clear();
   }
 
@@ -170,6 +178,7 @@ public class AlertDefinitionHash {
    *          the host to invalidate the cache for (not {@code null}).
    */
   public void invalidate(String hostName) {
+    m_invalidations.incrementAndGet();
     m_hashes.remove(hostName);
   }
 
@@ -183,7 +192,8 @@ public class AlertDefinitionHash {
    *          the host to invalidate the cache for (not {@code null}).
    */
   public void invalidate(String clusterName, String hostName) {
-    Map<String, String> clusterMapping = m_hashes.get(hostName);
+    m_invalidations.incrementAndGet();
+    ConcurrentMap<String, String> clusterMapping = m_hashes.get(hostName);
     if (null != clusterMapping) {
       clusterMapping.remove(clusterName);
     }
@@ -202,12 +212,7 @@ public class AlertDefinitionHash {
       return false;
     }
 
-    Map<String, String> clusterMapping = m_hashes.get(hostName);
-    if (null == clusterMapping) {
-      return false;
-    }
-
-    return clusterMapping.containsKey(clusterName);
+    return null != getCachedHash(clusterName, hostName);
   }
 
   /**
@@ -358,26 +363,21 @@ public class AlertDefinitionHash {
       return Collections.emptySet();
     }
 
-    Map<String, Host> hosts = null;
     String clusterName = cluster.getClusterName();
     Set<String> affectedHosts = new HashSet<String>();
 
-    try {
-      hosts = m_clusters.get().getHostsForCluster(clusterName);
-    } catch (AmbariException ambariException) {
-      LOG.error("Unable to lookup hosts for cluster named {}", clusterName,
-          ambariException);
-
-      return affectedHosts;
-    }
-
     String ambariServiceName = Services.AMBARI.name();
     String agentComponentName = Components.AMBARI_AGENT.name();
 
     // intercept host agent alerts; they affect all hosts
     if (ambariServiceName.equals(definitionServiceName)
         && agentComponentName.equals(definitionComponentName)) {
-      affectedHosts.addAll(hosts.keySet());
+      try {
+        affectedHosts.addAll(m_clusters.get().getHostsForCluster(clusterName).keySet());
+      } catch (AmbariException ambariException) {
+        LOG.error("Unable to lookup hosts for cluster named {}", clusterName,
+            ambariException);
+      }
       return affectedHosts;
     }
 
@@ -386,24 +386,6 @@ public class AlertDefinitionHash {
       return Collections.emptySet();
     }
 
-    // find all hosts that have the matching service and component
-    for (String hostName : hosts.keySet()) {
-      List<ServiceComponentHost> hostComponents = cluster.getServiceComponentHosts(hostName);
-      if (null == hostComponents || hostComponents.size() == 0) {
-        continue;
-      }
-
-      // if a host has a matching service/component, invalidate it
-      for (ServiceComponentHost component : hostComponents) {
-        String serviceName = component.getServiceName();
-        String componentName = component.getServiceComponentName();
-        if (serviceName.equals(definitionServiceName)
-            && componentName.equals(definitionComponentName)) {
-          affectedHosts.add(hostName);
-        }
-      }
-    }
-
     // get the service that this alert definition is associated with
     Map<String, Service> services = cluster.getServices();
     Service service = services.get(definitionServiceName);
@@ -414,17 +396,18 @@ public class AlertDefinitionHash {
       return affectedHosts;
     }
 
-    // get all master components of the definition's service; any hosts that
-    // run the master should be invalidated as well
+    // the cluster topology already tracks the hosts of every component, so
+    // use it rather than scanning the components of every host; any hosts
+    // that run the matching component or a master of the definition's
+    // service should be invalidated
     Map<String, ServiceComponent> components = service.getServiceComponents();
     if (null != components) {
       for (Entry<String, ServiceComponent> component : components.entrySet()) {
-        if (component.getValue().isMasterComponent()) {
+        if (component.getValue().isMasterComponent()
+            || component.getKey().equals(definitionComponentName)) {
           Map<String, ServiceComponentHost> componentHosts = component.getValue().getServiceComponentHosts();
           if (null != componentHosts) {
-            for (String componentHost : componentHosts.keySet()) {
-              affectedHosts.add(componentHost);
-            }
+            affectedHosts.addAll(componentHosts.keySet());
           }
         }
       }
@@ -517,24 +500,49 @@ public class AlertDefinitionHash {
       return;
     }
 
+    Cluster cluster;
+    DefinitionLookup lookup;
     try {
-      m_actionQueueLock.lock();
-      for (String hostName : hosts) {
-        List<AlertDefinition> definitions = getAlertDefinitions(clusterName,
-            hostName);
+      cluster = m_clusters.get().getCluster(clusterName);
+      lookup = new DefinitionLookup(cluster);
+    } catch (AmbariException ae) {
+      LOG.error("Unable to lookup cluster for alert definition commands", ae);
+      return;
+    }
 
-        String hash = getHash(clusterName, hostName);
+    // build the commands for all hosts, sharing definition lookups between
+    // hosts with the same components, before taking the lock
+    long invalidations = m_invalidations.get();
+    List<AlertDefinitionCommand> commands = new ArrayList<AlertDefinitionCommand>(hosts.size());
+    for (String hostName : hosts) {
+      Set<AlertDefinitionEntity> entities = lookup.getEntities(hostName);
+
+      List<AlertDefinition> definitions = new ArrayList<AlertDefinition>(
+          entities.size());
+      for (AlertDefinitionEntity entity : entities) {
+        definitions.add(m_factory.coerce(entity));
+      }
 
-        AlertDefinitionCommand command = new AlertDefinitionCommand(
-            clusterName, hostName, hash, definitions);
+      String hash = hash(entities);
+      cacheHash(clusterName, hostName, hash, invalidations);
 
-        try {
-          Cluster cluster = m_clusters.get().getCluster(clusterName);
-          command.addConfigs(m_configHelper.get(), cluster);
-        } catch (AmbariException ae) {
-          LOG.warn("Unable to add configurations to alert definition command",
-              ae);
-        }
+      AlertDefinitionCommand command = new AlertDefinitionCommand(
+          clusterName, hostName, hash, definitions);
+
+      try {
+        command.addConfigs(m_configHelper.get(), cluster);
+      } catch (AmbariException ae) {
+        LOG.warn("Unable to add configurations to alert definition command",
+            ae);
+      }
+
+      commands.add(command);
+    }
+
+    try {
+      m_actionQueueLock.lock();
+      for (AlertDefinitionCommand command : commands) {
+        String hostName = command.getHostName();
 
         // unlike other commands, the alert definitions commands are really
         // designed to be 1:1 per change; if multiple invalidations happened
@@ -553,6 +561,48 @@ public class AlertDefinitionHash {
     }
   }
 
+  /**
+   * Gets the cached hash for the host in the cluster.
+   *
+   * @return the hash, or {@code null} if it is not cached.
+   */
+  private String getCachedHash(String clusterName, String hostName) {
+    ConcurrentMap<String, String> clusterMapping = m_hashes.get(hostName);
+    if (null == clusterMapping) {
+      return null;
+    }
+
+    return clusterMapping.get(clusterName);
+  }
+
+  /**
+   * Caches the hash for the host in the cluster, unless the cache was
+   * invalidated since the hash started to be calculated.
+   *
+   * @param invalidations
+   *          the value of {@link #m_invalidations} read before the hash was
+   *          calculated.
+   */
+  private void cacheHash(String clusterName, String hostName, String hash,
+      long invalidations) {
+    ConcurrentMap<String, String> clusterMapping = m_hashes.get(hostName);
+    if (null == clusterMapping) {
+      clusterMapping = new ConcurrentHashMap<String, String>();
+      ConcurrentMap<String, String> existing = m_hashes.putIfAbsent(hostName, clusterMapping);
+      if (null != existing) {
+        clusterMapping = existing;
+      }
+    }
+
+    clusterMapping.put(clusterName, hash);
+
+    // an invalidation which ran before the put could not remove the hash, so
+    // remove it here; one which runs after the put removes it itself
+    if (m_invalidations.get() != invalidations) {
+      clusterMapping.remove(clusterName, hash);
+    }
+  }
+
   /**
    * Calculates a unique hash value representing all of the alert definitions
    * that should be scheduled to run on a given host. Alerts of type
@@ -566,27 +616,29 @@ public class AlertDefinitionHash {
    * @return the unique hash or {@value #NULL_MD5_HASH} if none.
    */
   private String hash(String clusterName, String hostName) {
-    Set<AlertDefinitionEntity> definitions = getAlertDefinitionEntities(
-        clusterName,
-        hostName);
+    return hash(getAlertDefinitionEntities(clusterName, hostName));
+  }
 
+  /**
+   * Calculates a unique hash value representing the specified alert
+   * definitions, skipping those of type {@link SourceType#AGGREGATE}.
+   *
+   * @param definitions
+   *          the definitions to hash (not {@code null}).
+   * @return the unique hash or {@value #NULL_MD5_HASH} if none.
+   */
+  private String hash(Set<AlertDefinitionEntity> definitions) {
     // no definitions found for this host, don't bother hashing
     if( null == definitions || definitions.size() == 0 ) {
       return NULL_MD5_HASH;
     }
 
-    // strip out all AGGREGATE types
-    Iterator<AlertDefinitionEntity> iterator = definitions.iterator();
-    while (iterator.hasNext()) {
-      if (SourceType.AGGREGATE.equals(iterator.next().getSourceType())) {
-        iterator.remove();
-      }
-    }
-
-    // build the UUIDs
+    // build the UUIDs, skipping all AGGREGATE types
     List<String> uuids = new ArrayList<String>(definitions.size());
     for (AlertDefinitionEntity definition : definitions) {
-      uuids.add(definition.getHash());
+      if (!SourceType.AGGREGATE.equals(definition.getSourceType())) {
+        uuids.add(definition.getHash());
+      }
     }
 
     // sort the UUIDs so that the digest is created with bytes in the same order
@@ -625,67 +677,124 @@ public class AlertDefinitionHash {
   private Set<AlertDefinitionEntity> getAlertDefinitionEntities(
       String clusterName, String hostName) {
 
-    Set<AlertDefinitionEntity> definitions = new HashSet<AlertDefinitionEntity>();
-
     try {
       Cluster cluster = m_clusters.get().getCluster(clusterName);
       if (null == cluster) {
+        return Collections.emptySet();
+      }
 
+      return new DefinitionLookup(cluster).getEntities(hostName);
+    }
+    catch (ClusterNotFoundException clusterNotFound) {
+      LOG.warn("Unable to get alert definitions for the missing cluster {}",
+        clusterName);
+      return Collections.emptySet();
+    }
+    catch (AmbariException ambariException) {
+      LOG.error("Unable to get alert definitions", ambariException);
+      return Collections.emptySet();
+    }
+  }
 
-        return Collections.emptySet();
+  /**
+   * Looks up the alert definitions of hosts in a single cluster. The hosts of
+   * master components are indexed once, and definitions are fetched once per
+   * service/component and set of master services, so that computing the
+   * definitions of many hosts does not walk the cluster or query the
+   * database again for every host.
+   * <p/>
+   * Instances are not thread safe and are meant to be used for a single batch
+   * of hosts.
+   */
+  private final class DefinitionLookup {
+    private final Cluster m_cluster;
+    private final long m_clusterId;
+
+    /**
+     * The master services of each host.
+     */
+    private final Map<String, Set<String>> m_masterServices = new HashMap<String, Set<String>>();
+
+    private final Map<String, List<AlertDefinitionEntity>> m_serviceComponentDefinitions =
+        new HashMap<String, List<AlertDefinitionEntity>>();
+
+    private final Map<Set<String>, List<AlertDefinitionEntity>> m_serviceMasterDefinitions =
+        new HashMap<Set<String>, List<AlertDefinitionEntity>>();
+
+    private List<AlertDefinitionEntity> m_agentDefinitions;
+
+    private DefinitionLookup(Cluster cluster) {
+      m_cluster = cluster;
+      m_clusterId = cluster.getClusterId();
+
+      // for every service, get the master components and index their hosts
+      for (Entry<String, Service> entry : cluster.getServices().entrySet()) {
+        Service service = entry.getValue();
+        Map<String, ServiceComponent> components = service.getServiceComponents();
+        for (Entry<String, ServiceComponent> component : components.entrySet()) {
+          if (component.getValue().isMasterComponent()) {
+            Map<String, ServiceComponentHost> hosts = component.getValue().getServiceComponentHosts();
+            for (String hostName : hosts.keySet()) {
+              Set<String> services = m_masterServices.get(hostName);
+              if (null == services) {
+                services = new HashSet<String>();
+                m_masterServices.put(hostName, services);
+              }
+              services.add(service.getName());
+            }
+          }
+        }
       }
+    }
 
-      long clusterId = cluster.getClusterId();
+    /**
+     * Gets the alert definition entities for the specified host.
+     *
+     * @param hostName
+     *          the host name (not {@code null}).
+     * @return the alert definitions for the host (never {@code null}).
+     */
+    private Set<AlertDefinitionEntity> getEntities(String hostName) {
+      Set<AlertDefinitionEntity> definitions = new HashSet<AlertDefinitionEntity>();
 
       // services and components
-      List<ServiceComponentHost> serviceComponents = cluster.getServiceComponentHosts(hostName);
-      if (null == serviceComponents || !serviceComponents.isEmpty()) {
+      List<ServiceComponentHost> serviceComponents = m_cluster.getServiceComponentHosts(hostName);
+      if (null != serviceComponents && !serviceComponents.isEmpty()) {
         for (ServiceComponentHost serviceComponent : serviceComponents) {
           String serviceName = serviceComponent.getServiceName();
           String componentName = serviceComponent.getServiceComponentName();
 
           // add all alerts for this service/component pair
-          definitions.addAll(m_definitionDao.findByServiceComponent(clusterId,
-              serviceName, componentName));
-        }
-
-        // for every service, get the master components and see if the host
-        // is a master
-        Set<String> services = new HashSet<String>();
-        for (Entry<String, Service> entry : cluster.getServices().entrySet()) {
-          Service service = entry.getValue();
-          Map<String, ServiceComponent> components = service.getServiceComponents();
-          for (Entry<String, ServiceComponent> component : components.entrySet()) {
-            if (component.getValue().isMasterComponent()) {
-              Map<String, ServiceComponentHost> hosts = component.getValue().getServiceComponentHosts();
-
-              if (hosts.containsKey(hostName)) {
-                services.add(service.getName());
-              }
-            }
+          String key = serviceName + "/" + componentName;
+          List<AlertDefinitionEntity> componentDefinitions = m_serviceComponentDefinitions.get(key);
+          if (null == componentDefinitions) {
+            componentDefinitions = m_definitionDao.findByServiceComponent(
+                m_clusterId, serviceName, componentName);
+            m_serviceComponentDefinitions.put(key, componentDefinitions);
           }
+          definitions.addAll(componentDefinitions);
         }
 
-        // add all service scoped alerts
-        if (services.size() > 0) {
-          definitions.addAll(m_definitionDao.findByServiceMaster(clusterId,
-              services));
+        // add all service scoped alerts where the host is a master
+        Set<String> services = m_masterServices.get(hostName);
+        if (null != services && services.size() > 0) {
+          List<AlertDefinitionEntity> masterDefinitions = m_serviceMasterDefinitions.get(services);
+          if (null == masterDefinitions) {
+            masterDefinitions = m_definitionDao.findByServiceMaster(m_clusterId,
+                services);
+            m_serviceMasterDefinitions.put(services, masterDefinitions);
+          }
+          definitions.addAll(masterDefinitions);
         }
       }
 
       // add any alerts not bound to a service (host level alerts)
-      definitions.addAll(m_definitionDao.findAgentScoped(clusterId));
-    }
-    catch (ClusterNotFoundException clusterNotFound) {
-      LOG.warn("Unable to get alert definitions for the missing cluster {}",
-        clusterName);
-      return Collections.emptySet();
-    }
-    catch (AmbariException ambariException) {
-      LOG.error("Unable to get alert definitions", ambariException);
-      return Collections.emptySet();
-    }
+      if (null == m_agentDefinitions) {
+        m_agentDefinitions = m_definitionDao.findAgentScoped(m_clusterId);
+      }
+      definitions.addAll(m_agentDefinitions);
 
-    return definitions;
+      return definitions;
+    }
   }
 }
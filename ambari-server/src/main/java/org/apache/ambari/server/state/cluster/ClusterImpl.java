@@ -167,11 +167,15 @@ public class ClusterImpl implements Cluster {
 
   /**
    * [ ServiceName -> [ ServiceComponentName -> [ HostName -> [ ... ] ] ] ]
+   * <p/>
+   * Guarded by {@link #topologyLock}.
    */
   private Map<String, Map<String, Map<String, ServiceComponentHost>>> serviceComponentHosts;
 
   /**
    * [ HostName -> [ ... ] ]
+   * <p/>
+   * Guarded by {@link #topologyLock}.
    */
   private Map<String, List<ServiceComponentHost>>  serviceComponentHostsByHost;
 
@@ -187,6 +191,16 @@ public class ClusterImpl implements Cluster {
 
   private final ReadWriteLock clusterGlobalLock = new ReentrantReadWriteLock();
 
+  /**
+   * Guards the service component host maps, so that looking up the
+   * components of a host, which is done for every heartbeat, doesn't wait
+   * for unrelated cluster writes such as configuration changes. The maps are
+   * only modified while holding the write lock of both this lock and the
+   * {@link #clusterGlobalLock}, which is always acquired first. They can be
+   * read while holding the read lock of either.
+   */
+  private final ReadWriteLock topologyLock = new ReentrantReadWriteLock();
+
   // This is a lock for operations that do not need to be cluster global
   private final ReentrantReadWriteLock hostTransitionStateLock = new ReentrantReadWriteLock();
   private final Lock hostTransitionStateWriteLock = hostTransitionStateLock.writeLock();
@@ -353,6 +367,7 @@ public class ClusterImpl implements Cluster {
     }
 
     clusterGlobalLock.writeLock().lock();
+    topologyLock.writeLock().lock();
 
     try {
       LOG.info("Loading Service Host Components");
@@ -397,6 +412,7 @@ public class ClusterImpl implements Cluster {
       }
       svcHostsLoaded = true;
     } finally {
+      topologyLock.writeLock().unlock();
       clusterGlobalLock.writeLock().unlock();
     }
   }
@@ -628,7 +644,7 @@ public class ClusterImpl implements Cluster {
   public ServiceComponentHost getServiceComponentHost(String serviceName,
       String serviceComponentName, String hostname) throws AmbariException {
     loadServiceHostComponents();
-    clusterGlobalLock.readLock().lock();
+    topologyLock.readLock().lock();
     try {
       if (!serviceComponentHosts.containsKey(serviceName)
           || !serviceComponentHosts.get(serviceName).containsKey(
@@ -641,7 +657,7 @@ public class ClusterImpl implements Cluster {
       return serviceComponentHosts.get(serviceName).get(serviceComponentName).get(
         hostname);
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      topologyLock.readLock().unlock();
     }
   }
 
@@ -731,6 +747,7 @@ public class ClusterImpl implements Cluster {
     Set<Cluster> cs = clusters.getClustersForHost(hostname);
 
     clusterGlobalLock.writeLock().lock();
+    topologyLock.writeLock().lock();
 
     try {
       boolean clusterFound = false;
@@ -782,6 +799,7 @@ public class ClusterImpl implements Cluster {
         svcCompHost);
       serviceComponentHostsByHost.get(hostname).add(svcCompHost);
     } finally {
+      topologyLock.writeLock().unlock();
       clusterGlobalLock.writeLock().unlock();
     }
   }
@@ -804,6 +822,7 @@ public class ClusterImpl implements Cluster {
     Set<Cluster> cs = clusters.getClustersForHost(hostname);
 
     clusterGlobalLock.writeLock().lock();
+    topologyLock.writeLock().lock();
     try {
       boolean clusterFound = false;
       Iterator<Cluster> iter = cs.iterator();
@@ -865,6 +884,7 @@ public class ClusterImpl implements Cluster {
         serviceComponentHostsByHost.get(hostname).remove(schToRemove);
       }
     } finally {
+      topologyLock.writeLock().unlock();
       clusterGlobalLock.writeLock().unlock();
     }
   }
@@ -880,7 +900,7 @@ public class ClusterImpl implements Cluster {
   public List<ServiceComponentHost> getServiceComponentHosts(
     String hostname) {
     loadServiceHostComponents();
-    clusterGlobalLock.readLock().lock();
+    topologyLock.readLock().lock();
     try {
       if (serviceComponentHostsByHost.containsKey(hostname)) {
         return new CopyOnWriteArrayList<ServiceComponentHost>(
@@ -888,7 +908,7 @@ public class ClusterImpl implements Cluster {
       }
       return new ArrayList<ServiceComponentHost>();
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      topologyLock.readLock().unlock();
     }
   }
 
@@ -897,7 +917,7 @@ public class ClusterImpl implements Cluster {
     ArrayList<ServiceComponentHost> foundItems = new ArrayList<ServiceComponentHost>();
 
     loadServiceHostComponents();
-    clusterGlobalLock.readLock().lock();
+    topologyLock.readLock().lock();
     try {
       Map<String, Map<String, ServiceComponentHost>> foundByService = serviceComponentHosts.get(serviceName);
       if (foundByService != null) {
@@ -910,7 +930,7 @@ public class ClusterImpl implements Cluster {
         }
       }
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      topologyLock.readLock().unlock();
     }
 
     return foundItems;
@@ -2114,15 +2134,20 @@ public class ClusterImpl implements Cluster {
 
     service.delete();
 
-    serviceComponentHosts.remove(serviceName);
+    topologyLock.writeLock().lock();
+    try {
+      serviceComponentHosts.remove(serviceName);
 
-    for (List<ServiceComponentHost> serviceComponents: serviceComponentHostsByHost.values()){
-      Iterables.removeIf(serviceComponents, new Predicate<ServiceComponentHost>() {
-        @Override
-        public boolean apply(ServiceComponentHost serviceComponentHost) {
-          return serviceComponentHost.getServiceName().equals(serviceName);
-        }
-      });
+      for (List<ServiceComponentHost> serviceComponents: serviceComponentHostsByHost.values()){
+        Iterables.removeIf(serviceComponents, new Predicate<ServiceComponentHost>() {
+          @Override
+          public boolean apply(ServiceComponentHost serviceComponentHost) {
+            return serviceComponentHost.getServiceName().equals(serviceName);
+          }
+        });
+      }
+    } finally {
+      topologyLock.writeLock().unlock();
     }
   }
 
@@ -3385,9 +3410,14 @@ public class ClusterImpl implements Cluster {
       services = null;
       desiredStackVersionSet = false;
 
-      serviceComponentHosts.clear();
-      serviceComponentHostsByHost.clear();
-      svcHostsLoaded = false;
+      topologyLock.writeLock().lock();
+      try {
+        serviceComponentHosts.clear();
+        serviceComponentHostsByHost.clear();
+        svcHostsLoaded = false;
+      } finally {
+        topologyLock.writeLock().unlock();
+      }
 
       clusterConfigGroups = null;
 
@@ -74,7 +74,8 @@ public class VariableReplacementHelper {
    * @return a new String
    */
   public String replaceVariables(String value, Map<String, Map<String, String>> replacementsMap) throws AmbariException {
-    if ((value != null) && (replacementsMap != null) && !replacementsMap.isEmpty()) {
+    // Most values are literals, there is no need to scan them for variables
+    if ((value != null) && (replacementsMap != null) && !replacementsMap.isEmpty() && value.contains("${")) {
       int count = 0; // Used to help prevent an infinite loop...
       boolean replacementPerformed;
 
@@ -127,6 +128,35 @@ public class VariableReplacementHelper {
     return value;
   }
 
+  /**
+   * Performs variable replacement on the supplied String value using values from the replacementsMap,
+   * remembering the result in the supplied cache.
+   * <p/>
+   * This is useful when the same values, such as the principal and keytab details of a Kerberos
+   * descriptor, are resolved many times against the same replacementsMap. The cache must only be
+   * used with a single replacementsMap which does not change while the cache is in use.
+   *
+   * @param value            a String containing zero or more variables to be replaced
+   * @param replacementsMap  a Map of data used to perform the variable replacements
+   * @param replacementCache a Map of values to their replaced values, or null to not cache the result
+   * @return a new String
+   * @see #replaceVariables(String, Map)
+   */
+  public String replaceVariables(String value, Map<String, Map<String, String>> replacementsMap,
+                                 Map<String, String> replacementCache) throws AmbariException {
+    if ((value == null) || (replacementCache == null)) {
+      return replaceVariables(value, replacementsMap);
+    }
+
+    String replaced = replacementCache.get(value);
+    if (replaced == null) {
+      replaced = replaceVariables(value, replacementsMap);
+      replacementCache.put(value, replaced);
+    }
+
+    return replaced;
+  }
+
   /**
    * Applies the specified replacement function to the supplied data.
    * <p/>
@@ -70,6 +70,7 @@ import org.apache.velocity.app.Velocity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -192,13 +193,22 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
    */
   private Executor m_executor;
 
+  /**
+   * The maximum number of notifications for a single target that are
+   * dispatched concurrently.
+   */
+  private int m_targetConcurrency = 1;
+
+  /**
+   * The number of times a failed notification is dispatched again.
+   */
+  private int m_dispatchRetries = 0;
+
   /**
    * Constructor.
    */
   public AlertNoticeDispatchService() {
-    m_executor = new ThreadPoolExecutor(0, 2, 5L, TimeUnit.MINUTES,
-        new LinkedBlockingQueue<Runnable>(), new AlertDispatchThreadFactory(),
-        new ThreadPoolExecutor.CallerRunsPolicy());
+    m_executor = createExecutor(2);
 
     GsonBuilder gsonBuilder = new GsonBuilder();
     gsonBuilder.registerTypeAdapter(AlertTargetProperties.class,
@@ -218,6 +228,10 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
   protected void startUp() throws Exception {
     super.startUp();
 
+    m_executor = createExecutor(m_configuration.getAlertDispatchPoolSize());
+    m_targetConcurrency = Math.max(1, m_configuration.getAlertDispatchTargetConcurrency());
+    m_dispatchRetries = Math.max(0, m_configuration.getAlertDispatchRetries());
+
     InputStream inputStream = null;
     String alertTemplatesFile = null;
 
@@ -282,6 +296,8 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
     Map<AlertTargetEntity, List<AlertNoticeEntity>> aggregateMap =
         new HashMap<AlertTargetEntity, List<AlertNoticeEntity>>(pending.size());
 
+    List<String> uuids = new ArrayList<String>(pending.size());
+
     // combine all histories by target
     for (AlertNoticeEntity notice : pending) {
       AlertTargetEntity target = notice.getAlertTarget();
@@ -294,11 +310,15 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
 
       // at this point, notices have been processed but not yet delivered
       notice.setNotifyState(NotificationState.DISPATCHED);
-      notice = m_dao.merge(notice);
+      uuids.add(notice.getUuid());
 
       notices.add(notice);
     }
 
+    // mark all of the notices as DISPATCHED at once, before any callback can
+    // mark them as DELIVERED or FAILED
+    m_dao.updateNoticeStates(uuids, NotificationState.DISPATCHED);
+
     // now that all of the notices are grouped by target, dispatch them
     Set<AlertTargetEntity> targets = aggregateMap.keySet();
     for (AlertTargetEntity target : targets) {
@@ -309,6 +329,7 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
 
       String targetType = target.getNotificationType();
       NotificationDispatcher dispatcher = m_dispatchFactory.getDispatcher(targetType);
+      List<AlertNotification> notifications = new ArrayList<AlertNotification>();
 
       // create a single digest notification if supported
       if (dispatcher.isDigestSupported()) {
@@ -330,10 +351,7 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
         // generating the content, then mark the notices as FAILED
         try {
           renderDigestNotificationContent(dispatcher, notification, histories, target);
-
-          // dispatch
-          DispatchRunnable runnable = new DispatchRunnable(dispatcher, notification);
-          m_executor.execute(runnable);
+          notifications.add(notification);
         } catch (Exception exception) {
           LOG.error("Unable to create notification for alerts", exception);
 
@@ -354,10 +372,7 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
           // generating the content, then mark the notices as FAILED
           try {
             renderNotificationContent(dispatcher, notification, history, target);
-
-            // dispatch
-            DispatchRunnable runnable = new DispatchRunnable(dispatcher, notification);
-            m_executor.execute(runnable);
+            notifications.add(notification);
           } catch (Exception exception) {
             LOG.error("Unable to create notification for alert", exception);
 
@@ -366,9 +381,70 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
           }
         }
       }
+
+      dispatch(dispatcher, notifications);
     }
   }
 
+  /**
+   * Dispatches the notifications of a single target. The notifications are
+   * split into at most {@link #m_targetConcurrency} batches which are each
+   * dispatched sequentially, so that a storm of notices for one target can't
+   * occupy all of the dispatch threads.
+   *
+   * @param dispatcher
+   *          the dispatcher of the target (not {@code null}).
+   * @param notifications
+   *          the rendered notifications of the target (not {@code null}).
+   */
+  private void dispatch(final NotificationDispatcher dispatcher,
+      List<AlertNotification> notifications) {
+    if (notifications.isEmpty()) {
+      return;
+    }
+
+    if (m_dispatchRetries > 0) {
+      for (AlertNotification notification : notifications) {
+        notification.Callback = new RetryingDispatchCallback(dispatcher,
+            notification, notification.Callback);
+      }
+    }
+
+    int batchSize = (notifications.size() + m_targetConcurrency - 1) / m_targetConcurrency;
+    for (final List<AlertNotification> batch : Lists.partition(notifications, batchSize)) {
+      m_executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          for (AlertNotification notification : batch) {
+            try {
+              dispatcher.dispatch(notification);
+            } catch (Exception exception) {
+              LOG.error("Unable to dispatch notification", exception);
+            }
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Creates the executor that dispatches notifications. When all threads are
+   * busy, notifications are queued.
+   *
+   * @param maxThreads
+   *          the maximum number of dispatch threads.
+   * @return the executor.
+   */
+  private static Executor createExecutor(int maxThreads) {
+    int threads = Math.max(1, maxThreads);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 5L,
+        TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(),
+        new AlertDispatchThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   /**
    * {@inheritDoc}
    * <p/>
@@ -660,9 +736,7 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
      */
     @Override
     public void onSuccess(List<String> callbackIds) {
-      for (String callbackId : callbackIds) {
-        updateAlertNotice(callbackId, NotificationState.DELIVERED);
-      }
+      updateAlertNotices(callbackIds, NotificationState.DELIVERED);
     }
 
     /**
@@ -670,33 +744,74 @@ public class AlertNoticeDispatchService extends AbstractScheduledService {
      */
     @Override
     public void onFailure(List<String> callbackIds) {
-      for (String callbackId : callbackIds) {
-        updateAlertNotice(callbackId, NotificationState.FAILED);
-      }
+      updateAlertNotices(callbackIds, NotificationState.FAILED);
     }
 
     /**
-     * Updates the {@link AlertNoticeEntity} matching the given UUID with the
-     * specified state.
+     * Updates the {@link AlertNoticeEntity} instances matching the given UUIDs
+     * with the specified state.
      *
-     * @param uuid
+     * @param uuids
      * @param state
      */
-    private void updateAlertNotice(String uuid, NotificationState state) {
+    private void updateAlertNotices(List<String> uuids, NotificationState state) {
       try {
-        AlertNoticeEntity entity = m_dao.findNoticeByUuid(uuid);
-        if (null == entity) {
-          LOG.warn("Unable to find an alert notice with UUID {}", uuid);
-          return;
+        int updated = m_dao.updateNoticeStates(uuids, state);
+        if (updated < uuids.size()) {
+          LOG.warn("Unable to find {} of the alert notices with UUIDs {}",
+              uuids.size() - updated, uuids);
         }
-
-        entity.setNotifyState(state);
-        m_dao.merge(entity);
       } catch (Exception exception) {
         LOG.error(
-            "Unable to update the alert notice with UUID {} to {}, notifications will continue to be sent",
-            uuid, state, exception);
+            "Unable to update the alert notices with UUIDs {} to {}, notifications will continue to be sent",
+            uuids, state, exception);
+      }
+    }
+  }
+
+  /**
+   * The {@link RetryingDispatchCallback} dispatches a failed notification
+   * again, up to {@link AlertNoticeDispatchService#m_dispatchRetries} times,
+   * before passing the failure on. Partial failures are passed on right away
+   * so that delivered notices are not sent twice.
+   */
+  private final class RetryingDispatchCallback implements DispatchCallback {
+
+    private final NotificationDispatcher m_dispatcher;
+    private final AlertNotification m_notification;
+    private final DispatchCallback m_delegate;
+    private final AtomicInteger m_attempts = new AtomicInteger(0);
+
+    private RetryingDispatchCallback(NotificationDispatcher dispatcher,
+        AlertNotification notification, DispatchCallback delegate) {
+      m_dispatcher = dispatcher;
+      m_notification = notification;
+      m_delegate = delegate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onSuccess(List<String> callbackIds) {
+      m_delegate.onSuccess(callbackIds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onFailure(List<String> callbackIds) {
+      boolean completeFailure = callbackIds.containsAll(m_notification.CallbackIds);
+      if (completeFailure && m_attempts.incrementAndGet() <= m_dispatchRetries) {
+        LOG.info("Retrying the dispatch of alert notices {}, attempt {} of {}",
+            callbackIds, m_attempts.get(), m_dispatchRetries);
+
+        m_executor.execute(new DispatchRunnable(m_dispatcher, m_notification));
+        return;
       }
+
+      m_delegate.onFailure(callbackIds);
     }
   }
 
@@ -73,6 +73,8 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -96,6 +98,14 @@ public class AmbariContext {
   private static ComponentResourceProvider componentResourceProvider;
   private static HostComponentResourceProvider hostComponentResourceProvider;
 
+  /**
+   * Locks which serialize config group registration for each cluster and host
+   * group, keyed by {@code <clusterId>:<hostGroupName>}. Host tasks of the same
+   * host group may run concurrently, and without the lock more than one of them
+   * could find no config group and create it.
+   */
+  private final static ConcurrentMap<String, Object> configGroupLocks = new ConcurrentHashMap<String, Object>();
+
   private final static Logger LOG = LoggerFactory.getLogger(AmbariContext.class);
 
   public boolean isClusterKerberosEnabled(long clusterId) {
@@ -314,14 +324,16 @@ public class AmbariContext {
 
   public void registerHostWithConfigGroup(final String hostName, final ClusterTopology topology, final String groupName) {
     try {
-      boolean hostAdded = RetryHelper.executeWithRetry(new Callable<Boolean>() {
-        @Override
-        public Boolean call() throws Exception {
-          return addHostToExistingConfigGroups(hostName, topology, groupName);
+      synchronized (getConfigGroupLock(topology.getClusterId(), groupName)) {
+        boolean hostAdded = RetryHelper.executeWithRetry(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            return addHostToExistingConfigGroups(hostName, topology, groupName);
+          }
+        });
+        if (!hostAdded) {
+          createConfigGroupsAndRegisterHost(topology, groupName);
         }
-      });
-      if (!hostAdded) {
-        createConfigGroupsAndRegisterHost(topology, groupName);
       }
     } catch (Exception e) {
       e.printStackTrace();
@@ -627,6 +639,26 @@ public class AmbariContext {
     }
   }
 
+  /**
+   * Get the lock which serializes config group registration for a host group.
+   *
+   * @param clusterId     cluster id
+   * @param hostGroupName host group name
+   * @return the lock for the cluster and host group
+   */
+  private Object getConfigGroupLock(Long clusterId, String hostGroupName) {
+    String key = String.format("%s:%s", clusterId, hostGroupName);
+    Object lock = configGroupLocks.get(key);
+    if (lock == null) {
+      Object newLock = new Object();
+      lock = configGroupLocks.putIfAbsent(key, newLock);
+      if (lock == null) {
+        lock = newLock;
+      }
+    }
+    return lock;
+  }
+
   /**
    * Get a config group name based on a bp and host group.
    *
@@ -64,8 +64,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Manages all cluster provisioning actions on the cluster topology.
@@ -83,10 +86,16 @@ public class TopologyManager {
 
   private PersistedState persistedState;
   private ExecutorService executor = Executors.newSingleThreadExecutor();
+  /**
+   * Executors which run the tasks of accepted hosts when more than one topology
+   * task thread is configured, or {@code null} to run them on {@link #executor}.
+   * A host is always assigned to the same executor, so its tasks run in order.
+   */
+  private ExecutorService[] hostTaskExecutors;
   private Collection<String> hostsToIgnore = new HashSet<String>();
   private final List<HostImpl> availableHosts = new LinkedList<HostImpl>();
   private final Map<String, LogicalRequest> reservedHosts = new HashMap<String, LogicalRequest>();
-  private final Map<Long, LogicalRequest> allRequests = new HashMap<Long, LogicalRequest>();
+  private final Map<Long, LogicalRequest> allRequests = new ConcurrentHashMap<Long, LogicalRequest>();
   // priority is given to oldest outstanding requests
   private final Collection<LogicalRequest> outstandingRequests = new ArrayList<LogicalRequest>();
   //todo: currently only support a single cluster
@@ -122,6 +131,32 @@ public class TopologyManager {
     persistedState = ambariContext.getPersistedTopologyState();
   }
 
+  // package protected for testing purposes
+  @Inject
+  void setTopologyTaskThreads(org.apache.ambari.server.configuration.Configuration configuration) {
+    int threads = configuration.getTopologyTaskThreads();
+    if (threads > 1) {
+      LOG.info("TopologyManager: running host tasks on {} threads", threads);
+      hostTaskExecutors = new ExecutorService[threads];
+      for (int i = 0; i < threads; i++) {
+        hostTaskExecutors[i] = Executors.newSingleThreadExecutor(new TopologyTaskThreadFactory());
+      }
+    }
+  }
+
+  /**
+   * Stops the executors which run topology tasks. Tasks which have already
+   * been queued are still run, but no new tasks are accepted.
+   */
+  public void stop() {
+    executor.shutdown();
+    if (hostTaskExecutors != null) {
+      for (ExecutorService hostTaskExecutor : hostTaskExecutors) {
+        hostTaskExecutor.shutdown();
+      }
+    }
+  }
+
   //todo: can't call in constructor.
   //todo: Very important that this occurs prior to any usage
   private void ensureInitialized() {
@@ -620,8 +655,33 @@ public class TopologyManager {
           hostName, response.getAnswer(), task.getType());
 
       task.init(topology, ambariContext);
+      executeTask(hostName, task);
+    }
+  }
+
+  /**
+   * Execute a task of an accepted host.  With more than one topology task thread the task
+   * is handed to the executor of the host from the main executor, so it still runs after
+   * any cluster configuration task submitted ahead of it, while the tasks of different
+   * hosts run in parallel.
+   *
+   * @param hostName  name of the host the task belongs to
+   * @param task      task to execute
+   */
+  void executeTask(String hostName, final TopologyTask task) {
+    if (hostTaskExecutors == null) {
       executor.execute(task);
+      return;
     }
+
+    final ExecutorService hostTaskExecutor =
+        hostTaskExecutors[(hostName.hashCode() & Integer.MAX_VALUE) % hostTaskExecutors.length];
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        hostTaskExecutor.execute(task);
+      }
+    });
   }
 
   private void updateHostWithRackInfo(ClusterTopology topology, HostOfferResponse response, HostImpl host) {
@@ -734,6 +794,20 @@ public class TopologyManager {
     executor.submit(asyncCallableService);
   }
 
+  /**
+   * Creates named daemon threads for running topology tasks.
+   */
+  private static final class TopologyTaskThreadFactory implements ThreadFactory {
+    private static final AtomicInteger s_threadIdPool = new AtomicInteger(1);
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "topology-task-" + s_threadIdPool.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
   // package protected for testing purposes
   static class ConfigureClusterTask implements Callable<Boolean> {
 
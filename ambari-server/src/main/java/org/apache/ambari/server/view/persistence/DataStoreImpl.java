@@ -44,6 +44,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -187,6 +188,70 @@ public class DataStoreImpl implements DataStore {
     }
   }
 
+  @Override
+  public void storeAll(Collection<?> entities) throws PersistenceException {
+    checkInitialize();
+
+    EntityManager em = getEntityManager();
+    try {
+      em.getTransaction().begin();
+      Object entity = null;
+      try {
+        // nested entities shared by the given entities are only persisted once
+        Set<DynamicEntity> persistSet = new HashSet<DynamicEntity>();
+        for (Object e : entities) {
+          entity = e;
+          persistEntity(entity, em, persistSet);
+        }
+        entity = null;
+        em.getTransaction().commit();
+      } catch (Exception e) {
+        rollbackTransaction(em.getTransaction());
+        throwPersistenceException(entity == null ? "Caught exception trying to store " + entities.size() +
+            " view entities" : "Caught exception trying to store view entity " + entity, e);
+      }
+    } finally {
+      em.close();
+    }
+  }
+
+  @Override
+  public void removeAll(Collection<?> entities) throws PersistenceException {
+    checkInitialize();
+
+    EntityManager em = getEntityManager();
+    try {
+      em.getTransaction().begin();
+      Object entity = null;
+      try {
+        for (Object e : entities) {
+          entity = e;
+
+          Class       clazz = entity.getClass();
+          String      id    = getIdFieldName(clazz);
+          DynamicType type  = getDynamicEntityType(clazz);
+
+          if (type != null) {
+            Map<String, Object> properties    = getEntityProperties(entity);
+            DynamicEntity       dynamicEntity = em.getReference(type.getJavaClass(), properties.get(id));
+
+            if (dynamicEntity != null) {
+              em.remove(dynamicEntity);
+            }
+          }
+        }
+        entity = null;
+        em.getTransaction().commit();
+      } catch (Exception e) {
+        rollbackTransaction(em.getTransaction());
+        throwPersistenceException(entity == null ? "Caught exception trying to remove " + entities.size() +
+            " view entities" : "Caught exception trying to remove view entity " + entity, e);
+      }
+    } finally {
+      em.close();
+    }
+  }
+
   @Override
   public <T> T find(Class<T> clazz, Object primaryKey) throws PersistenceException {
     checkInitialize();
@@ -238,6 +303,40 @@ public class DataStoreImpl implements DataStore {
     }
   }
 
+  @Override
+  public <T> Collection<T> findAll(Class<T> clazz, String whereClause, int offset, int limit)
+      throws PersistenceException {
+    checkInitialize();
+
+    EntityManager em = getEntityManager();
+    try {
+      List<T>     resources = new ArrayList<T>();
+      DynamicType type      = getDynamicEntityType(clazz);
+
+      if (type != null) {
+        try {
+          Query query = em.createQuery(getSelectStatement(clazz, whereClause) +
+              " ORDER BY e." + getAttributeName(getIdFieldName(clazz)));
+
+          query.setFirstResult(offset);
+          query.setMaxResults(limit);
+
+          List dynamicEntities = query.getResultList();
+
+          for (Object dynamicEntity : dynamicEntities) {
+            resources.add(toEntity(clazz, type, (DynamicEntity) dynamicEntity));
+          }
+        } catch (Exception e) {
+          throwPersistenceException("Caught exception trying to find " +
+              clazz.getName() + " where " + whereClause + " with offset " + offset + " and limit " + limit, e);
+        }
+      }
+      return resources;
+    } finally {
+      em.close();
+    }
+  }
+
 
   // ----- helper methods ----------------------------------------------------
 
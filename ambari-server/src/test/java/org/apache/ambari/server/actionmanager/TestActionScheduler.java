@@ -216,6 +216,9 @@ public class TestActionScheduler {
 
     //Wait for sometime, it shouldn't be scheduled this time.
     ac = waitForQueueSize(hostname, aq, 0, scheduler);
+
+    // the request entity is only looked up once while its stages are in progress
+    verify(db, times(1)).getRequestEntity(anyLong());
   }
 
   private List<AgentCommand> waitForQueueSize(String hostname, ActionQueue aq,
@@ -0,0 +1,241 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.junit.Test;
+
+/**
+ * Tests {@link HeartbeatProcessor}.
+ */
+public class HeartbeatProcessorTest {
+
+  /**
+   * Tests that tasks run inline when asynchronous processing is disabled.
+   */
+  @Test
+  public void testSynchronousByDefault() throws Exception {
+    HeartbeatProcessor processor = new HeartbeatProcessor(new Configuration(new Properties()));
+    assertFalse(processor.isAsyncEnabled());
+
+    final List<String> ran = new ArrayList<String>();
+    processor.submit("h1", new Runnable() {
+      @Override
+      public void run() {
+        ran.add(Thread.currentThread().getName());
+      }
+    });
+
+    assertEquals(1, ran.size());
+    assertEquals(Thread.currentThread().getName(), ran.get(0));
+    assertEquals(0, processor.getQueueDepth());
+  }
+
+  /**
+   * Tests that tasks for the same host are processed in submission order even
+   * when the worker queue is smaller than the number of tasks.
+   */
+  @Test
+  public void testPerHostOrdering() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.HEARTBEAT_ASYNC_PROCESSING_ENABLED, "true");
+    properties.setProperty(Configuration.HEARTBEAT_PROCESSING_THREADS, "3");
+    properties.setProperty(Configuration.HEARTBEAT_PROCESSING_QUEUE_SIZE, "2");
+
+    HeartbeatProcessor processor = new HeartbeatProcessor(new Configuration(properties));
+    assertTrue(processor.isAsyncEnabled());
+
+    int count = 50;
+    final CountDownLatch latch = new CountDownLatch(count);
+    final List<Integer> processed = Collections.synchronizedList(new ArrayList<Integer>());
+
+    for (int i = 0; i < count; i++) {
+      final int sequence = i;
+      processor.submit("h1", new Runnable() {
+        @Override
+        public void run() {
+          processed.add(sequence);
+          latch.countDown();
+        }
+      });
+    }
+
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    for (int i = 0; i < count; i++) {
+      assertEquals(Integer.valueOf(i), processed.get(i));
+    }
+
+    processor.stop();
+  }
+
+  /**
+   * Tests that a heartbeat is rejected when the worker queue stays full for
+   * the queue timeout, rather than blocking the submitting thread forever.
+   */
+  @Test
+  public void testQueueTimeout() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.HEARTBEAT_ASYNC_PROCESSING_ENABLED, "true");
+    properties.setProperty(Configuration.HEARTBEAT_PROCESSING_THREADS, "1");
+    properties.setProperty(Configuration.HEARTBEAT_PROCESSING_QUEUE_SIZE, "1");
+    properties.setProperty(Configuration.HEARTBEAT_PROCESSING_QUEUE_TIMEOUT, "1");
+
+    HeartbeatProcessor processor = new HeartbeatProcessor(new Configuration(properties));
+
+    // occupy the worker and fill its queue
+    final CountDownLatch running = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    processor.submit("h1", new Runnable() {
+      @Override
+      public void run() {
+        running.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+
+    assertTrue(running.await(10, TimeUnit.SECONDS));
+    processor.submit("h1", new Runnable() {
+      @Override
+      public void run() {
+      }
+    });
+
+    try {
+      processor.submit("h1", new Runnable() {
+        @Override
+        public void run() {
+        }
+      });
+      fail("Expected the heartbeat to be rejected");
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+
+    release.countDown();
+    processor.stop();
+  }
+
+  /**
+   * Tests that stopping the processor waits for the queued heartbeats.
+   */
+  @Test
+  public void testStopWaitsForQueuedHeartbeats() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.HEARTBEAT_ASYNC_PROCESSING_ENABLED, "true");
+    properties.setProperty(Configuration.HEARTBEAT_PROCESSING_THREADS, "2");
+
+    HeartbeatProcessor processor = new HeartbeatProcessor(new Configuration(properties));
+
+    final AtomicInteger processed = new AtomicInteger();
+    for (int i = 0; i < 10; i++) {
+      processor.submit("h" + i, new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Thread.sleep(20);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          processed.incrementAndGet();
+        }
+      });
+    }
+
+    processor.stop();
+    assertEquals(10, processed.get());
+  }
+
+  /**
+   * Tests stage latency accounting.
+   */
+  @Test
+  public void testStageMetrics() throws Exception {
+    HeartbeatProcessor processor = new HeartbeatProcessor(new Configuration(new Properties()));
+    assertEquals(0, processor.getStageCount(HeartbeatProcessor.Stage.HOST_STATUS));
+    assertEquals(0d, processor.getStageAverageLatency(HeartbeatProcessor.Stage.HOST_STATUS), 0d);
+
+    processor.recordStage(HeartbeatProcessor.Stage.HOST_STATUS, System.nanoTime() - 2000000L);
+    assertEquals(1, processor.getStageCount(HeartbeatProcessor.Stage.HOST_STATUS));
+    assertTrue(processor.getStageAverageLatency(HeartbeatProcessor.Stage.HOST_STATUS) >= 2d);
+    assertEquals(0, processor.getStageCount(HeartbeatProcessor.Stage.ALERTS));
+    assertEquals(Long.valueOf(1), processor.getStageCounts().get("HOST_STATUS"));
+    assertEquals(Long.valueOf(0), processor.getStageCounts().get("ALERTS"));
+  }
+
+  /**
+   * Tests that the metrics are exposed over JMX while the processor runs.
+   */
+  @Test
+  public void testMetricsExposed() throws Exception {
+    HeartbeatProcessor processor = new HeartbeatProcessor(new Configuration(new Properties()));
+    processor.recordStage(HeartbeatProcessor.Stage.ALERTS, System.nanoTime());
+
+    MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(HeartbeatProcessor.MBEAN_NAME);
+
+    processor.start();
+    try {
+      assertEquals(0, mbeanServer.getAttribute(name, "QueueDepth"));
+      assertEquals(false, mbeanServer.getAttribute(name, "AsyncEnabled"));
+      assertTrue(mbeanServer.getAttribute(name, "StageAverageLatencies") != null);
+    } finally {
+      processor.stop();
+    }
+
+    assertFalse(mbeanServer.isRegistered(name));
+  }
+
+  /**
+   * Tests that a processing failure is reported once.
+   */
+  @Test
+  public void testFailures() throws Exception {
+    HeartbeatProcessor processor = new HeartbeatProcessor(new Configuration(new Properties()));
+    assertNull(processor.takeFailure("h1"));
+
+    Exception failure = new Exception("failed");
+    processor.recordFailure("h1", failure);
+    assertNull(processor.takeFailure("h2"));
+    assertSame(failure, processor.takeFailure("h1"));
+    assertNull(processor.takeFailure("h1"));
+  }
+}
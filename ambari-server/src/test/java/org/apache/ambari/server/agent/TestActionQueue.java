@@ -19,6 +19,8 @@ package org.apache.ambari.server.agent;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -377,4 +379,72 @@ public class TestActionQueue {
     assertEquals(4, queue.size(c6401));
     assertEquals(3, queue.size(c6402));
   }
+
+  /**
+   * Tests removing an execution command by ID leaves the order of the
+   * remaining commands intact.
+   */
+  @Test
+  public void testDequeueCommandId() throws Exception {
+    ActionQueue queue = new ActionQueue();
+    String c6401 = "c6401.ambari.apache.org";
+
+    ExecutionCommand first = new ExecutionCommand();
+    first.setRequestAndStage(1, 1);
+    ExecutionCommand second = new ExecutionCommand();
+    second.setRequestAndStage(1, 2);
+    StatusCommand status = new StatusCommand();
+
+    queue.enqueue(c6401, first);
+    queue.enqueue(c6401, status);
+    queue.enqueue(c6401, second);
+
+    assertNull(queue.dequeue(c6401, "1-3"));
+    assertSame(first, queue.dequeue(c6401, "1-1"));
+    assertNull(queue.dequeue(c6401, "1-1"));
+    assertEquals(2, queue.size(c6401));
+
+    List<AgentCommand> statusCommands = queue.dequeue(c6401, AgentCommandType.STATUS_COMMAND);
+    assertEquals(1, statusCommands.size());
+    assertSame(status, statusCommands.get(0));
+
+    assertSame(second, queue.dequeue(c6401));
+    assertNull(queue.dequeue(c6401));
+    assertNull(queue.dequeue(c6401, "1-2"));
+  }
+
+  /**
+   * Tests that a limited drain returns the oldest commands and leaves the
+   * rest queued.
+   */
+  @Test
+  public void testDequeueAllWithLimit() throws Exception {
+    ActionQueue queue = new ActionQueue();
+    String c6401 = "c6401.ambari.apache.org";
+    assertNull(queue.dequeueAll(c6401, 2));
+
+    List<AgentCommand> commands = new ArrayList<AgentCommand>();
+    for (int i = 0; i < 5; i++) {
+      ExecutionCommand command = new ExecutionCommand();
+      command.setRequestAndStage(1, i);
+      commands.add(command);
+      queue.enqueue(c6401, command);
+    }
+
+    List<AgentCommand> drained = queue.dequeueAll(c6401, 2);
+    assertEquals(2, drained.size());
+    assertSame(commands.get(0), drained.get(0));
+    assertSame(commands.get(1), drained.get(1));
+    assertEquals(3, queue.size(c6401));
+
+    // the index must not return commands that were already drained
+    assertNull(queue.dequeue(c6401, "1-0"));
+
+    drained = queue.dequeueAll(c6401, 0);
+    assertEquals(3, drained.size());
+    for (int i = 0; i < drained.size(); i++) {
+      assertSame(commands.get(i + 2), drained.get(i));
+    }
+    assertEquals(0, queue.size(c6401));
+  }
 }
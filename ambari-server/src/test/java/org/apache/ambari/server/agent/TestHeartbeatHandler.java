@@ -40,6 +40,8 @@ import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.reset;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyString;
@@ -50,6 +52,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -57,7 +60,9 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 import javax.xml.bind.JAXBException;
 
@@ -1122,6 +1127,104 @@ public class TestHeartbeatHandler {
 
   }
 
+  @Test
+  public void testRegisterAfterProcessingFailure() throws Exception {
+    HeartBeatHandler heartBeatHandler = injector.getInstance(
+        HeartBeatHandler.class);
+
+    Register register = new Register();
+    register.setHostname("newHost");
+    register.setTimestamp(new Date().getTime());
+    HostInfo hi = new HostInfo();
+    hi.setHostName(DummyHostname1);
+    hi.setOS("redhat5");
+    register.setHardwareProfile(hi);
+    register.setAgentVersion(metaInfo.getServerVersion());
+    RegistrationResponse registrationResponse = heartBeatHandler.handleRegistration(register);
+
+    HeartBeat heartBeat = constructHeartBeat("newHost", registrationResponse.getResponseId(), Status.HEALTHY);
+    HeartBeatResponse hbResponse = heartBeatHandler.handleHeartBeat(heartBeat);
+    assertNull(hbResponse.getRegistrationCommand());
+
+    // the reports of the last heartbeat failed on a processing worker
+    injector.getInstance(HeartbeatProcessor.class).recordFailure("newHost",
+        new AmbariException("Unable to process reports"));
+
+    heartBeat.setResponseId(hbResponse.getResponseId());
+    hbResponse = heartBeatHandler.handleHeartBeat(heartBeat);
+    assertNotNull("Agent is not asked to register", hbResponse.getRegistrationCommand());
+    assertEquals(0L, hbResponse.getResponseId());
+  }
+
+  /**
+   * Tests that, when reports are processed asynchronously, the response is
+   * built without waiting for the reports of the same heartbeat, and that
+   * those reports are processed afterwards.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testAsyncResponseBuiltBeforeReportsProcessed() throws Exception {
+    ActionManager am = getMockActionManager();
+    expect(am.getTasks(anyObject(List.class))).andReturn(new ArrayList<HostRoleCommand>()).anyTimes();
+    replay(am);
+
+    ActionQueue aq = new ActionQueue();
+    HeartBeatHandler handler = new HeartBeatHandler(clusters, aq, am, injector);
+
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.HEARTBEAT_ASYNC_PROCESSING_ENABLED, "true");
+    properties.setProperty(Configuration.HEARTBEAT_PROCESSING_THREADS, "1");
+    HeartbeatProcessor processor = new HeartbeatProcessor(new Configuration(properties));
+
+    Field field = HeartBeatHandler.class.getDeclaredField("heartbeatProcessor");
+    field.setAccessible(true);
+    field.set(handler, processor);
+
+    Register register = new Register();
+    register.setHostname("newHost");
+    register.setTimestamp(new Date().getTime());
+    HostInfo hi = new HostInfo();
+    hi.setHostName(DummyHostname1);
+    hi.setOS("redhat5");
+    register.setHardwareProfile(hi);
+    register.setAgentVersion(metaInfo.getServerVersion());
+    RegistrationResponse registrationResponse = handler.handleRegistration(register);
+    clusters.getHost("newHost").setState(HostState.UNHEALTHY);
+
+    // hold the worker so that the reports of the heartbeat stay queued
+    final CountDownLatch release = new CountDownLatch(1);
+    processor.submit("newHost", new Runnable() {
+      @Override
+      public void run() {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+
+    ExecutionCommand execCmd = new ExecutionCommand();
+    execCmd.setRequestAndStage(2, 34);
+    execCmd.setHostname("newHost");
+    aq.enqueue("newHost", execCmd);
+
+    HeartBeat heartBeat = constructHeartBeat("newHost", registrationResponse.getResponseId(), Status.HEALTHY);
+    HeartBeatResponse hbResponse = handler.handleHeartBeat(heartBeat);
+
+    assertEquals(1, hbResponse.getExecutionCommands().size());
+    assertFalse(hbResponse.hasMappedComponents());
+    assertEquals(1, processor.getQueueDepth("newHost"));
+    assertEquals(0, processor.getStageCount(HeartbeatProcessor.Stage.COMMAND_REPORTS));
+
+    release.countDown();
+    processor.stop();
+
+    assertEquals(1, processor.getStageCount(HeartbeatProcessor.Stage.COMMAND_REPORTS));
+    assertEquals(1, processor.getStageCount(HeartbeatProcessor.Stage.HOST_STATUS));
+    assertNull(processor.takeFailure("newHost"));
+  }
+
   private HeartBeat constructHeartBeat(String hostName, long responseId, Status status) {
     HeartBeat heartBeat = new HeartBeat();
     heartBeat.setHostname(hostName);
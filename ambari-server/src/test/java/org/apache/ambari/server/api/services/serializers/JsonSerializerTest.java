@@ -25,13 +25,18 @@ import org.apache.ambari.server.api.util.TreeNode;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.junit.Test;
 
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import java.io.ByteArrayOutputStream;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * JSONSerializer unit tests
@@ -207,6 +212,85 @@ public class JsonSerializerTest {
 
     verify(uriInfo, resource/*, resource2*/);
   }
-    
-  
+
+  @Test
+  public void testStreamingSerializeResourcesAsArray() throws Exception {
+    Resource resource = createMock(Resource.class);
+
+    Map<String, Object> mapRootProps = new LinkedHashMap<String, Object>();
+    mapRootProps.put("prop1", "value1");
+
+    Map<String, Map<String, Object>> propertyMap = new LinkedHashMap<String, Map<String, Object>>();
+    propertyMap.put(null, mapRootProps);
+
+    //expectations
+    expect(resource.getPropertiesMap()).andReturn(propertyMap).anyTimes();
+    expect(resource.getType()).andReturn(Resource.Type.Cluster).anyTimes();
+
+    replay(resource);
+
+    Result result = new ResultImpl(true);
+    result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+    TreeNode<Resource> tree = result.getResultTree();
+    tree.addChild(resource, "resource1");
+    tree.addChild(resource, "resource2");
+
+    String expected = new JsonSerializer().serialize(result).toString();
+
+    //execute test
+    Object o = new StreamingJsonSerializer().serialize(result);
+    assertTrue(o instanceof StreamingOutput);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((StreamingOutput) o).write(out);
+
+    assertEquals(expected, out.toString("UTF-8"));
+
+    // written nodes are released
+    assertEquals(0, tree.getChildren().size());
+
+    verify(resource);
+  }
+
+  @Test
+  public void testStreamingSerializeFailsMidStream() throws Exception {
+    Resource resource = createMock(Resource.class);
+    Resource badResource = createMock(Resource.class);
+
+    Map<String, Object> mapRootProps = new LinkedHashMap<String, Object>();
+    mapRootProps.put("prop1", "value1");
+
+    Map<String, Map<String, Object>> propertyMap = new LinkedHashMap<String, Map<String, Object>>();
+    propertyMap.put(null, mapRootProps);
+
+    //expectations
+    expect(resource.getPropertiesMap()).andReturn(propertyMap).anyTimes();
+    expect(resource.getType()).andReturn(Resource.Type.Cluster).anyTimes();
+    expect(badResource.getPropertiesMap()).andThrow(new IllegalStateException("failed")).anyTimes();
+    expect(badResource.getType()).andReturn(Resource.Type.Cluster).anyTimes();
+
+    replay(resource, badResource);
+
+    Result result = new ResultImpl(true);
+    result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+    TreeNode<Resource> tree = result.getResultTree();
+    tree.addChild(resource, "resource1");
+    tree.addChild(badResource, "resource2");
+
+    //execute test
+    Object o = new StreamingJsonSerializer().serialize(result);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      ((StreamingOutput) o).write(out);
+      fail("Expected the failure to propagate");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    // the open array is not closed, so a partial body never looks complete
+    assertFalse(out.toString("UTF-8").trim().endsWith("]"));
+
+    verify(resource, badResource);
+  }
 }
@@ -44,6 +44,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -2050,6 +2051,54 @@ public class BlueprintConfigurationProcessorTest {
     assertEquals("testhost", group2Config.getProperties().get("yarn-site").get("yarn.resourcemanager.resource-tracker.address"));
   }
 
+  @Test
+  public void testDoUpdateForClusterCreate_hostGroupUpdaterSeesClusterUpdate() throws Exception {
+    Map<String, Map<String, String>> properties = new HashMap<String, Map<String, String>>();
+    Map<String, String> testSiteProps = new HashMap<String, String>();
+    testSiteProps.put("test.property", "original");
+    properties.put("test-site", testSiteProps);
+
+    Configuration clusterConfig = new Configuration(properties,
+        Collections.<String, Map<String, Map<String, String>>>emptyMap());
+
+    Configuration group1Config = new Configuration(new HashMap<String, Map<String, String>>(),
+        Collections.<String, Map<String, Map<String, String>>>emptyMap());
+    TestHostGroup group1 = new TestHostGroup("group1", Collections.singleton("NAMENODE"),
+        Collections.singleton("testhost"), group1Config);
+
+    ClusterTopology topology = createClusterTopology(bp, clusterConfig, Collections.singleton(group1));
+    // HG config -> cluster scoped config
+    group1Config.setParentConfiguration(clusterConfig);
+    BlueprintConfigurationProcessor updater = new BlueprintConfigurationProcessor(topology);
+
+    // records the value seen for the cluster and then for the host group
+    final List<String> seenValues = new ArrayList<String>();
+    Map<String, BlueprintConfigurationProcessor.PropertyUpdater> testSiteUpdaters =
+        new HashMap<String, BlueprintConfigurationProcessor.PropertyUpdater>();
+    testSiteUpdaters.put("test.property", new TestPropertyUpdater() {
+      @Override
+      public String updateForClusterCreate(String propertyName, String origValue,
+                                           Map<String, Map<String, String>> properties, ClusterTopology topology) {
+        seenValues.add(origValue);
+        return "updated";
+      }
+    });
+
+    Collection<Map<String, Map<String, BlueprintConfigurationProcessor.PropertyUpdater>>> allUpdaters = getAllUpdaters();
+    Map<String, Map<String, BlueprintConfigurationProcessor.PropertyUpdater>> testUpdaterMap =
+        Collections.singletonMap("test-site", testSiteUpdaters);
+    allUpdaters.add(testUpdaterMap);
+    try {
+      updater.doUpdateForClusterCreate();
+    } finally {
+      allUpdaters.remove(testUpdaterMap);
+    }
+
+    assertEquals(Arrays.asList("original", "updated"), seenValues);
+    assertEquals("updated", clusterConfig.getPropertyValue("test-site", "test.property"));
+    assertEquals("updated", group1Config.getProperties().get("test-site").get("test.property"));
+  }
+
   @Test
   public void testDoUpdateForClusterCreate_SingleHostProperty__MissingComponent() throws Exception {
     Map<String, Map<String, String>> properties = new HashMap<String, Map<String, String>>();
@@ -6485,6 +6534,23 @@ public class BlueprintConfigurationProcessorTest {
     return topology;
   }
 
+  @SuppressWarnings("unchecked")
+  private static Collection<Map<String, Map<String, BlueprintConfigurationProcessor.PropertyUpdater>>> getAllUpdaters()
+      throws Exception {
+    Field field = BlueprintConfigurationProcessor.class.getDeclaredField("allUpdaters");
+    field.setAccessible(true);
+    return (Collection<Map<String, Map<String, BlueprintConfigurationProcessor.PropertyUpdater>>>) field.get(null);
+  }
+
+  private static abstract class TestPropertyUpdater implements BlueprintConfigurationProcessor.PropertyUpdater {
+    @Override
+    public Collection<String> getRequiredHostGroups(String propertyName, String origValue,
+                                                    Map<String, Map<String, String>> properties,
+                                                    ClusterTopology topology) {
+      return Collections.emptyList();
+    }
+  }
+
   private class TestHostGroup {
     private String name;
     private Collection<String> components;
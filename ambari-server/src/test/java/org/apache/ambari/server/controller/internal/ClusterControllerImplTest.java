@@ -620,6 +620,37 @@ public class ClusterControllerImplTest {
 
   }
 
+  @Test
+  public void testGetResourcesSortedPageFromOffset() throws Exception{
+    ClusterControllerImpl controller = new ClusterControllerImpl(new TestProviderModule());
+
+    Set<String> propertyIds = new HashSet<String>();
+
+    Request request = PropertyHelper.getReadRequest(propertyIds);
+
+    List<SortRequestProperty> sortRequestProperties = Collections.singletonList(
+      new SortRequestProperty("Hosts/host_name", SortRequest.Order.DESC));
+    SortRequest sortRequest = new SortRequestImpl(sortRequestProperties);
+
+    // get the middle two (2 - 1)
+    PageRequest pageRequest = new PageRequestImpl(PageRequest.StartingPoint.OffsetStart, 2, 1, null, null);
+    PageResponse pageResponse = controller.getResources(Resource.Type.Host, request, null, pageRequest, sortRequest);
+
+    Assert.assertEquals(1, pageResponse.getOffset());
+    Assert.assertEquals("host:3", pageResponse.getPreviousResource().getPropertyValue(PropertyHelper.getPropertyId("Hosts", "host_name")));
+    Assert.assertEquals("host:0", pageResponse.getNextResource().getPropertyValue(PropertyHelper.getPropertyId("Hosts", "host_name")));
+    //total hosts created in TestHostResourceProvider, not only on this page
+    Assert.assertEquals(4, pageResponse.getTotalResourceCount().intValue());
+
+    List<Resource> list = new LinkedList<Resource>();
+    for (Resource resource : pageResponse.getIterable()) {
+      list.add(resource);
+    }
+    Assert.assertEquals(2, list.size());
+    Assert.assertEquals("host:2", (String) list.get(0).getPropertyValue(PropertyHelper.getPropertyId("Hosts", "host_name")));
+    Assert.assertEquals("host:1", (String) list.get(1).getPropertyValue(PropertyHelper.getPropertyId("Hosts", "host_name")));
+  }
+
   @Test
   public void testCreateResources() throws Exception{
     TestProviderModule providerModule = new TestProviderModule();
@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link URLRequestCoalescer}.
+ */
+public class URLRequestCoalescerTest {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testConcurrentRequestsAreShared() throws Exception {
+    final URLRequestCoalescer coalescer = new URLRequestCoalescer(0);
+    final String spec = "http://host1:50070/jmx";
+    final BlockingRequest request = new BlockingRequest("response");
+
+    Future<String> first = executor.submit(new Read(coalescer, spec, request));
+    Assert.assertTrue(request.started.await(10, TimeUnit.SECONDS));
+
+    Future<String> second = executor.submit(new Read(coalescer, spec, request));
+    while (coalescer.getCoalescedCount() == 0) {
+      Thread.sleep(10);
+    }
+    request.release.countDown();
+
+    Assert.assertEquals("response", first.get(10, TimeUnit.SECONDS));
+    Assert.assertEquals("response", second.get(10, TimeUnit.SECONDS));
+    Assert.assertEquals(1, request.openCount.get());
+    Assert.assertEquals(1, coalescer.getRequestCount());
+
+    // once completed, the next request goes out again
+    Assert.assertEquals("response", new Read(coalescer, spec, request).call());
+    Assert.assertEquals(2, request.openCount.get());
+  }
+
+  @Test
+  public void testFailureIsShared() throws Exception {
+    URLRequestCoalescer coalescer = new URLRequestCoalescer(0);
+
+    try {
+      coalescer.read("http://host1:50070/jmx", new Callable<InputStream>() {
+        @Override
+        public InputStream call() throws IOException {
+          throw new IOException("connection refused");
+        }
+      }, 1000L);
+      Assert.fail("Expected IOException");
+    } catch (IOException e) {
+      Assert.assertEquals("connection refused", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testMaxRequestsPerHost() throws Exception {
+    URLRequestCoalescer coalescer = new URLRequestCoalescer(1);
+    BlockingRequest request = new BlockingRequest("response");
+
+    Future<String> first = executor.submit(new Read(coalescer, "http://host1:50070/jmx", request));
+    Assert.assertTrue(request.started.await(10, TimeUnit.SECONDS));
+
+    // a different URL on the same host has to wait for a free slot
+    try {
+      new Read(coalescer, "http://host1:8088/jmx", request).call();
+      Assert.fail("Expected IOException");
+    } catch (IOException e) {
+      // expected
+    }
+    Assert.assertEquals(1, coalescer.getRejectedCount());
+
+    // other hosts are not affected
+    Assert.assertEquals("other", new Read(coalescer, "http://host2:50070/jmx",
+        new BlockingRequest("other", 0)).call());
+
+    request.release.countDown();
+    Assert.assertEquals("response", first.get(10, TimeUnit.SECONDS));
+    Assert.assertEquals("response", new Read(coalescer, "http://host1:8088/jmx", request).call());
+  }
+
+  private static class Read implements Callable<String> {
+    private final URLRequestCoalescer coalescer;
+    private final String spec;
+    private final Callable<InputStream> request;
+
+    private Read(URLRequestCoalescer coalescer, String spec, Callable<InputStream> request) {
+      this.coalescer = coalescer;
+      this.spec = spec;
+      this.request = request;
+    }
+
+    @Override
+    public String call() throws Exception {
+      return IOUtils.toString(coalescer.read(spec, request, 100L));
+    }
+  }
+
+  private static class BlockingRequest implements Callable<InputStream> {
+    private final String response;
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release;
+    private final AtomicInteger openCount = new AtomicInteger();
+
+    private BlockingRequest(String response) {
+      this(response, 1);
+    }
+
+    private BlockingRequest(String response, int blockCount) {
+      this.response = response;
+      this.release = new CountDownLatch(blockCount);
+    }
+
+    @Override
+    public InputStream call() throws Exception {
+      openCount.incrementAndGet();
+      started.countDown();
+      release.await(10, TimeUnit.SECONDS);
+      return new ByteArrayInputStream(response.getBytes());
+    }
+  }
+}
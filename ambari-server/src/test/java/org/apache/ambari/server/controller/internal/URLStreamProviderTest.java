@@ -18,9 +18,12 @@
 
 package org.apache.ambari.server.controller.internal;
 
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.commons.io.IOUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.Collections;
@@ -100,6 +103,42 @@ public class URLStreamProviderTest {
     verify(urlStreamProvider);
   }
 
+  @Test
+  public void testReadFrom_coalesceRequests() throws Exception {
+    Configuration configuration = createNiceMock(Configuration.class);
+    expect(configuration.isMetricsRequestCoalescingEnabled()).andReturn(true).once();
+    expect(configuration.isMetricsRequestCoalescingEnabled()).andReturn(false).once();
+    replay(configuration);
+
+    URLStreamProvider urlStreamProvider = createMockBuilder(URLStreamProvider.class).
+        withConstructor(Integer.TYPE, Integer.TYPE, String.class, String.class, String.class).
+        withArgs(1000, 1000, null, null, null).
+        addMockedMethod("readFrom", String.class, String.class, String.class).
+        createMock();
+
+    expect(urlStreamProvider.readFrom("spec", "GET", null)).andReturn(
+        new ByteArrayInputStream("metrics".getBytes())).times(2);
+    replay(urlStreamProvider);
+
+    URLStreamProvider.init(configuration);
+    try {
+      URLRequestCoalescer coalescer = URLStreamProvider.getRequestCoalescer();
+
+      // not a metrics provider, reads on its own
+      urlStreamProvider.readFrom("spec");
+      Assert.assertEquals(0, coalescer.getRequestCount());
+
+      urlStreamProvider.setCoalesceRequests(true);
+      Assert.assertEquals("metrics", IOUtils.toString(urlStreamProvider.readFrom("spec")));
+      Assert.assertEquals(1, coalescer.getRequestCount());
+    } finally {
+      URLStreamProvider.init(configuration);
+    }
+
+    Assert.assertNull(URLStreamProvider.getRequestCoalescer());
+    verify(urlStreamProvider);
+  }
+
   @Test
   public void testAppendCookie() throws Exception {
     Assert.assertEquals("newCookie", URLStreamProvider.appendCookie(null, "newCookie"));
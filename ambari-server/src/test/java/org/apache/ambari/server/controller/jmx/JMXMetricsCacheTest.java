@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.jmx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link JMXMetricsCache}.
+ */
+public class JMXMetricsCacheTest {
+
+  private static final String NAMENODE_SPEC = "http://host1:50070/jmx";
+
+  private JMXMetricsCache cache;
+
+  @After
+  public void tearDown() {
+    if (cache != null) {
+      cache.stop();
+    }
+  }
+
+  @Test
+  public void testSnapshotIsShared() throws Exception {
+    cache = new JMXMetricsCache(60000L, 300000L, 1);
+    CountingStreamProvider streamProvider = new CountingStreamProvider();
+
+    JMXMetricHolder metrics = cache.getMetrics(NAMENODE_SPEC, streamProvider);
+    Assert.assertFalse(metrics.getBeans().isEmpty());
+    Assert.assertSame(metrics, cache.getMetrics(NAMENODE_SPEC, streamProvider));
+    Assert.assertEquals(1, streamProvider.readCount);
+
+    List<JMXMetricsCache.EndpointStatistics> statistics = cache.getStatistics();
+    Assert.assertEquals(1, statistics.size());
+    Assert.assertEquals(NAMENODE_SPEC, statistics.get(0).getSpec());
+    Assert.assertEquals(1, statistics.get(0).getFetchCount());
+    Assert.assertEquals(0, statistics.get(0).getFailureCount());
+    Assert.assertTrue(statistics.get(0).getAgeMillis() >= 0);
+  }
+
+  @Test
+  public void testProvider() throws Exception {
+    Configuration configuration = EasyMock.createNiceMock(Configuration.class);
+    EasyMock.expect(configuration.isJMXMetricsCacheEnabled()).andReturn(true).anyTimes();
+    EasyMock.expect(configuration.getJMXMetricsCacheRefreshInterval()).andReturn(60).anyTimes();
+    EasyMock.expect(configuration.getJMXMetricsCacheIdleTimeout()).andReturn(300).anyTimes();
+    EasyMock.expect(configuration.getJMXMetricsCacheThreads()).andReturn(1).anyTimes();
+    EasyMock.replay(configuration);
+
+    JMXMetricsCacheProvider provider = new JMXMetricsCacheProvider(configuration);
+    cache = provider.getJMXMetricsCache();
+
+    // every property provider shares the one started cache
+    Assert.assertNotNull(cache);
+    Assert.assertSame(cache, provider.getJMXMetricsCache());
+    Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(
+        new ObjectName(JMXMetricsCache.MBEAN_NAME)));
+
+    provider.stop();
+    cache = null;
+
+    Assert.assertNull(provider.getJMXMetricsCache());
+    Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(
+        new ObjectName(JMXMetricsCache.MBEAN_NAME)));
+  }
+
+  @Test
+  public void testProviderDisabled() throws Exception {
+    Configuration configuration = EasyMock.createNiceMock(Configuration.class);
+    EasyMock.expect(configuration.isJMXMetricsCacheEnabled()).andReturn(false).anyTimes();
+    EasyMock.replay(configuration);
+
+    Assert.assertNull(new JMXMetricsCacheProvider(configuration).getJMXMetricsCache());
+  }
+
+  @Test
+  public void testRefresh() throws Exception {
+    cache = new JMXMetricsCache(60000L, 300000L, 1);
+    CountingStreamProvider streamProvider = new CountingStreamProvider();
+
+    JMXMetricHolder metrics = cache.getMetrics(NAMENODE_SPEC, streamProvider);
+    cache.refresh(cache.getEndpoint(NAMENODE_SPEC, streamProvider));
+
+    Assert.assertEquals(2, streamProvider.readCount);
+    JMXMetricHolder refreshedMetrics = cache.getMetrics(NAMENODE_SPEC, streamProvider);
+    Assert.assertNotSame(metrics, refreshedMetrics);
+    Assert.assertEquals(2, streamProvider.readCount);
+    Assert.assertEquals(2, cache.getStatistics().get(0).getFetchCount());
+  }
+
+  @Test
+  public void testFailedFetch() throws Exception {
+    cache = new JMXMetricsCache(60000L, 300000L, 1);
+    String spec = "http://host1:1234/jmx";
+
+    CountingStreamProvider streamProvider = new CountingStreamProvider();
+    try {
+      cache.getMetrics(spec, streamProvider);
+      Assert.fail("Expected IOException");
+    } catch (IOException e) {
+      // expected
+    }
+
+    // a failed scrape does not throw
+    cache.refresh(cache.getEndpoint(spec, streamProvider));
+
+    JMXMetricsCache.EndpointStatistics statistics = cache.getStatistics().get(0);
+    Assert.assertEquals(0, statistics.getFetchCount());
+    Assert.assertEquals(2, statistics.getFailureCount());
+    Assert.assertEquals(-1, statistics.getAgeMillis());
+  }
+
+  @Test
+  public void testIdleEndpointIsDropped() throws Exception {
+    cache = new JMXMetricsCache(1L, 1L, 1);
+    CountingStreamProvider streamProvider = new CountingStreamProvider();
+
+    cache.getMetrics(NAMENODE_SPEC, streamProvider);
+    Thread.sleep(20);
+    cache.refreshEndpoints();
+
+    Assert.assertNull(cache.getEndpoint(NAMENODE_SPEC, streamProvider));
+    Assert.assertTrue(cache.getStatistics().isEmpty());
+
+    // requesting it again starts scraping it again
+    cache.getMetrics(NAMENODE_SPEC, streamProvider);
+    Assert.assertEquals(2, streamProvider.readCount);
+    Assert.assertNotNull(cache.getEndpoint(NAMENODE_SPEC, streamProvider));
+  }
+
+  @Test
+  public void testEndpointPerStreamProvider() throws Exception {
+    cache = new JMXMetricsCache(60000L, 300000L, 1);
+    CountingStreamProvider streamProvider1 = new CountingStreamProvider();
+    CountingStreamProvider streamProvider2 = new CountingStreamProvider();
+
+    JMXMetricHolder metrics1 = cache.getMetrics(NAMENODE_SPEC, streamProvider1);
+    JMXMetricHolder metrics2 = cache.getMetrics(NAMENODE_SPEC, streamProvider2);
+
+    // each endpoint keeps being read by the stream provider it was requested with
+    Assert.assertNotSame(metrics1, metrics2);
+    Assert.assertEquals(2, cache.getStatistics().size());
+
+    cache.refresh(cache.getEndpoint(NAMENODE_SPEC, streamProvider1));
+    Assert.assertEquals(2, streamProvider1.readCount);
+    Assert.assertEquals(1, streamProvider2.readCount);
+  }
+
+  @Test
+  public void testStatisticsExposed() throws Exception {
+    cache = new JMXMetricsCache(60000L, 300000L, 1);
+    cache.start();
+    cache.getMetrics(NAMENODE_SPEC, new CountingStreamProvider());
+
+    MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(JMXMetricsCache.MBEAN_NAME);
+    CompositeData[] statistics = (CompositeData[]) mbeanServer.getAttribute(name, "Statistics");
+    Assert.assertEquals(1, statistics.length);
+    Assert.assertEquals(NAMENODE_SPEC, statistics[0].get("spec"));
+    Assert.assertEquals(1L, statistics[0].get("fetchCount"));
+
+    cache.stop();
+    Assert.assertFalse(mbeanServer.isRegistered(name));
+  }
+
+  private static class CountingStreamProvider extends TestStreamProvider {
+    private volatile int readCount = 0;
+
+    @Override
+    public InputStream readFrom(String spec) throws IOException {
+      readCount++;
+      return super.readFrom(spec);
+    }
+  }
+}
@@ -658,6 +658,50 @@ public class AlertDispatchDAOTest {
     assertNull(m_dao.findNoticeByUuid("DEADBEEF"));
   }
 
+  /**
+   * Tests that notice states can be updated in bulk by UUID.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testUpdateNoticeStates() throws Exception {
+    List<AlertDefinitionEntity> definitions = createDefinitions();
+    AlertDefinitionEntity definition = definitions.get(0);
+
+    AlertHistoryEntity history = new AlertHistoryEntity();
+    history.setServiceName(definition.getServiceName());
+    history.setClusterId(m_cluster.getClusterId());
+    history.setAlertDefinition(definition);
+    history.setAlertLabel("Label");
+    history.setAlertState(AlertState.OK);
+    history.setAlertText("Alert Text");
+    history.setAlertTimestamp(System.currentTimeMillis());
+    m_alertsDao.create(history);
+
+    AlertTargetEntity target = m_helper.createAlertTarget();
+
+    List<String> uuids = new ArrayList<String>();
+    for (int i = 0; i < 3; i++) {
+      AlertNoticeEntity notice = new AlertNoticeEntity();
+      notice.setUuid(UUID.randomUUID().toString());
+      notice.setAlertTarget(target);
+      notice.setAlertHistory(history);
+      notice.setNotifyState(NotificationState.PENDING);
+      m_dao.create(notice);
+
+      uuids.add(notice.getUuid());
+    }
+
+    assertEquals(3, m_dao.findPendingNotices().size());
+    assertEquals(2, m_dao.updateNoticeStates(uuids.subList(0, 2), NotificationState.DELIVERED));
+    assertEquals(0, m_dao.updateNoticeStates(Collections.singletonList("DEADBEEF"),
+        NotificationState.FAILED));
+
+    List<AlertNoticeEntity> pending = m_dao.findPendingNotices();
+    assertEquals(1, pending.size());
+    assertEquals(uuids.get(2), pending.get(0).getUuid());
+  }
+
 
   /**
    * Tests that the Ambari {@link Predicate} can be converted and submitted to
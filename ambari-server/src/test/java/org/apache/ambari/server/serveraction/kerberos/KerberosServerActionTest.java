@@ -29,6 +29,7 @@ import org.apache.ambari.server.actionmanager.HostRoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.agent.CommandReport;
 import org.apache.ambari.server.agent.ExecutionCommand;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.KerberosHelper;
 import org.apache.ambari.server.security.credential.PrincipalKeyCredential;
 import org.apache.ambari.server.state.Cluster;
@@ -86,6 +87,9 @@ public class KerberosServerActionTest {
               return createCommandReport(1, HostRoleStatus.FAILED, "{}", "ERROR", "ERROR");
             } else {
               requestSharedDataContext.put(identityRecord.get(KerberosIdentityDataFileReader.PRINCIPAL), evaluatedPrincipal);
+              if (requestSharedDataContext.get("RECORD_THREADS") != null) {
+                requestSharedDataContext.put("thread|" + evaluatedPrincipal, Thread.currentThread().getName());
+              }
               return null;
             }
           }
@@ -222,4 +226,67 @@ public class KerberosServerActionTest {
 
     verify(kerberosHelper);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testProcessIdentitiesInParallel() throws Exception {
+    KerberosHelper kerberosHelper = injector.getInstance(KerberosHelper.class);
+    expect(kerberosHelper.getKDCAdministratorCredentials(EasyMock.anyObject(String.class)))
+        .andReturn(new PrincipalKeyCredential("principal", "password"))
+        .anyTimes();
+
+    replay(kerberosHelper);
+
+    injector.getInstance(Configuration.class).setProperty(
+        Configuration.KERBEROS_OPERATION_THREADS_KEY, "4");
+
+    ConcurrentMap<String, Object> sharedMap = new ConcurrentHashMap<String, Object>();
+    CommandReport report = action.processIdentities(sharedMap);
+    Assert.assertNotNull(report);
+    Assert.assertEquals(HostRoleStatus.COMPLETED.toString(), report.getStatus());
+
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals("principal|hostName|REALM.COM" + i, sharedMap.get("principal|_HOST|_REALM" + i));
+    }
+
+    verify(kerberosHelper);
+  }
+
+  @Test
+  public void testProcessIdentitiesSharingKeytabFile() throws Exception {
+    KerberosHelper kerberosHelper = injector.getInstance(KerberosHelper.class);
+    expect(kerberosHelper.getKDCAdministratorCredentials(EasyMock.anyObject(String.class)))
+        .andReturn(new PrincipalKeyCredential("principal", "password"))
+        .anyTimes();
+
+    replay(kerberosHelper);
+
+    // Replace the data file so that the principals are written to one of two keytab files
+    KerberosIdentityDataFileWriter writer =
+        new KerberosIdentityDataFileWriter(new File(temporaryDirectory, KerberosIdentityDataFileWriter.DATA_FILE_NAME));
+    for (int i = 0; i < 10; i++) {
+      writer.writeRecord("hostName", "serviceName" + i, "serviceComponentName" + i,
+          "principal|_HOST|_REALM" + i, "principal_type", "keytabFilePath" + (i % 2),
+          "keytabFileOwnerName", "keytabFileOwnerAccess",
+          "keytabFileGroupName", "keytabFileGroupAccess",
+          "false");
+    }
+    writer.close();
+
+    injector.getInstance(Configuration.class).setProperty(
+        Configuration.KERBEROS_OPERATION_THREADS_KEY, "4");
+
+    ConcurrentMap<String, Object> sharedMap = new ConcurrentHashMap<String, Object>();
+    sharedMap.put("RECORD_THREADS", "true");
+    CommandReport report = action.processIdentities(sharedMap);
+    Assert.assertNotNull(report);
+    Assert.assertEquals(HostRoleStatus.COMPLETED.toString(), report.getStatus());
+
+    // all writes to a keytab file are made by the same worker
+    for (int i = 2; i < 10; i++) {
+      Assert.assertEquals(sharedMap.get("thread|principal|hostName|REALM.COM" + (i % 2)),
+          sharedMap.get("thread|principal|hostName|REALM.COM" + i));
+    }
+
+    verify(kerberosHelper);
+  }
+}
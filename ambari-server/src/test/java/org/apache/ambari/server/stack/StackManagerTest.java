@@ -37,6 +37,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -788,5 +789,76 @@ public class StackManagerTest {
   }
 
 
+  @Test
+  public void testParallelParseMatchesSerialParse() throws Exception {
+    ClassLoader classLoader = ClassLoader.getSystemClassLoader();
+
+    // stacks with deep inheritance
+    String stacks = classLoader.getResource("stacks").getPath();
+    assertSameStacks(createStackManager(stacks, null, 1), createStackManager(stacks, null, 4));
+
+    // stacks with common services
+    String commonServicesStacks = classLoader.getResource("stacks_with_common_services").getPath();
+    String commonServices = classLoader.getResource("common-services").getPath();
+    assertSameStacks(createStackManager(commonServicesStacks, commonServices, 1),
+        createStackManager(commonServicesStacks, commonServices, 4));
+  }
+
+  private static StackManager createStackManager(String stackRoot, String commonServicesRoot,
+                                                 int parserThreads) throws Exception {
+    MetainfoDAO metaInfoDao = createNiceMock(MetainfoDAO.class);
+    StackDAO stackDao = createNiceMock(StackDAO.class);
+    ActionMetadata actionMetadata = createNiceMock(ActionMetadata.class);
+    Configuration config = createNiceMock(Configuration.class);
+
+    expect(config.getSharedResourcesDirPath()).andReturn(
+        ClassLoader.getSystemClassLoader().getResource("").getPath()).anyTimes();
+
+    replay(config, metaInfoDao, stackDao, actionMetadata);
+
+    return new StackManager(new File(stackRoot),
+        commonServicesRoot == null ? null : new File(commonServicesRoot),
+        new OsFamily(config), metaInfoDao, actionMetadata, stackDao, parserThreads);
+  }
+
+  private static void assertSameStacks(StackManager expected, StackManager actual) {
+    assertEquals(expected.getStacks().size(), actual.getStacks().size());
+
+    for (StackInfo expectedStack : expected.getStacks()) {
+      StackInfo stack = actual.getStack(expectedStack.getName(), expectedStack.getVersion());
+      String stackId = expectedStack.getName() + "-" + expectedStack.getVersion();
+
+      assertNotNull(stackId, stack);
+      assertEquals(stackId, expectedStack.getParentStackVersion(), stack.getParentStackVersion());
+      assertEquals(stackId, expectedStack.getProperties().size(), stack.getProperties().size());
+      assertEquals(stackId, expectedStack.getConfigTypeAttributes(), stack.getConfigTypeAttributes());
+      assertEquals(stackId, expectedStack.getServices().size(), stack.getServices().size());
+
+      for (ServiceInfo expectedService : expectedStack.getServices()) {
+        ServiceInfo service = stack.getService(expectedService.getName());
+        String serviceId = stackId + "/" + expectedService.getName();
+
+        assertNotNull(serviceId, service);
+        assertEquals(serviceId, expectedService.getVersion(), service.getVersion());
+        assertEquals(serviceId, expectedService.getParent(), service.getParent());
+        assertEquals(serviceId, expectedService.getServicePackageFolder(), service.getServicePackageFolder());
+        assertEquals(serviceId, expectedService.getRequiredServices(), service.getRequiredServices());
+        assertEquals(serviceId, expectedService.getProperties().size(), service.getProperties().size());
+        assertEquals(serviceId, expectedService.getConfigTypeAttributes(), service.getConfigTypeAttributes());
+
+        // the order of inherited components is not defined, even between serial parses
+        Set<String> expectedComponents = new HashSet<String>();
+        for (ComponentInfo component : expectedService.getComponents()) {
+          expectedComponents.add(component.getName());
+        }
+        Set<String> components = new HashSet<String>();
+        for (ComponentInfo component : service.getComponents()) {
+          components.add(component.getName());
+        }
+        assertEquals(serviceId, expectedComponents, components);
+      }
+    }
+  }
+
   //todo: component override assertions
 }
@@ -53,6 +53,7 @@ import org.apache.ambari.server.state.alert.Scope;
 import org.apache.ambari.server.state.alert.SourceType;
 import org.apache.commons.codec.binary.Hex;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -125,6 +126,11 @@ public class AlertDefinitionHashTest extends TestCase {
     expect(namenode.isMasterComponent()).andReturn(true).anyTimes();
     serviceComponents.put("NAMENODE", namenode);
 
+    ServiceComponent datanode = EasyMock.createNiceMock(ServiceComponent.class);
+    expect(datanode.getServiceComponentHosts()).andReturn(mapComponentHosts).anyTimes();
+    expect(datanode.isMasterComponent()).andReturn(false).anyTimes();
+    serviceComponents.put("DATANODE", datanode);
+
     // create HDFS for the cluster
     Map<String, Service> services = new HashMap<String, Service>();
     String hdfsName = "HDFS";
@@ -134,7 +140,7 @@ public class AlertDefinitionHashTest extends TestCase {
     services.put(hdfsName, hdfs);
 
     // replay
-    EasyMock.replay(hdfs, host, namenode);
+    EasyMock.replay(hdfs, host, namenode, datanode);
 
     // Clusters mock
     expect(m_mockClusters.getCluster((String) anyObject())).andReturn(
@@ -394,6 +400,63 @@ public class AlertDefinitionHashTest extends TestCase {
     assertEquals(1, actionQueue.size("anotherHost"));
   }
 
+  /**
+   * Tests that enqueueing commands caches the hash sent to the agent.
+   */
+  @Test
+  public void testEnqueueAgentCommandsCachesHash() throws Exception {
+    ActionQueue actionQueue = m_injector.getInstance(ActionQueue.class);
+    assertFalse(m_hash.isHashCached(CLUSTERNAME, HOSTNAME));
+
+    m_hash.enqueueAgentCommands(1L, Collections.singletonList(HOSTNAME));
+    assertTrue(m_hash.isHashCached(CLUSTERNAME, HOSTNAME));
+
+    AlertDefinitionCommand command = (AlertDefinitionCommand) actionQueue.dequeue(HOSTNAME);
+    assertEquals(3, command.getAlertDefinitions().size());
+    assertEquals(m_hash.getHash(CLUSTERNAME, HOSTNAME), command.getHash());
+  }
+
+  /**
+   * Tests that a hash which is invalidated while it is being calculated is
+   * not cached, since it may have been calculated from stale definitions.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testHashNotCachedWhenInvalidatedDuringCalculation() throws Exception {
+    EasyMock.reset(m_mockDao);
+    EasyMock.expect(
+        m_mockDao.findByServiceMaster(EasyMock.anyInt(),
+            (Set<String>) EasyMock.anyObject())).andReturn(
+        Collections.singletonList(m_hdfsService)).anyTimes();
+
+    EasyMock.expect(
+        m_mockDao.findByServiceComponent(EasyMock.anyInt(),
+            EasyMock.anyObject(String.class), EasyMock.anyObject(String.class))).andReturn(
+        Collections.singletonList(m_hdfsHost)).anyTimes();
+
+    // a definition changes while the first hash is being calculated
+    EasyMock.expect(m_mockDao.findAgentScoped(EasyMock.anyInt())).andAnswer(
+        new IAnswer<List<AlertDefinitionEntity>>() {
+          @Override
+          public List<AlertDefinitionEntity> answer() throws Throwable {
+            m_hash.invalidate(CLUSTERNAME, HOSTNAME);
+            return m_agentDefinitions;
+          }
+        }).once();
+
+    EasyMock.expect(m_mockDao.findAgentScoped(EasyMock.anyInt())).andReturn(
+        m_agentDefinitions).anyTimes();
+
+    EasyMock.replay(m_mockDao);
+
+    assertNotNull(m_hash.getHash(CLUSTERNAME, HOSTNAME));
+    assertFalse(m_hash.isHashCached(CLUSTERNAME, HOSTNAME));
+
+    // the next calculation is not interrupted and is cached
+    m_hash.getHash(CLUSTERNAME, HOSTNAME);
+    assertTrue(m_hash.isHashCached(CLUSTERNAME, HOSTNAME));
+  }
+
   /**
    *
    */
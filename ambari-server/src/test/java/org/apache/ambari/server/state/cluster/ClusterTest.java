@@ -38,6 +38,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.persistence.EntityManager;
 import javax.persistence.RollbackException;
@@ -824,6 +829,47 @@ public class ClusterTest {
     Assert.assertEquals(0, scHosts.size());
   }
 
+  /**
+   * Tests that service component host lookups don't wait for a thread which
+   * holds the cluster-wide write lock.
+   */
+  @Test
+  public void testGetServiceComponentHostsDuringClusterWrite() throws Exception {
+    createDefaultCluster();
+
+    Service s = serviceFactory.createNew(c1, "HDFS");
+    c1.addService(s);
+    s.persist();
+
+    ServiceComponent scDN = serviceComponentFactory.createNew(s, "DATANODE");
+    s.addServiceComponent(scDN);
+    scDN.persist();
+    ServiceComponentHost scDNH1 = serviceComponentHostFactory.createNew(scDN, "h1");
+    scDN.addServiceComponentHost(scDNH1);
+    scDNH1.persist();
+
+    // load the topology before another thread holds the write lock
+    c1.getServiceComponentHosts("h1");
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    c1.getClusterGlobalLock().writeLock().lock();
+    try {
+      Future<Integer> lookups = executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          ((ClusterImpl) c1).getServiceComponentHost("HDFS", "DATANODE", "h1");
+          return c1.getServiceComponentHosts("h1").size()
+              + c1.getServiceComponentHosts("HDFS", "DATANODE").size();
+        }
+      });
+
+      assertEquals(2, lookups.get(30, TimeUnit.SECONDS).intValue());
+    } finally {
+      c1.getClusterGlobalLock().writeLock().unlock();
+      executor.shutdownNow();
+    }
+  }
+
   @Test
   public void testGetAndSetConfigs() throws Exception {
     createDefaultCluster();
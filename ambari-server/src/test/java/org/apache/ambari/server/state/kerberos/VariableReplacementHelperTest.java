@@ -171,4 +171,29 @@ public class VariableReplacementHelperTest {
         helper.replaceVariables("hive.metastore.local=false,hive.metastore.uris=${clusterHostInfo/hive_metastore_host | each(thrift://%s:9083, \\\\,, \\s*\\,\\s*)},hive.metastore.sasl.enabled=true,hive.metastore.execute.setugi=true,hive.metastore.warehouse.dir=/apps/hive/warehouse,hive.exec.mode.local.auto=false,hive.metastore.kerberos.principal=hive/_HOST@${realm}", configurations));
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testReplaceVariablesWithCache() throws AmbariException {
+    Map<String, Map<String, String>> configurations = new HashMap<String, Map<String, String>>() {
+      {
+        put("", new HashMap<String, String>() {{
+          put("realm", "UNIT.TEST");
+        }});
+      }
+    };
+
+    Map<String, String> replacementCache = new HashMap<String, String>();
+
+    Assert.assertEquals("hive/_HOST@UNIT.TEST",
+        helper.replaceVariables("hive/_HOST@${realm}", configurations, replacementCache));
+    Assert.assertEquals("hive/_HOST@UNIT.TEST", replacementCache.get("hive/_HOST@${realm}"));
+
+    // the cache is not invalidated when the configurations change
+    configurations.get("").put("realm", "OTHER.TEST");
+    Assert.assertEquals("hive/_HOST@UNIT.TEST",
+        helper.replaceVariables("hive/_HOST@${realm}", configurations, replacementCache));
+    Assert.assertEquals("hive/_HOST@OTHER.TEST",
+        helper.replaceVariables("hive/_HOST@${realm}", configurations, null));
+
+    Assert.assertNull(helper.replaceVariables(null, configurations, replacementCache));
+  }
+}
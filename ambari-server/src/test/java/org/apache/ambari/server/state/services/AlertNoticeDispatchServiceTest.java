@@ -25,7 +25,9 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +36,7 @@ import java.util.UUID;
 import java.util.concurrent.Executor;
 
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.notifications.DispatchFactory;
 import org.apache.ambari.server.notifications.Notification;
 import org.apache.ambari.server.notifications.NotificationDispatcher;
@@ -208,11 +211,11 @@ public class AlertNoticeDispatchServiceTest extends AlertNoticeDispatchService {
   public void testDigestDispatch() throws Exception {
     MockEmailDispatcher dispatcher = new MockEmailDispatcher();
     List<AlertNoticeEntity> notices = getSingleMockNotice(dispatcher.getType());
-    AlertNoticeEntity notice = notices.get(0);
 
     EasyMock.expect(m_dao.findPendingNotices()).andReturn(notices).once();
     EasyMock.expect(m_dispatchFactory.getDispatcher("EMAIL")).andReturn(dispatcher).once();
-    EasyMock.expect(m_dao.merge(notice)).andReturn(notice).atLeastOnce();
+    EasyMock.expect(m_dao.updateNoticeStates(Collections.singletonList(ALERT_NOTICE_UUID_1),
+        NotificationState.DISPATCHED)).andReturn(1).once();
 
     EasyMock.replay(m_dao, m_dispatchFactory);
 
@@ -243,11 +246,9 @@ public class AlertNoticeDispatchServiceTest extends AlertNoticeDispatchService {
   public void testSingleDispatch() throws Exception {
     MockSnmpDispatcher dispatcher = new MockSnmpDispatcher();
 
-    List<AlertNoticeEntity> notices = getSingleMockNotice(dispatcher.getType());
-    AlertNoticeEntity notice = notices.get(0);
-
     EasyMock.expect(m_dao.findPendingNotices()).andReturn(getSnmpMockNotices()).once();
-    EasyMock.expect(m_dao.merge(notice)).andReturn(notice).atLeastOnce();
+    EasyMock.expect(m_dao.updateNoticeStates(Arrays.asList(ALERT_NOTICE_UUID_1, ALERT_NOTICE_UUID_2),
+        NotificationState.DISPATCHED)).andReturn(2).once();
     EasyMock.expect(m_dispatchFactory.getDispatcher("SNMP")).andReturn(
         dispatcher).atLeastOnce();
 
@@ -277,13 +278,13 @@ public class AlertNoticeDispatchServiceTest extends AlertNoticeDispatchService {
   public void testFailedDispatch() throws Exception {
     MockEmailDispatcher dispatcher = new MockEmailDispatcher();
     List<AlertNoticeEntity> notices = getSingleMockNotice(dispatcher.getType());
-    AlertNoticeEntity notice = notices.get(0);
 
     // these expectations happen b/c we need to mark the notice as FAILED
     EasyMock.expect(m_dao.findPendingNotices()).andReturn(notices).once();
-    EasyMock.expect(m_dao.merge(notice)).andReturn(notice).once();
-    EasyMock.expect(m_dao.findNoticeByUuid(ALERT_NOTICE_UUID_1)).andReturn(notice).once();
-    EasyMock.expect(m_dao.merge(notice)).andReturn(notice).once();
+    EasyMock.expect(m_dao.updateNoticeStates(Collections.singletonList(ALERT_NOTICE_UUID_1),
+        NotificationState.DISPATCHED)).andReturn(1).once();
+    EasyMock.expect(m_dao.updateNoticeStates(Collections.singletonList(ALERT_NOTICE_UUID_1),
+        NotificationState.FAILED)).andReturn(1).once();
     EasyMock.expect(m_dispatchFactory.getDispatcher(dispatcher.getType())).andReturn(dispatcher).once();
 
     EasyMock.replay(m_dao, m_dispatchFactory);
@@ -316,7 +317,8 @@ public class AlertNoticeDispatchServiceTest extends AlertNoticeDispatchService {
 
     // these expectations happen b/c we need to mark the notice as FAILED
     EasyMock.expect(m_dao.findPendingNotices()).andReturn(notices).once();
-    EasyMock.expect(m_dao.merge(notice)).andReturn(notice).atLeastOnce();
+    EasyMock.expect(m_dao.updateNoticeStates(Collections.singletonList(ALERT_NOTICE_UUID_1),
+        NotificationState.DISPATCHED)).andReturn(1).once();
     EasyMock.expect(m_dispatchFactory.getDispatcher(dispatcher.getType())).andReturn(dispatcher).once();
 
     EasyMock.replay(m_dao, m_dispatchFactory);
@@ -339,6 +341,43 @@ public class AlertNoticeDispatchServiceTest extends AlertNoticeDispatchService {
     assertEquals(NotificationState.DISPATCHED, notice.getNotifyState());
   }
 
+  /**
+   * Tests that a notification which fails to be delivered is dispatched again
+   * when retries are configured, and that its notice is only marked once the
+   * retry succeeds.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testRetriedDispatch() throws Exception {
+    MockFailOnceDispatcher dispatcher = new MockFailOnceDispatcher();
+    List<AlertNoticeEntity> notices = getSingleMockNotice(dispatcher.getType());
+
+    EasyMock.expect(m_dao.findPendingNotices()).andReturn(notices).once();
+    EasyMock.expect(m_dao.updateNoticeStates(Collections.singletonList(ALERT_NOTICE_UUID_1),
+        NotificationState.DISPATCHED)).andReturn(1).once();
+    EasyMock.expect(m_dao.updateNoticeStates(Collections.singletonList(ALERT_NOTICE_UUID_1),
+        NotificationState.DELIVERED)).andReturn(1).once();
+    EasyMock.expect(m_dispatchFactory.getDispatcher(dispatcher.getType())).andReturn(dispatcher).once();
+
+    EasyMock.replay(m_dao, m_dispatchFactory);
+
+    // create an injector with retries enabled
+    EasyMock.reset(m_metaInfo);
+    InMemoryDefaultTestModule module = new InMemoryDefaultTestModule();
+    module.getProperties().setProperty(Configuration.ALERTS_DISPATCH_RETRIES_KEY, "2");
+    Injector injector = Guice.createInjector(Modules.override(module).with(new MockModule()));
+
+    AlertNoticeDispatchService service = injector.getInstance(AlertNoticeDispatchService.class);
+    service.startUp();
+
+    service.setExecutor(new MockExecutor());
+    service.runOneIteration();
+
+    EasyMock.verify(m_dao, m_dispatchFactory);
+    assertEquals(2, dispatcher.getDispatchCount());
+  }
+
   /**
    * Gets a single PENDING notice.
    *
@@ -591,6 +630,62 @@ public class AlertNoticeDispatchServiceTest extends AlertNoticeDispatchService {
     }
   }
 
+  /**
+   * A mock dispatcher that fails the first dispatch and delivers the
+   * following ones.
+   */
+  private static final class MockFailOnceDispatcher implements
+      NotificationDispatcher {
+
+    private int m_dispatchCount = 0;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getType() {
+      return "FAIL_ONCE";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isNotificationContentGenerationRequired() {
+      return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDigestSupported() {
+      return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dispatch(Notification notification) {
+      if (m_dispatchCount++ == 0) {
+        notification.Callback.onFailure(notification.CallbackIds);
+      } else {
+        notification.Callback.onSuccess(notification.CallbackIds);
+      }
+    }
+
+    @Override
+    public TargetConfigurationResult validateTargetConfig(
+        Map<String, Object> properties) {
+      return null;
+    }
+
+    public int getDispatchCount() {
+      return m_dispatchCount;
+    }
+  }
+
   /**
    * An {@link Executor} that calls {@link Runnable#run()} directly in the
    * current thread.
@@ -35,6 +35,7 @@ import org.apache.ambari.server.controller.predicate.EqualsPredicate;
 import org.apache.ambari.server.controller.spi.ClusterController;
 import org.apache.ambari.server.controller.spi.Predicate;
 import org.apache.ambari.server.controller.spi.Request;
+import org.apache.ambari.server.controller.spi.RequestStatus;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
@@ -46,18 +47,28 @@ import org.apache.ambari.server.state.Service;
 import org.apache.ambari.server.state.StackId;
 import org.apache.ambari.server.state.configgroup.ConfigGroup;
 import org.easymock.Capture;
+import org.easymock.IAnswer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.createMock;
@@ -388,6 +399,64 @@ public class AmbariContextTest {
     context.registerHostWithConfigGroup(HOST1, topology, HOST_GROUP_1);
   }
 
+  @Test
+  public void testRegisterHostWithConfigGroup_concurrentHostsInHostGroup() throws Exception {
+    // the config group only exists once it has been created
+    final Map<Long, ConfigGroup> createdConfigGroups = new ConcurrentHashMap<Long, ConfigGroup>();
+    final CountDownLatch startLatch = new CountDownLatch(1);
+
+    expect(cluster.getConfigGroups()).andAnswer(new IAnswer<Map<Long, ConfigGroup>>() {
+      @Override
+      public Map<Long, ConfigGroup> answer() throws Throwable {
+        return createdConfigGroups;
+      }
+    }).anyTimes();
+    expect(clusterController.ensureResourceProvider(Resource.Type.ConfigGroup)).andReturn(configGroupResourceProvider).once();
+    // only a single config group may be created for the host group
+    expect(configGroupResourceProvider.createResources(capture(configGroupRequestCapture))).andAnswer(new IAnswer<RequestStatus>() {
+      @Override
+      public RequestStatus answer() throws Throwable {
+        // give the other host a chance to look for the config group
+        Thread.sleep(100);
+        createdConfigGroups.put(1L, configGroup1);
+        return null;
+      }
+    }).once();
+    Map<Long, Host> groupHosts = new HashMap<Long, Host>();
+    groupHosts.put(1L, host1);
+    groupHosts.put(2L, host2);
+    expect(configGroup1.getHosts()).andReturn(groupHosts).once();
+
+    // replay all mocks
+    replayAll();
+
+    // test
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (final String hostName : group1Hosts) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            startLatch.await();
+            context.registerHostWithConfigGroup(hostName, topology, HOST_GROUP_1);
+            return null;
+          }
+        }));
+      }
+
+      startLatch.countDown();
+      for (Future<?> future : futures) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // assertions
+    assertEquals(1, configGroupRequestCapture.getValues().size());
+  }
+
   @Test
   public void testWaitForTopologyResolvedStateWithEmptyUpdatedSet() throws Exception {
     replayAll();
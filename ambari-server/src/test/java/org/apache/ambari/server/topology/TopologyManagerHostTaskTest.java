@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.topology;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for running the tasks of several hosts on the topology task threads.
+ */
+public class TopologyManagerHostTaskTest {
+
+  private static final int HOSTS = 8;
+  private static final int TASKS_PER_HOST = 5;
+
+  private TopologyManager topologyManager;
+
+  @Before
+  public void setUp() {
+    Configuration configuration = createNiceMock(Configuration.class);
+    expect(configuration.getTopologyTaskThreads()).andReturn(4).anyTimes();
+    replay(configuration);
+
+    topologyManager = new TopologyManager();
+    topologyManager.setTopologyTaskThreads(configuration);
+  }
+
+  @After
+  public void tearDown() {
+    topologyManager.stop();
+  }
+
+  @Test
+  public void testHostTasksRunInParallelAndInOrderPerHost() throws Exception {
+    Map<String, List<Integer>> executedTasks = new ConcurrentHashMap<String, List<Integer>>();
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(HOSTS * TASKS_PER_HOST);
+
+    for (int i = 0; i < HOSTS; i++) {
+      executedTasks.put("host" + i, Collections.synchronizedList(new ArrayList<Integer>()));
+    }
+
+    // submit round robin, the way hosts register
+    for (int task = 0; task < TASKS_PER_HOST; task++) {
+      for (int i = 0; i < HOSTS; i++) {
+        String hostName = "host" + i;
+        topologyManager.executeTask(hostName,
+            new RecordingTask(executedTasks.get(hostName), task, running, maxRunning, done));
+      }
+    }
+
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+
+    // the tasks of a host run in the order they were submitted
+    List<Integer> expectedOrder = new ArrayList<Integer>();
+    for (int task = 0; task < TASKS_PER_HOST; task++) {
+      expectedOrder.add(task);
+    }
+    for (Map.Entry<String, List<Integer>> entry : executedTasks.entrySet()) {
+      assertEquals(entry.getKey(), expectedOrder, entry.getValue());
+    }
+
+    // the tasks of different hosts overlap
+    assertTrue(maxRunning.get() > 1);
+  }
+
+  /**
+   * Task which records its position among the tasks of its host and how many
+   * tasks are running at the same time.
+   */
+  private static class RecordingTask implements TopologyTask {
+    private final List<Integer> executedTasks;
+    private final int task;
+    private final AtomicInteger running;
+    private final AtomicInteger maxRunning;
+    private final CountDownLatch done;
+
+    private RecordingTask(List<Integer> executedTasks, int task, AtomicInteger running,
+                          AtomicInteger maxRunning, CountDownLatch done) {
+      this.executedTasks = executedTasks;
+      this.task = task;
+      this.running = running;
+      this.maxRunning = maxRunning;
+      this.done = done;
+    }
+
+    @Override
+    public void init(ClusterTopology topology, AmbariContext ambariContext) {
+    }
+
+    @Override
+    public Type getType() {
+      return Type.INSTALL;
+    }
+
+    @Override
+    public void run() {
+      int current = running.incrementAndGet();
+      int max;
+      while (current > (max = maxRunning.get()) && !maxRunning.compareAndSet(max, current)) {
+        // retry
+      }
+
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      executedTasks.add(task);
+      running.decrementAndGet();
+      done.countDown();
+    }
+  }
+}
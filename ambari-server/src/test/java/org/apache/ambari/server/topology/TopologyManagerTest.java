@@ -304,6 +304,9 @@ public class TopologyManagerTest {
 
     expectLastCall().times(1);
 
+    executor.shutdown();
+    expectLastCall().once();
+
     expect(persistedState.getAllRequests()).andReturn(Collections.<ClusterTopology,
         List<LogicalRequest>>emptyMap()).once();
     expect(persistedState.persistTopologyRequest(request)).andReturn(persistedTopologyRequest).once();
@@ -326,6 +329,8 @@ public class TopologyManagerTest {
 
   @After
   public void tearDown() {
+    topologyManager.stop();
+
     verify(blueprint, stack, request, group1, group2, ambariContext, logicalRequestFactory,
         logicalRequest, configurationRequest, configurationRequest2, configurationRequest3,
         requestStatusResponse, executor, persistedState, mockFuture);
@@ -47,12 +47,14 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Query;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 
+import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.createNiceMock;
@@ -375,6 +377,106 @@ public class DataStoreImplTest {
     verify(entityManagerFactory, entityManager, jpaDynamicHelper, transaction, schemaManager, dynamicEntity);
   }
 
+  @Test
+  public void testStoreAll() throws Exception {
+    DynamicClassLoader classLoader = new DynamicClassLoader(DataStoreImplTest.class.getClassLoader());
+
+    // create mocks
+    EntityManagerFactory entityManagerFactory = createMock(EntityManagerFactory.class);
+    EntityManager entityManager = createMock(EntityManager.class);
+    JPADynamicHelper jpaDynamicHelper = createNiceMock(JPADynamicHelper.class);
+    SchemaManager schemaManager = createNiceMock(SchemaManager.class);
+    EntityTransaction transaction = createMock(EntityTransaction.class);
+
+    // set expectations
+    Capture<DynamicType> typeCapture = new Capture<DynamicType>();
+    Capture<DynamicType> typeCapture2 = new Capture<DynamicType>();
+    jpaDynamicHelper.addTypes(eq(true), eq(true), capture(typeCapture), capture(typeCapture2));
+
+    // a single entity manager and transaction for all of the entities
+    expect(entityManagerFactory.createEntityManager()).andReturn(entityManager);
+    expect(entityManager.getTransaction()).andReturn(transaction).anyTimes();
+
+    expect(entityManager.find(anyObject(Class.class), eq("bar"))).andReturn(null);
+    expect(entityManager.find(anyObject(Class.class), eq(99))).andReturn(null);
+    expect(entityManager.find(anyObject(Class.class), eq("bar2"))).andReturn(null);
+    expect(entityManager.find(anyObject(Class.class), eq(100))).andReturn(null);
+
+    Capture<DynamicEntity> subEntityCapture = new Capture<DynamicEntity>();
+    entityManager.persist(capture(subEntityCapture));
+    Capture<DynamicEntity> entityCapture = new Capture<DynamicEntity>();
+    entityManager.persist(capture(entityCapture));
+    Capture<DynamicEntity> subEntityCapture2 = new Capture<DynamicEntity>();
+    entityManager.persist(capture(subEntityCapture2));
+    Capture<DynamicEntity> entityCapture2 = new Capture<DynamicEntity>();
+    entityManager.persist(capture(entityCapture2));
+
+    entityManager.close();
+
+    transaction.begin();
+    transaction.commit();
+
+    // replay mocks
+    replay(entityManagerFactory, entityManager, jpaDynamicHelper, transaction, schemaManager);
+
+    DataStoreImpl dataStore = getDataStore(entityManagerFactory, jpaDynamicHelper, classLoader, schemaManager);
+
+    dataStore.storeAll(Arrays.asList(new TestEntity(99, "foo", new TestSubEntity("bar")),
+        new TestEntity(100, "foo2", new TestSubEntity("bar2"))));
+
+    Assert.assertEquals("bar", subEntityCapture.getValue().get("DS_name"));
+    Assert.assertEquals(99, entityCapture.getValue().get("DS_id"));
+    Assert.assertEquals("bar2", subEntityCapture2.getValue().get("DS_name"));
+    Assert.assertEquals(100, entityCapture2.getValue().get("DS_id"));
+    Assert.assertEquals("foo2", entityCapture2.getValue().get("DS_name"));
+
+    // verify mocks
+    verify(entityManagerFactory, entityManager, jpaDynamicHelper, transaction, schemaManager);
+  }
+
+  @Test
+  public void testRemoveAll() throws Exception {
+    DynamicClassLoader classLoader = new DynamicClassLoader(DataStoreImplTest.class.getClassLoader());
+
+    // create mocks
+    EntityManagerFactory entityManagerFactory = createMock(EntityManagerFactory.class);
+    EntityManager entityManager = createMock(EntityManager.class);
+    JPADynamicHelper jpaDynamicHelper = createNiceMock(JPADynamicHelper.class);
+    SchemaManager schemaManager = createNiceMock(SchemaManager.class);
+    EntityTransaction transaction = createMock(EntityTransaction.class);
+    DynamicEntity dynamicEntity = createMock(DynamicEntity.class);
+    DynamicEntity dynamicEntity2 = createMock(DynamicEntity.class);
+
+    // set expectations
+    Capture<DynamicType> typeCapture = new Capture<DynamicType>();
+    Capture<DynamicType> typeCapture2 = new Capture<DynamicType>();
+    jpaDynamicHelper.addTypes(eq(true), eq(true), capture(typeCapture), capture(typeCapture2));
+
+    expect(entityManagerFactory.createEntityManager()).andReturn(entityManager);
+    expect(entityManager.getTransaction()).andReturn(transaction).anyTimes();
+    expect(entityManager.getReference(anyObject(Class.class), eq(99))).andReturn(dynamicEntity);
+    entityManager.remove(dynamicEntity);
+    expect(entityManager.getReference(anyObject(Class.class), eq(100))).andReturn(dynamicEntity2);
+    entityManager.remove(dynamicEntity2);
+    entityManager.close();
+
+    transaction.begin();
+    transaction.commit();
+
+    // replay mocks
+    replay(entityManagerFactory, entityManager, jpaDynamicHelper, transaction, schemaManager,
+        dynamicEntity, dynamicEntity2);
+
+    DataStoreImpl dataStore = getDataStore(entityManagerFactory, jpaDynamicHelper, classLoader, schemaManager);
+
+    dataStore.removeAll(Arrays.asList(new TestEntity(99, "foo", new TestSubEntity("bar")),
+        new TestEntity(100, "foo2", new TestSubEntity("bar"))));
+
+    // verify mocks
+    verify(entityManagerFactory, entityManager, jpaDynamicHelper, transaction, schemaManager,
+        dynamicEntity, dynamicEntity2);
+  }
+
   @Test
   public void testFind() throws Exception {
     DynamicClassLoader classLoader = new DynamicClassLoader(DataStoreImplTest.class.getClassLoader());
@@ -463,6 +565,55 @@ public class DataStoreImplTest {
     verify(entityManagerFactory, entityManager, jpaDynamicHelper, dynamicEntity, query, schemaManager);
   }
 
+  @Test
+  public void testFindAll_paged() throws Exception {
+    DynamicClassLoader classLoader = new DynamicClassLoader(DataStoreImplTest.class.getClassLoader());
+
+    // create mocks
+    EntityManagerFactory entityManagerFactory = createMock(EntityManagerFactory.class);
+    EntityManager entityManager = createMock(EntityManager.class);
+    JPADynamicHelper jpaDynamicHelper = createNiceMock(JPADynamicHelper.class);
+    SchemaManager schemaManager = createNiceMock(SchemaManager.class);
+    DynamicEntity dynamicEntity = createMock(DynamicEntity.class);
+    Query query = createMock(Query.class);
+
+    // set expectations
+    Capture<DynamicType> typeCapture = new Capture<DynamicType>();
+    Capture<DynamicType> typeCapture2 = new Capture<DynamicType>();
+    jpaDynamicHelper.addTypes(eq(true), eq(true), capture(typeCapture), capture(typeCapture2));
+
+    expect(entityManagerFactory.createEntityManager()).andReturn(entityManager);
+    expect(entityManager.createQuery(
+        "SELECT e FROM DS_DataStoreImplTest$TestEntity_1 e WHERE e.DS_name='foo' ORDER BY e.DS_id")).andReturn(query);
+    entityManager.close();
+
+    expect(query.setFirstResult(20)).andReturn(query);
+    expect(query.setMaxResults(10)).andReturn(query);
+    expect(query.getResultList()).andReturn(Collections.singletonList(dynamicEntity));
+
+    expect(dynamicEntity.get("DS_id")).andReturn(99);
+    expect(dynamicEntity.get("DS_name")).andReturn("foo");
+    TestSubEntity subEntity = new TestSubEntity("bar");
+    expect(dynamicEntity.get("DS_subEntity")).andReturn(subEntity);
+
+    // replay mocks
+    replay(entityManagerFactory, entityManager, jpaDynamicHelper, dynamicEntity, query, schemaManager);
+
+    DataStoreImpl dataStore = getDataStore(entityManagerFactory, jpaDynamicHelper, classLoader, schemaManager);
+
+    Collection<TestEntity> entities = dataStore.findAll(TestEntity.class, "name='foo'", 20, 10);
+
+    Assert.assertEquals(1, entities.size());
+
+    TestEntity entity = entities.iterator().next();
+
+    Assert.assertEquals(99, entity.getId());
+    Assert.assertEquals("foo", entity.getName());
+
+    // verify mocks
+    verify(entityManagerFactory, entityManager, jpaDynamicHelper, dynamicEntity, query, schemaManager);
+  }
+
   @Test
   public void testFindAll_multiple() throws Exception {
     DynamicClassLoader classLoader = new DynamicClassLoader(DataStoreImplTest.class.getClassLoader());
@@ -44,6 +44,27 @@ public interface DataStore {
    */
   public void remove(Object entity) throws PersistenceException;
 
+  /**
+   * Save the given entities to persistent storage in a single transaction.  Either all
+   * of the entities are persisted or none of them are.  The entities must be declared as
+   * an {@code <entity>} in the {@code <persistence>} element of the view.xml.
+   *
+   * @param entities  the entities to be persisted.
+   *
+   * @throws PersistenceException thrown if the given entities can not be persisted
+   */
+  public void storeAll(Collection<?> entities) throws PersistenceException;
+
+  /**
+   * Remove the given entities from persistent storage in a single transaction.  Either
+   * all of the entities are removed or none of them are.
+   *
+   * @param entities  the entities to be removed.
+   *
+   * @throws PersistenceException thrown if the given entities can not be removed
+   */
+  public void removeAll(Collection<?> entities) throws PersistenceException;
+
   /**
    * Find the entity of the given class type that is uniquely identified by the
    * given primary key.
@@ -72,4 +93,24 @@ public interface DataStore {
    * @throws PersistenceException
    */
   public <T> Collection<T> findAll(Class<T> clazz, String whereClause) throws PersistenceException;
+
+  /**
+   * Find a page of the entities for the given where clause.  The entities are ordered
+   * by their primary key, so consecutive pages can be read by increasing the offset by
+   * the limit.  Specifying null for the where clause should page through all entities of
+   * the given class type.  The where clause must not include an ORDER BY.
+   *
+   * @param clazz        the entity class
+   * @param whereClause  the where clause; may be null
+   * @param offset       the position of the first entity to return, starting at 0
+   * @param limit        the maximum number of entities to return
+   * @param <T>          the entity type
+   *
+   * @return the page of entities for the given where clause, in primary key order; empty
+   *         collection if no entities can be found
+   *
+   * @throws PersistenceException
+   */
+  public <T> Collection<T> findAll(Class<T> clazz, String whereClause, int offset, int limit)
+      throws PersistenceException;
 }